@@ -85,8 +85,11 @@ CREATE TABLE tb_message (
     role ENUM('user', 'assistant', 'system') NOT NULL COMMENT '消息角色：用户/助手/系统',
     content TEXT NOT NULL COMMENT '消息内容',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '消息创建时间',
-    metadata JSON DEFAULT NULL COMMENT '扩展字段，如模型、耗时、插件调用等'
+    metadata JSON DEFAULT NULL COMMENT '扩展字段，如模型、耗时、插件调用等',
+    INDEX idx_session_created (session_id, created_at)
 ) COMMENT='AI对话消息记录，按会话隔离';
+-- 已有库补建索引（按会话倒序分页加载最近消息）：
+-- ALTER TABLE tb_message ADD INDEX idx_session_created (session_id, created_at);
 
 CREATE TABLE tb_operation_log (
     id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '主键ID',
@@ -4,11 +4,15 @@ CREATE TABLE tb_vector_record (
     id SERIAL PRIMARY KEY,
     user_id BIGINT NOT NULL,
     knowledge_base_id BIGINT NOT NULL,
+    -- 文件共享给的组织ID（上传者的主组织），为空表示仅上传者本人可检索
     organization_id BIGINT,
     file_id BIGINT NOT NULL,
     embedding VECTOR(1024) NOT NULL,
     chunk_index INTEGER NOT NULL,
     chunk_text TEXT NOT NULL,
+    -- 应用侧分词结果（空格分隔，见 LexicalTokenizer），用于生成关键词检索列
+    chunk_terms TEXT,
+    chunk_lexemes TSVECTOR GENERATED ALWAYS AS (to_tsvector('simple', coalesce(chunk_terms, ''))) STORED,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     deleted BOOLEAN NOT NULL DEFAULT FALSE,
@@ -22,12 +26,80 @@ CREATE INDEX idx_tb_vector_record_file_id ON tb_vector_record (file_id);
 CREATE INDEX idx_tb_vector_record_file_chunk ON tb_vector_record (file_id, chunk_index);
 CREATE INDEX idx_tb_vector_record_knowledge_base ON tb_vector_record (knowledge_base_id);
 CREATE INDEX idx_tb_vector_record_user ON tb_vector_record (user_id);
+-- 检索范围过滤：本人的若干知识库 OR 共享给所在组织的分片；过滤后行数较少时规划器可走位图扫描 + 精确排序
+CREATE INDEX idx_tb_vector_record_user_kb ON tb_vector_record (user_id, knowledge_base_id) WHERE deleted = false;
+CREATE INDEX idx_tb_vector_record_org ON tb_vector_record (organization_id)
+    WHERE deleted = false AND organization_id IS NOT NULL;
 
 -- 如果要做向量相似度搜索，强烈建议加 IVFFLAT 或 HNSW 索引（pgvector 支持）
 -- 方式 1: HNSW (推荐，速度快，精度高)
 CREATE INDEX idx_tb_vector_record_embedding
     ON tb_vector_record USING hnsw (embedding vector_cosine_ops);
 
+-- 关键词检索（与向量检索融合召回）
+CREATE INDEX idx_tb_vector_record_lexemes ON tb_vector_record USING gin (chunk_lexemes);
+
+-- 已有库补建关键词检索列（chunk_terms 需由应用回填，见 knowseek.rag.lexical.backfill-on-startup）：
+-- ALTER TABLE tb_vector_record ADD COLUMN chunk_terms TEXT;
+-- ALTER TABLE tb_vector_record ADD COLUMN chunk_lexemes TSVECTOR
+--     GENERATED ALWAYS AS (to_tsvector('simple', coalesce(chunk_terms, ''))) STORED;
+-- CREATE INDEX CONCURRENTLY idx_tb_vector_record_lexemes ON tb_vector_record USING gin (chunk_lexemes);
+
+-- 已有库补建检索范围索引；旧版本上传写入的占位组织ID（123）不代表共享，需清空：
+-- UPDATE tb_vector_record SET organization_id = NULL WHERE organization_id = 123;
+-- CREATE INDEX CONCURRENTLY idx_tb_vector_record_user_kb ON tb_vector_record (user_id, knowledge_base_id) WHERE deleted = false;
+-- CREATE INDEX CONCURRENTLY idx_tb_vector_record_org ON tb_vector_record (organization_id)
+--     WHERE deleted = false AND organization_id IS NOT NULL;
+
+-- ==================== 按知识库哈希分区（千万级分片后启用） ====================
+-- 每个分区各自维护 HNSW / GIN 索引，单个知识库的检索只扫描一个分区的索引；
+-- 分区数需与 knowseek.pgvector.partition.count 一致，分区命名 tb_vector_record_p{remainder} 供应用路由使用
+-- 分区表的主键和唯一约束必须包含分区键 knowledge_base_id；id 沿用原表序列，切换后新旧数据 id 连续
+ALTER SEQUENCE tb_vector_record_id_seq AS BIGINT;
+
+CREATE TABLE tb_vector_record_partitioned (
+    id BIGINT NOT NULL DEFAULT nextval('tb_vector_record_id_seq'),
+    user_id BIGINT NOT NULL,
+    knowledge_base_id BIGINT NOT NULL,
+    organization_id BIGINT,
+    file_id BIGINT NOT NULL,
+    embedding VECTOR(1024) NOT NULL,
+    chunk_index INTEGER NOT NULL,
+    chunk_text TEXT NOT NULL,
+    chunk_terms TEXT,
+    chunk_lexemes TSVECTOR GENERATED ALWAYS AS (to_tsvector('simple', coalesce(chunk_terms, ''))) STORED,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+
+    PRIMARY KEY (id, knowledge_base_id),
+    -- 同一文件只属于一个知识库，加上分区键后仍保证文件内分片索引唯一
+    UNIQUE (knowledge_base_id, file_id, chunk_index)
+) PARTITION BY HASH (knowledge_base_id);
+
+DO $$
+BEGIN
+    FOR r IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE tb_vector_record_p%s PARTITION OF tb_vector_record_partitioned '
+                       'FOR VALUES WITH (MODULUS 16, REMAINDER %s)', r, r);
+    END LOOP;
+END $$;
+
+-- 在分区表上建索引会自动为每个分区创建对应索引（名称形如 tb_vector_record_p0_embedding_idx）
+CREATE INDEX idx_tb_vector_record_part_file_chunk ON tb_vector_record_partitioned (file_id, chunk_index);
+CREATE INDEX idx_tb_vector_record_part_user_kb ON tb_vector_record_partitioned (user_id, knowledge_base_id) WHERE deleted = false;
+CREATE INDEX idx_tb_vector_record_part_org ON tb_vector_record_partitioned (organization_id)
+    WHERE deleted = false AND organization_id IS NOT NULL;
+
+-- 迁移步骤（VectorPartitionMigrator，knowseek.pgvector.partition.migrate-on-startup）：
+-- 1. copy：在线分批复制历史数据（可重复执行，从已复制位置继续）
+-- 2. 复制完成后再建向量与关键词索引，避免复制时逐行维护 HNSW：
+CREATE INDEX idx_tb_vector_record_part_embedding
+    ON tb_vector_record_partitioned USING hnsw (embedding vector_cosine_ops);
+CREATE INDEX idx_tb_vector_record_part_lexemes ON tb_vector_record_partitioned USING gin (chunk_lexemes);
+-- 3. swap：锁定原表写入，补齐缺失行并同步修改，校验两表一致后交换表名（不一致则回滚），原表保留为 tb_vector_record_legacy
+-- 4. 开启 knowseek.pgvector.partition.enabled，确认无误后 DROP TABLE tb_vector_record_legacy
+
 -- 或者 方式 2: IVFFlat (内存占用少，适合数据量巨大但精度要求稍低的场景)
 -- CREATE INDEX idx_tb_vector_record_embedding
 -- ON tb_vector_record USING ivfflat (embedding vector_cosine_ops) WITH (lists = 100);
\ No newline at end of file
@@ -0,0 +1,347 @@
+package com.springleaf.knowseek.cache;
+
+import com.alibaba.fastjson2.JSON;
+import com.springleaf.knowseek.constans.ChatRedisKeyConstant;
+import com.springleaf.knowseek.mapper.mysql.SessionMapper;
+import com.springleaf.knowseek.model.entity.Message;
+import com.springleaf.knowseek.model.entity.Session;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 活跃会话的 Redis 写穿缓存
+ * 缓存会话信息（用于归属校验）与最近消息窗口，消息写库后同步追加到窗口；
+ * 会话最后活跃时间先记入待回写集合，由定时任务合并后批量回写 MySQL，避免每条消息都 UPDATE 一次
+ * Redis 不可用时所有读操作返回空，调用方回退到 MySQL
+ */
+@Slf4j
+@Component
+public class ChatSessionCache {
+
+    /**
+     * 每次回写最多处理的会话数
+     */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * 仅当缓存值仍是读取时的值才覆盖：期间会话被删除（Key 不存在）或被修改（值已变）时放弃写入，避免把旧会话写回缓存
+     */
+    private static final RedisScript<Long> COMPARE_AND_SET_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 会话没有删除标记时才写入缓存：删除事务提交前并发读库得到的旧会话不会被回填
+     */
+    private static final RedisScript<Long> PUT_UNLESS_DELETED_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 1 then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return 1
+            """, Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SessionMapper sessionMapper;
+
+    /**
+     * 会话缓存过期时间（分钟），每次访问刷新
+     */
+    @Value("${knowseek.chat.cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    /**
+     * 会话删除标记的保留时间（秒），需大于删除事务的执行时间加上并发读库回填的耗时
+     */
+    @Value("${knowseek.chat.cache.delete-tombstone-seconds:300}")
+    private long deleteTombstoneSeconds;
+
+    /**
+     * 最近消息窗口保留的消息数，与历史轮数上限一致
+     */
+    @Value("${knowseek.chat.history.max-turns:10}")
+    private int historyMaxTurns;
+
+    // ========== 会话 ==========
+
+    /**
+     * 查询会话，缓存未命中时读库并回填
+     * @return 会话，不存在返回 null
+     */
+    public Session getSession(Long sessionId) {
+        String key = sessionKey(sessionId);
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            if (json != null) {
+                stringRedisTemplate.expire(key, ttlMinutes, TimeUnit.MINUTES);
+                return JSON.parseObject(json, Session.class);
+            }
+        } catch (Exception e) {
+            log.warn("读取会话缓存失败，sessionId: {}，回退到数据库: {}", sessionId, e.getMessage());
+            return sessionMapper.selectById(sessionId);
+        }
+
+        Session session = sessionMapper.selectById(sessionId);
+        if (session != null) {
+            putSession(session);
+        }
+        return session;
+    }
+
+    /**
+     * 写入会话缓存，会话已被删除（存在删除标记）时不写入
+     */
+    public void putSession(Session session) {
+        try {
+            stringRedisTemplate.execute(PUT_UNLESS_DELETED_SCRIPT,
+                    Arrays.asList(sessionKey(session.getId()), deletedKey(session.getId())),
+                    JSON.toJSONString(session), String.valueOf(TimeUnit.MINUTES.toMillis(ttlMinutes)));
+        } catch (Exception e) {
+            log.warn("写入会话缓存失败，sessionId: {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 会话删除时调用，需在删除语句之前执行：先写删除标记，阻止并发读库得到的旧会话回填缓存，再清除缓存；
+     * 处于事务中时提交后再清除一次，覆盖标记写入前已回填的缓存；事务回滚时去掉删除标记
+     */
+    public void evictDeletedSession(Long sessionId) {
+        try {
+            stringRedisTemplate.opsForValue().set(deletedKey(sessionId), "1", deleteTombstoneSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入会话删除标记失败，sessionId: {}: {}", sessionId, e.getMessage());
+        }
+        evictSession(sessionId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictSession(sessionId);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        deleteQuietly(deletedKey(sessionId));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 会话被修改或删除时清除缓存（包括消息窗口）
+     */
+    public void evictSession(Long sessionId) {
+        try {
+            stringRedisTemplate.delete(List.of(sessionKey(sessionId), messagesKey(sessionId)));
+            stringRedisTemplate.opsForZSet().remove(ChatRedisKeyConstant.SESSION_DIRTY_KEY, String.valueOf(sessionId));
+        } catch (Exception e) {
+            log.warn("清除会话缓存失败，sessionId: {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * 记录会话活跃，updated_at 由定时任务合并回写
+     */
+    public void markActive(Long sessionId) {
+        try {
+            stringRedisTemplate.opsForZSet().add(ChatRedisKeyConstant.SESSION_DIRTY_KEY,
+                    String.valueOf(sessionId), System.currentTimeMillis());
+        } catch (Exception e) {
+            // Redis 不可用时直接写库，保证活跃时间不丢
+            log.warn("记录会话活跃失败，直接更新数据库，sessionId: {}: {}", sessionId, e.getMessage());
+            sessionMapper.updateUpdatedAt(sessionId, LocalDateTime.now());
+        }
+    }
+
+    // ========== 最近消息窗口 ==========
+
+    /**
+     * 会话消息被清空时删除窗口
+     */
+    public void evictMessages(Long sessionId) {
+        try {
+            stringRedisTemplate.delete(messagesKey(sessionId));
+        } catch (Exception e) {
+            log.warn("清除消息窗口缓存失败，sessionId: {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取最近消息窗口（旧 -> 新）
+     * @return 未缓存时返回 null，由调用方读库后调用 putRecentMessages 回填
+     */
+    public List<Message> getRecentMessages(Long sessionId) {
+        String key = messagesKey(sessionId);
+        try {
+            List<String> values = stringRedisTemplate.opsForList().range(key, 0, -1);
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            stringRedisTemplate.expire(key, ttlMinutes, TimeUnit.MINUTES);
+            // 读库回填与追加并发时同一条消息可能写入两次，按消息ID去重
+            Map<Long, Message> messages = new LinkedHashMap<>();
+            for (String value : values) {
+                Message message = JSON.parseObject(value, Message.class);
+                messages.putIfAbsent(message.getId(), message);
+            }
+            return new ArrayList<>(messages.values());
+        } catch (Exception e) {
+            log.warn("读取消息窗口缓存失败，sessionId: {}: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 用数据库中的最近消息（旧 -> 新）回填窗口
+     */
+    public void putRecentMessages(Long sessionId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String key = messagesKey(sessionId);
+        try {
+            List<String> values = messages.stream().map(JSON::toJSONString).toList();
+            stringRedisTemplate.delete(key);
+            stringRedisTemplate.opsForList().rightPushAll(key, values);
+            stringRedisTemplate.opsForList().trim(key, -windowSize(), -1);
+            stringRedisTemplate.expire(key, ttlMinutes, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("回填消息窗口缓存失败，sessionId: {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * 新消息写库后追加到窗口
+     * 仅当窗口已存在时追加（RPUSHX），否则窗口不完整，留待下次读取时从数据库整体回填
+     */
+    public void appendMessage(Message message) {
+        String key = messagesKey(message.getSessionId());
+        try {
+            Long size = stringRedisTemplate.opsForList().rightPushIfPresent(key, JSON.toJSONString(message));
+            if (size != null && size > windowSize()) {
+                stringRedisTemplate.opsForList().trim(key, -windowSize(), -1);
+            }
+        } catch (Exception e) {
+            // 追加失败时删除窗口，避免后续读到缺消息的旧窗口
+            log.warn("追加消息窗口缓存失败，sessionId: {}: {}", message.getSessionId(), e.getMessage());
+            try {
+                stringRedisTemplate.delete(key);
+            } catch (Exception ignored) {
+                // Redis 整体不可用时窗口也读不到，无需处理
+            }
+        }
+    }
+
+    // ========== updated_at 回写 ==========
+
+    /**
+     * 定时将待回写集合中的会话最后活跃时间合并回写 MySQL
+     * ZPOPMIN 原子取出，多实例同时执行也不会重复回写
+     */
+    @Scheduled(fixedDelayString = "${knowseek.chat.cache.flush-interval-ms:5000}")
+    public void flushDirtySessions() {
+        Set<ZSetOperations.TypedTuple<String>> dirty;
+        try {
+            dirty = stringRedisTemplate.opsForZSet().popMin(ChatRedisKeyConstant.SESSION_DIRTY_KEY, FLUSH_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("读取待回写会话失败: {}", e.getMessage());
+            return;
+        }
+        if (dirty == null || dirty.isEmpty()) {
+            return;
+        }
+
+        for (ZSetOperations.TypedTuple<String> tuple : dirty) {
+            Long sessionId = Long.valueOf(tuple.getValue());
+            LocalDateTime updatedAt = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(tuple.getScore().longValue()), ZoneId.systemDefault());
+            try {
+                sessionMapper.updateUpdatedAt(sessionId, updatedAt);
+                refreshCachedUpdatedAt(sessionId, updatedAt);
+            } catch (Exception e) {
+                log.error("回写会话最后活跃时间失败，sessionId: {}", sessionId, e);
+                // 放回集合等待下次回写；若期间又有新活跃，保留较新的时间
+                markActiveAt(sessionId, tuple.getScore());
+            }
+        }
+        log.debug("回写会话最后活跃时间完成，共 {} 个会话", dirty.size());
+    }
+
+    /**
+     * 更新缓存中会话的最后活跃时间，与会话删除、修改并发时以对方为准
+     */
+    private void refreshCachedUpdatedAt(Long sessionId, LocalDateTime updatedAt) {
+        String key = sessionKey(sessionId);
+        String json = stringRedisTemplate.opsForValue().get(key);
+        if (json == null) {
+            return;
+        }
+        Session session = JSON.parseObject(json, Session.class);
+        session.setUpdatedAt(updatedAt);
+        stringRedisTemplate.execute(COMPARE_AND_SET_SCRIPT, Collections.singletonList(key),
+                json, JSON.toJSONString(session), String.valueOf(TimeUnit.MINUTES.toMillis(ttlMinutes)));
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("删除缓存 Key 失败，key: {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void markActiveAt(Long sessionId, double score) {
+        try {
+            stringRedisTemplate.opsForZSet().addIfAbsent(ChatRedisKeyConstant.SESSION_DIRTY_KEY,
+                    String.valueOf(sessionId), score);
+        } catch (Exception e) {
+            log.warn("会话重新加入待回写集合失败，sessionId: {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private int windowSize() {
+        return historyMaxTurns * 2;
+    }
+
+    private String sessionKey(Long sessionId) {
+        return String.format(ChatRedisKeyConstant.SESSION_KEY, sessionId);
+    }
+
+    private String deletedKey(Long sessionId) {
+        return String.format(ChatRedisKeyConstant.SESSION_DELETED_KEY, sessionId);
+    }
+
+    private String messagesKey(Long sessionId) {
+        return String.format(ChatRedisKeyConstant.SESSION_MESSAGES_KEY, sessionId);
+    }
+}
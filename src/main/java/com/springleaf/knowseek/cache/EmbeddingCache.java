@@ -0,0 +1,178 @@
+package com.springleaf.knowseek.cache;
+
+import com.springleaf.knowseek.utils.FloatArrayCodec;
+import com.springleaf.knowseek.utils.HashUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 向量缓存（内容寻址），分片向量与问题向量各用一个实例
+ * Key 为 sha256(模型标识 + 归一化文本)，与文件、知识库无关，重复上传或跨知识库上传的相同分片直接复用向量
+ * 两级存储：进程内 LRU（必选）+ Redis（可选，多实例共享、重启不丢失）
+ */
+@Slf4j
+public class EmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final boolean enabled;
+    private final String modelId;
+    private final String redisKeyPattern;
+    private final LocalLruCache<String, float[]> localCache;
+    /**
+     * 为空表示未启用 Redis 层
+     */
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration redisTtl;
+
+    /**
+     * @param modelId             模型标识（模型名 + 维度），模型或维度变化后旧缓存自然失效
+     * @param redisKeyPattern     Redis Key 模板，%s 为缓存 Key
+     * @param localMaxEntries     进程内缓存条目上限
+     * @param localTtl            进程内缓存写入后过期时间，0 表示不过期
+     * @param stringRedisTemplate 为空时只使用进程内缓存
+     * @param redisTtl            Redis 层过期时间
+     */
+    public EmbeddingCache(String modelId, String redisKeyPattern, int localMaxEntries, Duration localTtl,
+                          StringRedisTemplate stringRedisTemplate, Duration redisTtl) {
+        this.enabled = true;
+        this.modelId = modelId;
+        this.redisKeyPattern = redisKeyPattern;
+        this.localCache = new LocalLruCache<>(localMaxEntries, localTtl.toMillis());
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTtl = redisTtl;
+    }
+
+    private EmbeddingCache() {
+        this.enabled = false;
+        this.modelId = null;
+        this.redisKeyPattern = null;
+        this.localCache = null;
+        this.stringRedisTemplate = null;
+        this.redisTtl = null;
+    }
+
+    /**
+     * 不缓存任何内容的实例
+     */
+    public static EmbeddingCache disabled() {
+        return new EmbeddingCache();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算文本的缓存 Key
+     */
+    public String key(String text) {
+        return HashUtil.sha256Hex(modelId + "\n" + normalize(text));
+    }
+
+    /**
+     * 查询单个 Key，未命中返回 null
+     */
+    public float[] get(String key) {
+        return getAll(List.of(key)).get(key);
+    }
+
+    public void put(String key, float[] vector) {
+        putAll(Map.of(key, vector));
+    }
+
+    /**
+     * 批量查询，先查进程内缓存，未命中的再批量查 Redis 并回填进程内缓存
+     * @return 命中的 Key -> 向量
+     */
+    public Map<String, float[]> getAll(Collection<String> keys) {
+        Map<String, float[]> result = new HashMap<>();
+        if (!enabled || keys.isEmpty()) {
+            return result;
+        }
+
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : keys) {
+            float[] vector = localCache.get(key);
+            if (vector != null) {
+                result.put(key, vector);
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+
+        if (stringRedisTemplate != null && !remoteKeys.isEmpty()) {
+            try {
+                List<String> redisKeys = remoteKeys.stream().map(this::redisKey).toList();
+                List<String> values = stringRedisTemplate.opsForValue().multiGet(redisKeys);
+                if (values != null) {
+                    for (int i = 0; i < remoteKeys.size(); i++) {
+                        String value = values.get(i);
+                        if (value != null) {
+                            float[] vector = FloatArrayCodec.decode(value);
+                            localCache.put(remoteKeys.get(i), vector);
+                            result.put(remoteKeys.get(i), vector);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // Redis 不可用时降级为只用进程内缓存，不影响向量化主流程
+                log.warn("查询 Redis 向量缓存失败，按未命中处理: {}", e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量写入两级缓存
+     */
+    public void putAll(Map<String, float[]> entries) {
+        if (!enabled || entries.isEmpty()) {
+            return;
+        }
+        entries.forEach(localCache::put);
+
+        if (stringRedisTemplate != null) {
+            try {
+                Expiration expiration = Expiration.from(redisTtl);
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Map.Entry<String, float[]> entry : entries.entrySet()) {
+                        connection.stringCommands().set(
+                                redisKey(entry.getKey()).getBytes(StandardCharsets.UTF_8),
+                                FloatArrayCodec.encode(entry.getValue()).getBytes(StandardCharsets.UTF_8),
+                                expiration,
+                                RedisStringCommands.SetOption.upsert());
+                    }
+                    return null;
+                });
+            } catch (Exception e) {
+                log.warn("写入 Redis 向量缓存失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private String redisKey(String key) {
+        return String.format(redisKeyPattern, key);
+    }
+
+    /**
+     * 归一化：Unicode NFC、去首尾空白、连续空白合并为一个空格
+     */
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).strip();
+        return WHITESPACE.matcher(normalized).replaceAll(" ");
+    }
+}
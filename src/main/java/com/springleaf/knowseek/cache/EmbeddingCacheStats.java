@@ -0,0 +1,42 @@
+package com.springleaf.knowseek.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个文件向量化过程中的缓存命中统计，由消费者按文件创建并在处理结束时输出
+ */
+public class EmbeddingCacheStats {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong savedApiCalls = new AtomicLong();
+
+    public void record(int hitCount, int missCount, int savedCalls) {
+        hits.addAndGet(hitCount);
+        misses.addAndGet(missCount);
+        savedApiCalls.addAndGet(savedCalls);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getSavedApiCalls() {
+        return savedApiCalls.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("命中 %d，未命中 %d，命中率 %.1f%%，节省接口调用 %d 次",
+                getHits(), getMisses(), getHitRate() * 100, getSavedApiCalls());
+    }
+}
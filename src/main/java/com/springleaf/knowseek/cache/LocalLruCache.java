@@ -0,0 +1,72 @@
+package com.springleaf.knowseek.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内 LRU 缓存：超出容量时淘汰最久未访问的条目，可选写入后过期时间
+ * 所有操作加锁，适合读写都很轻量的场景
+ */
+public class LocalLruCache<K, V> {
+
+    private final int maxEntries;
+    /**
+     * 写入后过期时间（毫秒），0 表示不过期
+     */
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    public LocalLruCache(int maxEntries) {
+        this(maxEntries, 0);
+    }
+
+    public LocalLruCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于 0");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > LocalLruCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            map.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        long expireAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+        map.put(key, new Entry<>(value, expireAt));
+    }
+
+    public synchronized void remove(K key) {
+        map.remove(key);
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    private record Entry<V>(V value, long expireAt) {
+
+        boolean isExpired() {
+            return expireAt > 0 && System.currentTimeMillis() >= expireAt;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.springleaf.knowseek.cache;
+
+import com.springleaf.knowseek.mapper.mysql.FileUploadMapper;
+import com.springleaf.knowseek.mapper.mysql.KnowledgeBaseMapper;
+import com.springleaf.knowseek.model.domain.IdNameDO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 文件名、知识库名缓存
+ * 未命中的 ID 合并为一次 IN 查询；重命名、删除时由调用方主动失效，其他实例上的旧值最多保留 ttl-minutes
+ * 已删除或不存在的 ID 不缓存、也不出现在返回结果中
+ */
+@Slf4j
+@Component
+public class NameCache {
+
+    private final FileUploadMapper fileUploadMapper;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final LocalLruCache<Long, String> fileNames;
+    private final LocalLruCache<Long, String> knowledgeBaseNames;
+
+    public NameCache(FileUploadMapper fileUploadMapper,
+                     KnowledgeBaseMapper knowledgeBaseMapper,
+                     @Value("${knowseek.name-cache.max-entries:10000}") int maxEntries,
+                     @Value("${knowseek.name-cache.ttl-minutes:10}") long ttlMinutes) {
+        this.fileUploadMapper = fileUploadMapper;
+        this.knowledgeBaseMapper = knowledgeBaseMapper;
+        this.fileNames = new LocalLruCache<>(maxEntries, ttlMinutes * 60_000);
+        this.knowledgeBaseNames = new LocalLruCache<>(maxEntries, ttlMinutes * 60_000);
+    }
+
+    /**
+     * 批量获取文件名
+     * @return 文件ID -> 文件名，不包含已删除的文件
+     */
+    public Map<Long, String> getFileNames(Collection<Long> fileIds) {
+        return getNames(fileIds, fileNames, fileUploadMapper::selectNamesByIds);
+    }
+
+    /**
+     * 批量获取知识库名称
+     * @return 知识库ID -> 知识库名称，不包含已删除的知识库
+     */
+    public Map<Long, String> getKnowledgeBaseNames(Collection<Long> knowledgeBaseIds) {
+        return getNames(knowledgeBaseIds, knowledgeBaseNames, knowledgeBaseMapper::selectNamesByIds);
+    }
+
+    public String getKnowledgeBaseName(Long knowledgeBaseId) {
+        if (knowledgeBaseId == null) {
+            return null;
+        }
+        return getKnowledgeBaseNames(List.of(knowledgeBaseId)).get(knowledgeBaseId);
+    }
+
+    public void evictFile(Long fileId) {
+        fileNames.remove(fileId);
+    }
+
+    public void evictKnowledgeBase(Long knowledgeBaseId) {
+        knowledgeBaseNames.remove(knowledgeBaseId);
+    }
+
+    private Map<Long, String> getNames(Collection<Long> ids, LocalLruCache<Long, String> cache,
+                                       Function<Collection<Long>, List<IdNameDO>> loader) {
+        Map<Long, String> result = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (id == null || result.containsKey(id)) {
+                continue;
+            }
+            String name = cache.get(id);
+            if (name != null) {
+                result.put(id, name);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (IdNameDO row : loader.apply(missing)) {
+                cache.put(row.getId(), row.getName());
+                result.put(row.getId(), row.getName());
+            }
+            log.debug("名称缓存命中 {} 个，查询数据库 {} 个", result.size() - missing.size(), missing.size());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+package com.springleaf.knowseek.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 问题向量缓存的命中与耗时统计（进程级累计）
+ */
+public class QueryEmbeddingMetrics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hitNanos = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+
+    public void record(boolean hit, long elapsedNanos) {
+        if (hit) {
+            hits.increment();
+            hitNanos.add(elapsedNanos);
+        } else {
+            misses.increment();
+            missNanos.add(elapsedNanos);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getTotal() {
+        return getHits() + getMisses();
+    }
+
+    public double getHitRate() {
+        long total = getTotal();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    /**
+     * 命中时的平均耗时（毫秒）
+     */
+    public double getAvgHitMillis() {
+        long count = getHits();
+        return count == 0 ? 0 : hitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * 未命中（调用远程接口）时的平均耗时（毫秒）
+     */
+    public double getAvgMissMillis() {
+        long count = getMisses();
+        return count == 0 ? 0 : missNanos.sum() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("命中 %d，未命中 %d，命中率 %.1f%%，命中平均耗时 %.2f ms，未命中平均耗时 %.2f ms",
+                getHits(), getMisses(), getHitRate() * 100, getAvgHitMillis(), getAvgMissMillis());
+    }
+}
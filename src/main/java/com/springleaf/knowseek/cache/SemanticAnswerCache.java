@@ -0,0 +1,285 @@
+package com.springleaf.knowseek.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 知识库语义答案缓存
+ * 按检索范围（检索的知识库 + 所在组织）隔离保存（问题向量, 检索到的分片 ID 集合, 最终答案），新问题与缓存问题的余弦相似度达到阈值、
+ * 且本次检索到的分片集合与缓存时完全一致时，直接复用缓存答案，不再调用大模型
+ * 每条答案记录其依赖的知识库（检索范围内的知识库 + 提供了分片的知识库，含组织共享的知识库），
+ * 其中任一知识库内文件新增或删除时该答案失效；缓存仅在当前进程内有效
+ * 容量：每个检索范围最多 maxEntriesPerScope 条，所有范围合计最多 maxEntries 条，超出时淘汰全局最早写入的答案；
+ * 过期答案与空的检索范围由定时任务清理，不依赖该范围再次被查询
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    @Value("${knowseek.rag.answer-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 命中所需的最小余弦相似度
+     */
+    @Value("${knowseek.rag.answer-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    /**
+     * 每个检索范围最多缓存的答案数，超出后淘汰最早写入的
+     */
+    @Value("${knowseek.rag.answer-cache.max-entries-per-scope:200}")
+    private int maxEntriesPerScope;
+
+    /**
+     * 所有检索范围合计最多缓存的答案数（每条含 1024 维向量与完整答案），超出后淘汰全局最早写入的
+     */
+    @Value("${knowseek.rag.answer-cache.max-entries:5000}")
+    private int maxEntries;
+
+    /**
+     * 缓存答案的有效期（分钟）
+     */
+    @Value("${knowseek.rag.answer-cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    private final Map<Scope, Deque<Entry>> entriesByScope = new ConcurrentHashMap<>();
+
+    /**
+     * 所有检索范围的答案总数
+     */
+    private final AtomicInteger totalEntries = new AtomicInteger();
+
+    /**
+     * 查找可复用的答案
+     * @param scope       本次检索范围
+     * @param queryVector 本次问题向量
+     * @param chunkIds    本次检索到的分片 ID 集合
+     * @return 缓存答案，未命中返回 null
+     */
+    public String lookup(Scope scope, float[] queryVector, Set<Long> chunkIds) {
+        if (!enabled || scope == null || chunkIds.isEmpty()) {
+            return null;
+        }
+        Deque<Entry> entries = entriesByScope.get(scope);
+        if (entries == null) {
+            return null;
+        }
+
+        float[] normalized = normalize(queryVector);
+        long now = System.currentTimeMillis();
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.expireAt() <= now) {
+                    iterator.remove();
+                    totalEntries.decrementAndGet();
+                    continue;
+                }
+                if (!entry.chunkIds().equals(chunkIds)) {
+                    continue;
+                }
+                double similarity = dot(normalized, entry.queryVector());
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        if (best != null) {
+            log.info("语义答案缓存命中，检索范围: {}，相似度: {}", scope, String.format("%.4f", bestSimilarity));
+            return best.answer();
+        }
+        return null;
+    }
+
+    /**
+     * 写入一条答案
+     * @param sourceKnowledgeBaseIds 提供了上下文分片的知识库，与检索范围内的知识库一起作为该答案的失效依据
+     */
+    public void put(Scope scope, Set<Long> sourceKnowledgeBaseIds, float[] queryVector, Set<Long> chunkIds, String answer) {
+        if (!enabled || scope == null || chunkIds.isEmpty() || answer == null || answer.isBlank()) {
+            return;
+        }
+        Set<Long> dependencies = new HashSet<>(scope.knowledgeBaseIds());
+        dependencies.addAll(sourceKnowledgeBaseIds);
+        Entry entry = new Entry(normalize(queryVector), Set.copyOf(chunkIds), Set.copyOf(dependencies), answer,
+                System.currentTimeMillis() + ttlMinutes * 60_000);
+        // 与 invalidate 移除空范围互斥，避免写入已被移除的队列
+        entriesByScope.compute(scope, (key, entries) -> {
+            Deque<Entry> target = entries != null ? entries : new ArrayDeque<>();
+            synchronized (target) {
+                target.addLast(entry);
+                totalEntries.incrementAndGet();
+                while (target.size() > maxEntriesPerScope) {
+                    target.pollFirst();
+                    totalEntries.decrementAndGet();
+                }
+            }
+            return target;
+        });
+        while (totalEntries.get() > maxEntries && evictOldest()) {
+            // 逐条淘汰全局最早写入的答案，直到回到总量上限以内
+        }
+    }
+
+    /**
+     * 定时清理过期答案，并移除清空后的检索范围，避免不再被查询的范围一直占用内存
+     */
+    @Scheduled(fixedDelayString = "${knowseek.rag.answer-cache.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        AtomicInteger removed = new AtomicInteger();
+        for (Scope scope : entriesByScope.keySet()) {
+            entriesByScope.computeIfPresent(scope, (key, entries) -> {
+                synchronized (entries) {
+                    int before = entries.size();
+                    entries.removeIf(entry -> entry.expireAt() <= now);
+                    removed.addAndGet(before - entries.size());
+                    totalEntries.addAndGet(entries.size() - before);
+                    return entries.isEmpty() ? null : entries;
+                }
+            });
+        }
+        if (removed.get() > 0) {
+            log.debug("清理过期语义答案 {} 条，剩余 {} 条，{} 个检索范围", removed, totalEntries.get(), entriesByScope.size());
+        }
+    }
+
+    /**
+     * 当前缓存的答案总数
+     */
+    public int size() {
+        return totalEntries.get();
+    }
+
+    /**
+     * 淘汰全局最早写入的一条答案（有效期相同，即过期时间最早的一条）
+     * @return 没有可淘汰的答案时返回 false
+     */
+    private boolean evictOldest() {
+        Scope oldestScope = null;
+        long oldestExpireAt = Long.MAX_VALUE;
+        for (Map.Entry<Scope, Deque<Entry>> scopeEntries : entriesByScope.entrySet()) {
+            Deque<Entry> entries = scopeEntries.getValue();
+            synchronized (entries) {
+                Entry head = entries.peekFirst();
+                if (head != null && head.expireAt() < oldestExpireAt) {
+                    oldestScope = scopeEntries.getKey();
+                    oldestExpireAt = head.expireAt();
+                }
+            }
+        }
+        if (oldestScope == null) {
+            return false;
+        }
+        entriesByScope.computeIfPresent(oldestScope, (key, entries) -> {
+            synchronized (entries) {
+                if (entries.pollFirst() != null) {
+                    totalEntries.decrementAndGet();
+                }
+                return entries.isEmpty() ? null : entries;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 知识库内容变化（文件新增、删除）时清空依赖该知识库的缓存答案，无论其检索范围是否以该知识库为主
+     * 只清除当前实例的缓存：多实例部署时，其他实例中依赖该知识库的答案在过期（ttl-minutes）前仍可能被复用，
+     * 对一致性要求高时应调小 ttl-minutes 或关闭该缓存
+     */
+    public void invalidate(Long knowledgeBaseId) {
+        if (knowledgeBaseId == null) {
+            return;
+        }
+        AtomicInteger removed = new AtomicInteger();
+        for (Scope scope : entriesByScope.keySet()) {
+            entriesByScope.computeIfPresent(scope, (key, entries) -> {
+                synchronized (entries) {
+                    Iterator<Entry> iterator = entries.iterator();
+                    while (iterator.hasNext()) {
+                        if (iterator.next().knowledgeBaseIds().contains(knowledgeBaseId)) {
+                            iterator.remove();
+                            totalEntries.decrementAndGet();
+                            removed.incrementAndGet();
+                        }
+                    }
+                    return entries.isEmpty() ? null : entries;
+                }
+            });
+        }
+        if (removed.get() > 0) {
+            log.info("知识库内容变化，清空语义答案缓存 {} 条，知识库ID: {}", removed, knowledgeBaseId);
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] result = new float[vector.length];
+        if (norm == 0) {
+            return result;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = (float) (vector[i] / norm);
+        }
+        return result;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 检索范围：检索的知识库 + 所在组织（组织共享分片），均按 ID 排序，顺序不同的同一范围视为相同
+     */
+    public record Scope(Set<Long> knowledgeBaseIds, Set<Long> organizationIds) {
+
+        public static Scope of(Long[] knowledgeBaseIds, Long[] organizationIds) {
+            return new Scope(sortedIds(knowledgeBaseIds), sortedIds(organizationIds));
+        }
+
+        private static Set<Long> sortedIds(Long[] ids) {
+            Set<Long> sorted = new TreeSet<>();
+            if (ids != null) {
+                Arrays.stream(ids).filter(Objects::nonNull).forEach(sorted::add);
+            }
+            return sorted;
+        }
+    }
+
+    /**
+     * @param queryVector      已归一化的问题向量
+     * @param knowledgeBaseIds 答案依赖的知识库，任一变化即失效
+     */
+    private record Entry(float[] queryVector, Set<Long> chunkIds, Set<Long> knowledgeBaseIds, String answer, long expireAt) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.springleaf.knowseek.config;
+
+import com.springleaf.knowseek.mq.parser.RecursiveTextSplitter;
+import com.springleaf.knowseek.tokenizer.BpeTokenizer;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.validation.annotation.Validated;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 文件分片配置
+ * 默认按字符分片（块大小、重叠见 AbstractFileParserStrategy）；mode 为 tokens 时按向量模型的 Token 数分片，
+ * 中英文每个 Token 对应的字符数差别很大，按 Token 计才能让分块大小稳定且不被向量模型截断
+ * 分块是检索和组装上下文的单位，块大小需远小于上下文 Token 预算（knowseek.rag.context.token-budget），否则分片无法装入上下文
+ */
+@Slf4j
+@Configuration
+@ConfigurationProperties(prefix = "knowseek.parser.chunk")
+@Data
+@Validated
+public class ChunkingConfig {
+
+    /**
+     * 默认上下文 Token 预算至少能容纳的分块数
+     */
+    private static final int MIN_CHUNKS_PER_CONTEXT = 2;
+
+    /**
+     * 分片长度的计量方式：chars（按字符，默认）| tokens（按 Token）
+     */
+    private String mode = "chars";
+
+    /**
+     * 按 Token 分片时每块的 Token 上限
+     */
+    @Min(value = 1, message = "chunkTokens 必须大于 0")
+    private int chunkTokens = 800;
+
+    /**
+     * 按 Token 分片时相邻块的重叠 Token 数
+     */
+    @Min(value = 0, message = "overlapTokens 不能为负数")
+    private int overlapTokens = 200;
+
+    /**
+     * 向量模型单条输入的 Token 上限（text-embedding-v4 为 8192），chunkTokens 不能超过该值
+     */
+    @Min(value = 1, message = "maxInputTokens 必须大于 0")
+    private int maxInputTokens = 8192;
+
+    /**
+     * 与向量模型一致的 BPE 词表（tiktoken 格式，text-embedding-v4 使用 Qwen 的 qwen.tiktoken），按 Token 分片时必须提供；
+     * 按字符类别估算的 Token 数对代码、数字、符号偏差可达数倍，不能保证分块不超过 chunkTokens，因此不作为兜底
+     */
+    private String vocabulary = "classpath:tokenizer/qwen.tiktoken";
+
+    @Bean
+    @ConditionalOnProperty(prefix = "knowseek.parser.chunk", name = "mode", havingValue = "tokens")
+    public RecursiveTextSplitter tokenTextSplitter(ResourceLoader resourceLoader,
+            @Value("${knowseek.rag.context.token-budget:3000}") int contextTokenBudget) throws IOException {
+        if (chunkTokens > maxInputTokens) {
+            throw new IllegalStateException(String.format("chunkTokens（%d）不能超过向量模型的输入上限 maxInputTokens（%d）",
+                    chunkTokens, maxInputTokens));
+        }
+        if (overlapTokens >= chunkTokens) {
+            throw new IllegalStateException(String.format("overlapTokens（%d）必须小于 chunkTokens（%d）",
+                    overlapTokens, chunkTokens));
+        }
+
+        // 上下文按 TokenCountUtil 估算分片大小，中文估算值高于 BPE 计数，至少留出两个分片的空间
+        if (chunkTokens * MIN_CHUNKS_PER_CONTEXT > contextTokenBudget) {
+            throw new IllegalStateException(String.format(
+                    "chunkTokens（%d）过大，上下文 Token 预算 knowseek.rag.context.token-budget（%d）至少要能容纳 %d 个分块",
+                    chunkTokens, contextTokenBudget, MIN_CHUNKS_PER_CONTEXT));
+        }
+
+        Resource resource = resourceLoader.getResource(vocabulary);
+        if (!resource.exists()) {
+            throw new IllegalStateException(String.format(
+                    "按 Token 分片需要 BPE 词表，未找到 %s（构建时下载失败）；请联网重新构建、手动放置词表或改回 knowseek.parser.chunk.mode=chars", vocabulary));
+        }
+        BpeTokenizer tokenizer;
+        long start = System.currentTimeMillis();
+        try (InputStream inputStream = resource.getInputStream()) {
+            tokenizer = BpeTokenizer.load(inputStream);
+        }
+        log.info("BPE 词表加载完成: {}，共 {} 个 Token，耗时 {} ms",
+                vocabulary, tokenizer.vocabularySize(), System.currentTimeMillis() - start);
+        log.info("按 Token 分片，每块不超过 {} 个 Token，重叠 {} 个 Token", chunkTokens, overlapTokens);
+        return new RecursiveTextSplitter(chunkTokens, overlapTokens, tokenizer);
+    }
+}
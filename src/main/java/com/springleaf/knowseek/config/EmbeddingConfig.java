@@ -0,0 +1,196 @@
+package com.springleaf.knowseek.config;
+
+import com.springleaf.knowseek.cache.EmbeddingCache;
+import com.springleaf.knowseek.constans.EmbeddingRedisKeyConstant;
+import com.springleaf.knowseek.limiter.EmbeddingRateLimiter;
+import com.springleaf.knowseek.limiter.LocalTokenBucket;
+import com.springleaf.knowseek.limiter.RedisTokenBucket;
+import com.springleaf.knowseek.limiter.TokenBucket;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * 向量化（DashScope Embedding）调用配置
+ */
+@Slf4j
+@Configuration
+@ConfigurationProperties(prefix = "knowseek.embedding")
+@Data
+@Validated
+public class EmbeddingConfig {
+
+    private static final String LIMITER_REDIS = "redis";
+
+    /**
+     * 单次请求最多携带的文本数（DashScope 批处理限制为 25）
+     */
+    @Min(value = 1, message = "batchSize 必须大于 0")
+    private int batchSize = 25;
+
+    /**
+     * 每分钟最多请求数
+     */
+    @Min(value = 1, message = "requestsPerMinute 必须大于 0")
+    private long requestsPerMinute = 1800;
+
+    /**
+     * 每分钟最多 Token 数，0 表示不限制
+     */
+    @Min(value = 0, message = "tokensPerMinute 不能为负数")
+    private long tokensPerMinute = 1_200_000;
+
+    /**
+     * 进程内同时在途的向量化请求数上限
+     */
+    @Min(value = 1, message = "maxConcurrency 必须大于 0")
+    private int maxConcurrency = 8;
+
+    /**
+     * 从 RPM / TPM 中为问题向量化（对话检索）预留的比例，分片向量化只使用其余配额；0 表示共用同一份配额
+     */
+    @DecimalMin(value = "0.0", message = "queryReservedShare 不能为负数")
+    @DecimalMax(value = "0.5", message = "queryReservedShare 不能大于 0.5")
+    private double queryReservedShare = 0.1;
+
+    /**
+     * 问题向量化单独的在途请求数上限，不与分片向量化争抢 maxConcurrency
+     */
+    @Min(value = 1, message = "queryMaxConcurrency 必须大于 0")
+    private int queryMaxConcurrency = 2;
+
+    /**
+     * 限流器类型：local（进程内，默认）| redis（多实例共享配额）
+     */
+    private String limiter = "local";
+
+    /**
+     * 分片向量缓存配置
+     */
+    @Valid
+    private Cache cache = new Cache();
+
+    /**
+     * 问题向量缓存配置（对话检索时的用户问题），问题重复度高但时效性要求高于分片，默认容量更小、带过期时间
+     */
+    @Valid
+    private Cache queryCache = new Cache(true, 2000, 60, false, 24);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Cache {
+
+        /**
+         * 是否启用缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 进程内缓存条目上限（1024 维向量每条约 4KB）
+         */
+        @Min(value = 1, message = "localMaxEntries 必须大于 0")
+        private int localMaxEntries = 10000;
+
+        /**
+         * 进程内缓存写入后过期时间（分钟），0 表示不过期
+         */
+        @Min(value = 0, message = "localTtlMinutes 不能为负数")
+        private long localTtlMinutes = 0;
+
+        /**
+         * 是否启用 Redis 缓存层
+         */
+        private boolean redisEnabled = false;
+
+        /**
+         * Redis 缓存层过期时间（小时）
+         */
+        @Min(value = 1, message = "redisTtlHours 必须大于 0")
+        private long redisTtlHours = 24 * 7;
+    }
+
+    @Bean
+    public EmbeddingRateLimiter embeddingRateLimiter(ObjectProvider<StringRedisTemplate> stringRedisTemplateProvider) {
+        StringRedisTemplate stringRedisTemplate = LIMITER_REDIS.equalsIgnoreCase(limiter)
+                ? stringRedisTemplateProvider.getObject() : null;
+        // 预留份额至少 1 个请求，其余归分片向量化
+        long queryRequestsPerMinute = queryReservedShare > 0
+                ? Math.max(1, Math.round(requestsPerMinute * queryReservedShare)) : 0;
+        long queryTokensPerMinute = queryReservedShare > 0 && tokensPerMinute > 0
+                ? Math.max(1, Math.round(tokensPerMinute * queryReservedShare)) : 0;
+        long ingestRequestsPerMinute = Math.max(1, requestsPerMinute - queryRequestsPerMinute);
+        long ingestTokensPerMinute = tokensPerMinute > 0 ? Math.max(1, tokensPerMinute - queryTokensPerMinute) : 0;
+
+        TokenBucket requestBucket = bucket(stringRedisTemplate,
+                EmbeddingRedisKeyConstant.RATE_LIMIT_REQUEST_KEY, ingestRequestsPerMinute);
+        TokenBucket tokenBucket = bucket(stringRedisTemplate,
+                EmbeddingRedisKeyConstant.RATE_LIMIT_TOKEN_KEY, ingestTokensPerMinute);
+        TokenBucket queryRequestBucket = bucket(stringRedisTemplate,
+                EmbeddingRedisKeyConstant.RATE_LIMIT_QUERY_REQUEST_KEY, queryRequestsPerMinute);
+        TokenBucket queryTokenBucket = bucket(stringRedisTemplate,
+                EmbeddingRedisKeyConstant.RATE_LIMIT_QUERY_TOKEN_KEY, queryTokensPerMinute);
+        log.info("向量化限流器初始化完成，类型: {}，RPM: {}（问题向量化预留 {}），TPM: {}（问题向量化预留 {}），最大并发: {} + {}",
+                limiter, requestsPerMinute, queryRequestsPerMinute, tokensPerMinute, queryTokensPerMinute,
+                maxConcurrency, queryMaxConcurrency);
+        return new EmbeddingRateLimiter(requestBucket, tokenBucket, queryRequestBucket, queryTokenBucket);
+    }
+
+    /**
+     * 桶容量取 1 秒的配额，避免启动或空闲后一次性放出整分钟的突发请求
+     * @param stringRedisTemplate 为 null 时创建进程内令牌桶
+     * @return permitsPerMinute 为 0（不限制或未预留）时返回 null
+     */
+    private static TokenBucket bucket(StringRedisTemplate stringRedisTemplate, String key, long permitsPerMinute) {
+        if (permitsPerMinute <= 0) {
+            return null;
+        }
+        long capacity = Math.max(1, permitsPerMinute / 60);
+        return stringRedisTemplate != null
+                ? new RedisTokenBucket(stringRedisTemplate, key, permitsPerMinute, capacity)
+                : new LocalTokenBucket(permitsPerMinute, capacity);
+    }
+
+    @Bean("embeddingCache")
+    public EmbeddingCache embeddingCache(ObjectProvider<StringRedisTemplate> stringRedisTemplateProvider,
+                                         @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v4}") String model,
+                                         @Value("${spring.ai.dashscope.embedding.options.dimensions:1024}") int dimensions) {
+        return buildCache("分片向量缓存", cache, EmbeddingRedisKeyConstant.EMBEDDING_CACHE_KEY,
+                model + ":" + dimensions, stringRedisTemplateProvider);
+    }
+
+    @Bean("queryEmbeddingCache")
+    public EmbeddingCache queryEmbeddingCache(ObjectProvider<StringRedisTemplate> stringRedisTemplateProvider,
+                                              @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v4}") String model,
+                                              @Value("${spring.ai.dashscope.embedding.options.dimensions:1024}") int dimensions) {
+        return buildCache("问题向量缓存", queryCache, EmbeddingRedisKeyConstant.QUERY_EMBEDDING_CACHE_KEY,
+                model + ":" + dimensions, stringRedisTemplateProvider);
+    }
+
+    private EmbeddingCache buildCache(String name, Cache properties, String redisKeyPattern, String modelId,
+                                      ObjectProvider<StringRedisTemplate> stringRedisTemplateProvider) {
+        if (!properties.isEnabled()) {
+            log.info("{}未启用", name);
+            return EmbeddingCache.disabled();
+        }
+        StringRedisTemplate stringRedisTemplate = properties.isRedisEnabled() ? stringRedisTemplateProvider.getObject() : null;
+        log.info("{}初始化完成，进程内上限: {} 条，Redis 层: {}", name, properties.getLocalMaxEntries(), properties.isRedisEnabled());
+        return new EmbeddingCache(modelId, redisKeyPattern,
+                properties.getLocalMaxEntries(), Duration.ofMinutes(properties.getLocalTtlMinutes()),
+                stringRedisTemplate, Duration.ofHours(properties.getRedisTtlHours()));
+    }
+}
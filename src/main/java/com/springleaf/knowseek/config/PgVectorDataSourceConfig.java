@@ -1,7 +1,9 @@
 package com.springleaf.knowseek.config;
 
+import com.springleaf.knowseek.handler.PgVectorBinaryTypeHandler;
 import com.springleaf.knowseek.handler.VectorTypeHandler;
 import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionFactoryBean;
 import org.mybatis.spring.SqlSessionTemplate;
@@ -16,10 +18,16 @@ import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * PostgreSQL vector 数据源配置
  */
+@Slf4j
 @Configuration
 @MapperScan(
         basePackages = "com.springleaf.knowseek.mapper.pgvector",
@@ -27,6 +35,11 @@ import javax.sql.DataSource;
 )
 public class PgVectorDataSourceConfig {
 
+    /**
+     * 向量列编解码方式：text 为文本格式（默认），binary 为 pgvector 二进制格式
+     */
+    private static final String CODEC_BINARY = "binary";
+
     @Bean("pgVectorDataSource")
     public DataSource pgVectorDataSource(
             @Value("${spring.datasource.pgvector.driver-class-name}") String driverClassName,
@@ -38,7 +51,8 @@ public class PgVectorDataSourceConfig {
             @Value("${spring.datasource.pgvector.hikari.idle-timeout:300000}") long idleTimeout,
             @Value("${spring.datasource.pgvector.hikari.max-lifetime:1200000}") long maxLifetime,
             @Value("${spring.datasource.pgvector.hikari.connection-timeout:30000}") long connectionTimeout,
-            @Value("${spring.datasource.pgvector.hikari.pool-name}") String poolName) {
+            @Value("${spring.datasource.pgvector.hikari.pool-name}") String poolName,
+            @Value("${knowseek.pgvector.codec:text}") String codec) {
 
         HikariDataSource dataSource = new HikariDataSource();
         dataSource.setDriverClassName(driverClassName);
@@ -57,6 +71,13 @@ public class PgVectorDataSourceConfig {
         dataSource.setAutoCommit(true);
         dataSource.setPoolName(poolName);
 
+        // 二进制编解码：对 vector 类型开启驱动的二进制收发
+        if (CODEC_BINARY.equalsIgnoreCase(codec)) {
+            String vectorOid = resolveVectorOid(driverClassName, url, username, password);
+            dataSource.addDataSourceProperty("binaryTransferEnable", vectorOid);
+            log.info("pgvector 启用二进制编解码，vector 类型 OID: {}", vectorOid);
+        }
+
         return dataSource;
     }
 
@@ -67,7 +88,8 @@ public class PgVectorDataSourceConfig {
 
     @Bean("pgVectorSqlSessionFactory")
     public SqlSessionFactory pgVectorSqlSessionFactory(
-            @Qualifier("pgVectorDataSource") DataSource pgVectorDataSource) throws Exception {
+            @Qualifier("pgVectorDataSource") DataSource pgVectorDataSource,
+            @Value("${knowseek.pgvector.codec:text}") String codec) throws Exception {
 
         SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
         factoryBean.setDataSource(pgVectorDataSource);
@@ -76,8 +98,10 @@ public class PgVectorDataSourceConfig {
                         .getResources("classpath:/mapper/pgvector/*.xml")
         );
 
-        // 显式注册自定义 TypeHandler
-        factoryBean.setTypeHandlers(new VectorTypeHandler());
+        // 显式注册自定义 TypeHandler，文本格式作为默认与回退方案
+        factoryBean.setTypeHandlers(CODEC_BINARY.equalsIgnoreCase(codec)
+                ? new PgVectorBinaryTypeHandler()
+                : new VectorTypeHandler());
 
         return factoryBean.getObject();
     }
@@ -92,4 +116,25 @@ public class PgVectorDataSourceConfig {
     public PlatformTransactionManager pgVectorTransactionManager(@Qualifier("pgVectorDataSource") DataSource dataSource) {
         return new DataSourceTransactionManager(dataSource);
     }
-}
\ No newline at end of file
+
+    /**
+     * 查询 vector 类型的 OID
+     * OID 由 CREATE EXTENSION 时分配，各库不同，驱动的 binaryTransferEnable 只接受数字 OID，
+     * 因此在连接池创建前用一次性连接查出
+     */
+    private String resolveVectorOid(String driverClassName, String url, String username, String password) {
+        try {
+            Class.forName(driverClassName);
+            try (Connection connection = DriverManager.getConnection(url, username, password);
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT oid FROM pg_type WHERE typname = 'vector'")) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("未找到 vector 类型，请确认已执行 CREATE EXTENSION vector");
+                }
+                return String.valueOf(rs.getLong(1));
+            }
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IllegalStateException("查询 vector 类型 OID 失败: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.springleaf.knowseek.constans;
+
+/**
+ * 对话会话相关 Redis Key
+ */
+public final class ChatRedisKeyConstant {
+
+    private ChatRedisKeyConstant() {}
+
+    /**
+     * 会话信息 STRING（JSON）：knowseek:chat:session:{sessionId}
+     */
+    public static final String SESSION_KEY = "knowseek:chat:session:%s";
+
+    /**
+     * 会话删除标记 STRING：knowseek:chat:session:deleted:{sessionId}，短期存在，期间不再把会话回填到缓存
+     */
+    public static final String SESSION_DELETED_KEY = "knowseek:chat:session:deleted:%s";
+
+    /**
+     * 会话最近消息窗口 LIST（JSON，旧 -> 新）：knowseek:chat:messages:{sessionId}
+     */
+    public static final String SESSION_MESSAGES_KEY = "knowseek:chat:messages:%s";
+
+    /**
+     * 待回写 updated_at 的会话 ZSET：member 为会话ID，score 为最后活跃时间（毫秒）
+     */
+    public static final String SESSION_DIRTY_KEY = "knowseek:chat:session:dirty";
+
+    /**
+     * 待落库消息 STREAM（JSON），消息写入 MySQL 后删除；进程崩溃后由恢复任务重放
+     */
+    public static final String MESSAGE_PENDING_STREAM_KEY = "knowseek:chat:message:pending";
+
+    /**
+     * 会话消息清空标记 STRING：knowseek:chat:message:discarded:{sessionId}，值为清空时刻可能生成的最大消息ID，
+     * ID 不大于该值的待落库消息（含其他实例 Stream 中遗留的）不再写入
+     */
+    public static final String MESSAGE_DISCARDED_KEY = "knowseek:chat:message:discarded:%s";
+
+    /**
+     * 消息ID生成器节点号分配计数器
+     */
+    public static final String MESSAGE_ID_WORKER_KEY = "knowseek:chat:message:worker";
+}
@@ -0,0 +1,39 @@
+package com.springleaf.knowseek.constans;
+
+/**
+ * 向量化相关 Redis Key
+ */
+public final class EmbeddingRedisKeyConstant {
+
+    private EmbeddingRedisKeyConstant() {}
+
+    /**
+     * 向量化接口请求数令牌桶 HASH（tokens / ts）
+     */
+    public static final String RATE_LIMIT_REQUEST_KEY = "knowseek:embedding:rate_limit:request";
+
+    /**
+     * 向量化接口 Token 数令牌桶 HASH（tokens / ts）
+     */
+    public static final String RATE_LIMIT_TOKEN_KEY = "knowseek:embedding:rate_limit:token";
+
+    /**
+     * 问题向量化预留的请求数令牌桶 HASH（tokens / ts）
+     */
+    public static final String RATE_LIMIT_QUERY_REQUEST_KEY = "knowseek:embedding:rate_limit:query_request";
+
+    /**
+     * 问题向量化预留的 Token 数令牌桶 HASH（tokens / ts）
+     */
+    public static final String RATE_LIMIT_QUERY_TOKEN_KEY = "knowseek:embedding:rate_limit:query_token";
+
+    /**
+     * 分片向量缓存 STRING：knowseek:embedding:cache:{sha256(模型标识 + 归一化文本)}，值为 Base64 编码的 float[]
+     */
+    public static final String EMBEDDING_CACHE_KEY = "knowseek:embedding:cache:%s";
+
+    /**
+     * 问题向量缓存 STRING：knowseek:embedding:query:{sha256(模型标识 + 归一化问题)}，值为 Base64 编码的 float[]
+     */
+    public static final String QUERY_EMBEDDING_CACHE_KEY = "knowseek:embedding:query:%s";
+}
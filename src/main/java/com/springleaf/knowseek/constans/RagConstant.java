@@ -8,15 +8,35 @@ public final class RagConstant {
     /**
      * 检索时最多召回的文档数量
      */
-    public static final int TOPK = 50;
+    public static final int TOPK = 100;
 
     /**
-     * 召回后最多保留的文件数
+     * 召回分片的最大余弦距离（相似度低于 0.4 的分片丢弃）
      */
-    public static final int MAX_FILES = 3;
+    public static final double MAX_DISTANCE = 0.6;
 
     /**
-     * 每个文件最多保留的分片数
+     * HNSW 检索的 ef_search，需不小于 TOPK
      */
-    public static final int CHUNKS_PER_FILE = 3;
+    public static final int HNSW_EF_SEARCH = 200;
+
+    /**
+     * 关键词检索最多召回的分片数量
+     */
+    public static final int LEXICAL_TOPK = 50;
+
+    /**
+     * 向量召回超时时间（毫秒），超时后仅使用关键词召回结果
+     */
+    public static final long VECTOR_RECALL_TIMEOUT_MS = 3000;
+
+    /**
+     * 关键词召回超时时间（毫秒），超时后仅使用向量召回结果
+     */
+    public static final long LEXICAL_RECALL_TIMEOUT_MS = 1500;
+
+    /**
+     * RRF 融合常数 k：score = Σ 1 / (k + rank)
+     */
+    public static final int RRF_K = 60;
 }
@@ -0,0 +1,146 @@
+package com.springleaf.knowseek.handler;
+
+import org.postgresql.util.PGBinaryObject;
+import org.postgresql.util.PGobject;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+
+/**
+ * pgvector 的 vector 类型对象，支持二进制收发（vector_send / vector_recv）
+ * 二进制格式：int16 维度 + int16 保留位 + 维度个 float4，均为大端序
+ * 当连接未对 vector 开启二进制传输时，驱动会回退到 getValue / setValue 的文本格式
+ */
+public class PgVectorBinaryObject extends PGobject implements PGBinaryObject {
+
+    public static final String TYPE_NAME = "vector";
+
+    private static final int HEADER_BYTES = 4;
+
+    private float[] vector;
+
+    public PgVectorBinaryObject() {
+        setType(TYPE_NAME);
+    }
+
+    public PgVectorBinaryObject(float[] vector) {
+        this();
+        this.vector = vector;
+    }
+
+    public float[] getVector() {
+        return vector;
+    }
+
+    // ========== 二进制格式 ==========
+
+    @Override
+    public void setByteValue(byte[] value, int offset) throws SQLException {
+        if (value == null) {
+            vector = null;
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(value, offset, value.length - offset);
+        int dimensions = buffer.getShort() & 0xFFFF;
+        buffer.getShort(); // 保留位
+        if (buffer.remaining() < dimensions * 4) {
+            throw new SQLException("Invalid binary vector, dimensions: " + dimensions + ", bytes: " + buffer.remaining());
+        }
+        float[] result = new float[dimensions];
+        buffer.asFloatBuffer().get(result);
+        vector = result;
+    }
+
+    @Override
+    public int lengthInBytes() {
+        return vector == null ? 0 : HEADER_BYTES + vector.length * 4;
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        if (vector == null) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, lengthInBytes());
+        buffer.putShort((short) vector.length);
+        buffer.putShort((short) 0);
+        for (float f : vector) {
+            // 与文本写入保持一致：NaN/Infinity 写为 0
+            buffer.putFloat(Float.isNaN(f) || Float.isInfinite(f) ? 0.0f : f);
+        }
+    }
+
+    // ========== 文本格式（回退） ==========
+
+    @Override
+    public void setValue(String value) throws SQLException {
+        vector = parseText(value);
+    }
+
+    @Override
+    public String getValue() {
+        if (vector == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(vector.length * 12 + 2);
+        sb.append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) sb.append(',');
+            float f = vector[i];
+            sb.append(Float.isNaN(f) || Float.isInfinite(f) ? 0.0f : f);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean isNull() {
+        return vector == null;
+    }
+
+    /**
+     * 解析 "[0.1,0.2,...]"，按逗号位置逐段解析，避免 split 产生中间数组
+     */
+    private static float[] parseText(String value) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) end--;
+        if (start < end && value.charAt(start) == '[') start++;
+        if (end > start && value.charAt(end - 1) == ']') end--;
+        if (start >= end) {
+            return new float[0];
+        }
+
+        int dimensions = 1;
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == ',') dimensions++;
+        }
+
+        float[] result = new float[dimensions];
+        int index = 0;
+        int partStart = start;
+        try {
+            for (int i = start; i <= end; i++) {
+                if (i == end || value.charAt(i) == ',') {
+                    String part = value.substring(partStart, i).trim();
+                    result[index++] = part.isEmpty() ? 0.0f : Float.parseFloat(part);
+                    partStart = i + 1;
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new SQLException("Failed to parse vector: " + value, e);
+        }
+        return result;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        PgVectorBinaryObject copy = (PgVectorBinaryObject) super.clone();
+        copy.vector = vector == null ? null : vector.clone();
+        return copy;
+    }
+}
@@ -0,0 +1,71 @@
+package com.springleaf.knowseek.handler;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+import org.postgresql.PGConnection;
+import org.postgresql.util.PGobject;
+
+import java.sql.*;
+
+/**
+ * 基于 pgvector 二进制格式的 float[] 类型处理器
+ * 写入时绑定 PgVectorBinaryObject，读取时由驱动直接构造 PgVectorBinaryObject，
+ * 连接开启 vector 二进制传输（binaryTransferEnable）后全程不经过文本编解码，
+ * 否则自动回退到文本格式，行为与 VectorTypeHandler 一致
+ */
+@MappedTypes(float[].class)
+@MappedJdbcTypes(JdbcType.OTHER)
+public class PgVectorBinaryTypeHandler extends BaseTypeHandler<float[]> {
+
+    private final VectorTypeHandler textHandler = new VectorTypeHandler();
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, float[] parameter, JdbcType jdbcType) throws SQLException {
+        if (parameter == null || parameter.length == 0) {
+            ps.setNull(i, Types.OTHER);
+            return;
+        }
+        registerType(ps.getConnection());
+        ps.setObject(i, new PgVectorBinaryObject(parameter));
+    }
+
+    @Override
+    public float[] getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        registerType(rs.getStatement().getConnection());
+        return toVector(rs.getObject(columnName));
+    }
+
+    @Override
+    public float[] getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        registerType(rs.getStatement().getConnection());
+        return toVector(rs.getObject(columnIndex));
+    }
+
+    @Override
+    public float[] getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        registerType(cs.getConnection());
+        return toVector(cs.getObject(columnIndex));
+    }
+
+    /**
+     * 在当前物理连接上注册 vector -> PgVectorBinaryObject 映射（幂等，开销为一次 Map 写入）
+     */
+    private void registerType(Connection connection) throws SQLException {
+        connection.unwrap(PGConnection.class).addDataType(PgVectorBinaryObject.TYPE_NAME, PgVectorBinaryObject.class);
+    }
+
+    private float[] toVector(Object value) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof PgVectorBinaryObject vectorObject) {
+            return vectorObject.getVector();
+        }
+        if (value instanceof PGobject pgObject) {
+            return textHandler.parseVectorString(pgObject.getValue());
+        }
+        return textHandler.parseVectorString(value.toString());
+    }
+}
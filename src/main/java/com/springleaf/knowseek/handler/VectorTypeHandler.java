@@ -19,10 +19,14 @@ public class VectorTypeHandler extends BaseTypeHandler<float[]> {
             return;
         }
 
+        ps.setObject(i, formatVectorString(parameter), Types.OTHER);
+    }
+
+    public String formatVectorString(float[] vector) {
         StringBuilder sb = new StringBuilder("[");
-        for (int j = 0; j < parameter.length; j++) {
+        for (int j = 0; j < vector.length; j++) {
             if (j > 0) sb.append(",");
-            float f = parameter[j];
+            float f = vector[j];
             if (Float.isNaN(f) || Float.isInfinite(f)) {
                 sb.append("0.0");
             } else {
@@ -30,7 +34,7 @@ public class VectorTypeHandler extends BaseTypeHandler<float[]> {
             }
         }
         sb.append("]");
-        ps.setObject(i, sb.toString(), Types.OTHER);
+        return sb.toString();
     }
 
     @Override
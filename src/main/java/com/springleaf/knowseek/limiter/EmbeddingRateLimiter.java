@@ -0,0 +1,78 @@
+package com.springleaf.knowseek.limiter;
+
+import java.util.List;
+
+/**
+ * 向量化接口限流器，同时约束 RPM（每分钟请求数）与 TPM（每分钟 Token 数）
+ * 进程内所有向量化调用共享同一个实例，redis 模式下多实例共享同一份配额
+ * 可为问题向量化（对话检索）单独预留一份配额：问题向量化只从预留配额中扣减，不排在分片向量化的大批预约之后
+ */
+public class EmbeddingRateLimiter {
+
+    private final TokenBucket requestBucket;
+    /**
+     * 为空表示不限制 TPM
+     */
+    private final TokenBucket tokenBucket;
+
+    /**
+     * 问题向量化的预留配额，为空表示与分片向量化共用 requestBucket / tokenBucket
+     */
+    private final TokenBucket queryRequestBucket;
+    /**
+     * 为空表示问题向量化不限制 TPM（仅在设置了 queryRequestBucket 时生效）
+     */
+    private final TokenBucket queryTokenBucket;
+
+    public EmbeddingRateLimiter(TokenBucket requestBucket, TokenBucket tokenBucket) {
+        this(requestBucket, tokenBucket, null, null);
+    }
+
+    public EmbeddingRateLimiter(TokenBucket requestBucket, TokenBucket tokenBucket,
+                                TokenBucket queryRequestBucket, TokenBucket queryTokenBucket) {
+        this.requestBucket = requestBucket;
+        this.tokenBucket = tokenBucket;
+        this.queryRequestBucket = queryRequestBucket;
+        this.queryTokenBucket = queryTokenBucket;
+    }
+
+    /**
+     * 为一次批量向量化请求申请配额，配额不足时阻塞等待
+     */
+    public void acquire(List<String> texts) throws InterruptedException {
+        acquire(requestBucket, tokenBucket, texts);
+    }
+
+    /**
+     * 为一次问题向量化请求申请配额，有预留配额时只从预留配额中扣减
+     */
+    public void acquireQuery(List<String> texts) throws InterruptedException {
+        if (queryRequestBucket == null) {
+            acquire(texts);
+            return;
+        }
+        acquire(queryRequestBucket, queryTokenBucket, texts);
+    }
+
+    private static void acquire(TokenBucket requestBucket, TokenBucket tokenBucket, List<String> texts)
+            throws InterruptedException {
+        long waitMillis = requestBucket.reserve(1);
+        if (tokenBucket != null) {
+            waitMillis = Math.max(waitMillis, tokenBucket.reserve(estimateTokens(texts)));
+        }
+        if (waitMillis > 0) {
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * 估算一批文本的 Token 数：按字符数计，中文约 1 字 1 Token，英文按字符计偏保守，宁可少发不超限
+     */
+    static long estimateTokens(List<String> texts) {
+        long tokens = 0;
+        for (String text : texts) {
+            tokens += text.length();
+        }
+        return Math.max(tokens, 1);
+    }
+}
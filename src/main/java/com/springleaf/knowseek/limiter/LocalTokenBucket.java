@@ -0,0 +1,40 @@
+package com.springleaf.knowseek.limiter;
+
+/**
+ * 进程内令牌桶，同一进程内的所有调用方共享
+ */
+public class LocalTokenBucket implements TokenBucket {
+
+    private final double capacity;
+    private final double permitsPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param permitsPerMinute 每分钟生成的令牌数
+     * @param capacity         桶容量（允许的突发量）
+     */
+    public LocalTokenBucket(long permitsPerMinute, long capacity) {
+        if (permitsPerMinute <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("令牌桶速率和容量必须大于 0");
+        }
+        this.capacity = capacity;
+        this.permitsPerNano = permitsPerMinute / 60_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    @Override
+    public synchronized long reserve(long permits) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+
+        tokens -= permits;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens / permitsPerNano / 1_000_000);
+    }
+}
@@ -0,0 +1,59 @@
+package com.springleaf.knowseek.limiter;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+
+/**
+ * 基于 Redis 的令牌桶，多个服务实例共享同一份配额
+ * 补充与扣减在一个 Lua 脚本中原子完成，时间取 Redis 服务器时钟，避免各实例时钟偏差
+ */
+public class RedisTokenBucket implements TokenBucket {
+
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local rate = tonumber(ARGV[2])
+            local permits = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1]) or capacity
+            local ts = tonumber(state[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) - permits
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 60000)
+            if tokens >= 0 then
+                return 0
+            end
+            return math.ceil(-tokens / rate)
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String key;
+    private final String capacity;
+    private final String permitsPerMilli;
+
+    /**
+     * @param key              令牌桶在 Redis 中的 Key
+     * @param permitsPerMinute 每分钟生成的令牌数
+     * @param capacity         桶容量（允许的突发量）
+     */
+    public RedisTokenBucket(StringRedisTemplate stringRedisTemplate, String key, long permitsPerMinute, long capacity) {
+        if (permitsPerMinute <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("令牌桶速率和容量必须大于 0");
+        }
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.key = key;
+        this.capacity = String.valueOf(capacity);
+        this.permitsPerMilli = String.valueOf(permitsPerMinute / 60_000.0);
+    }
+
+    @Override
+    public long reserve(long permits) {
+        Long waitMillis = stringRedisTemplate.execute(RESERVE_SCRIPT, Collections.singletonList(key),
+                capacity, permitsPerMilli, String.valueOf(permits));
+        return waitMillis == null ? 0 : waitMillis;
+    }
+}
@@ -0,0 +1,15 @@
+package com.springleaf.knowseek.limiter;
+
+/**
+ * 令牌桶
+ * 采用预约语义：reserve 总是立即扣减令牌（允许扣成负数），返回调用方需要等待的毫秒数，
+ * 后到的调用方自然排在前面预约的后面，不会出现重试争抢导致的饥饿
+ */
+public interface TokenBucket {
+
+    /**
+     * 预约 permits 个令牌
+     * @return 需要等待的毫秒数，0 表示可以立即执行
+     */
+    long reserve(long permits);
+}
@@ -1,9 +1,11 @@
 package com.springleaf.knowseek.mapper.mysql;
 
 import com.springleaf.knowseek.model.domain.FileWithKbNameDO;
+import com.springleaf.knowseek.model.domain.IdNameDO;
 import com.springleaf.knowseek.model.entity.FileUpload;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface FileUploadMapper {
@@ -59,6 +61,11 @@ public interface FileUploadMapper {
      */
     String getFileNameById(Long id);
 
+    /**
+     * 根据 ID 批量获取文件名（不含已删除的文件）
+     */
+    List<IdNameDO> selectNamesByIds(@Param("ids") Collection<Long> ids);
+
     /**
      * 分页查询文件列表，并关联知识库名称
      * @param userId 用户ID
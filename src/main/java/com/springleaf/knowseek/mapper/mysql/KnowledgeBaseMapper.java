@@ -1,8 +1,10 @@
 package com.springleaf.knowseek.mapper.mysql;
 
+import com.springleaf.knowseek.model.domain.IdNameDO;
 import com.springleaf.knowseek.model.entity.KnowledgeBase;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -56,4 +58,19 @@ public interface KnowledgeBaseMapper {
      * @return 返回知识库名称
      */
     String getNameById(Long id);
+
+    /**
+     * 根据ID批量获取未删除的知识库名称
+     * @param ids 知识库ID集合
+     * @return 知识库ID与名称列表
+     */
+    List<IdNameDO> selectNamesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 从给定的知识库ID中筛选出属于该用户且未删除的知识库
+     * @param userId 用户ID
+     * @param ids    知识库ID集合，不能为空
+     * @return 属于该用户的知识库ID
+     */
+    List<Long> selectOwnedIds(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
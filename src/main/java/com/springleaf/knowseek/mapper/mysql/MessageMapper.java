@@ -3,6 +3,7 @@ package com.springleaf.knowseek.mapper.mysql;
 import com.springleaf.knowseek.model.entity.Message;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface MessageMapper {
@@ -14,6 +15,13 @@ public interface MessageMapper {
      */
     int insert(Message message);
 
+    /**
+     * 批量插入消息，消息ID与创建时间由调用方指定；ID 已存在的消息忽略，可重复执行
+     * @param messages 消息列表
+     * @return 影响行数
+     */
+    int insertBatch(@Param("messages") List<Message> messages);
+
     /**
      * 根据ID查询消息
      * @param messageId 消息ID
@@ -28,6 +36,19 @@ public interface MessageMapper {
      */
     List<Message> selectBySessionId(Long sessionId);
 
+    /**
+     * 按 (created_at, id) 倒序键集分页查询会话最近的消息，走 (session_id, created_at) 索引
+     * @param sessionId 会话ID
+     * @param beforeCreatedAt 上一页最早一条消息的创建时间，为空表示从最新消息开始
+     * @param beforeId 上一页最早一条消息的ID，与 beforeCreatedAt 一起使用
+     * @param limit 本页条数
+     * @return 消息列表（新 -> 旧）
+     */
+    List<Message> selectRecentBySessionId(@Param("sessionId") Long sessionId,
+                                          @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                          @Param("beforeId") Long beforeId,
+                                          @Param("limit") int limit);
+
     /**
      * 根据会话ID和角色查询消息列表
      * @param sessionId 会话ID
@@ -3,6 +3,7 @@ package com.springleaf.knowseek.mapper.mysql;
 import com.springleaf.knowseek.model.entity.Session;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface SessionMapper {
@@ -43,6 +44,14 @@ public interface SessionMapper {
      */
     int updateActiveStatus(@Param("id") Long id, @Param("isActive") Boolean isActive);
 
+    /**
+     * 回写会话最后活跃时间，已有更晚的时间时不覆盖
+     * @param id 会话ID
+     * @param updatedAt 最后活跃时间
+     * @return 影响行数
+     */
+    int updateUpdatedAt(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
     /**
      * 删除会话
      * @param id 会话ID
@@ -1,5 +1,8 @@
 package com.springleaf.knowseek.mapper.pgvector;
 
+import com.springleaf.knowseek.model.bo.ChunkRangeBO;
+import com.springleaf.knowseek.model.bo.VectorPartitionBO;
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
 import com.springleaf.knowseek.model.bo.VectorRecordSearchBO;
 import com.springleaf.knowseek.model.bo.VectorRecordWithDistanceBO;
 import com.springleaf.knowseek.model.entity.VectorRecord;
@@ -17,10 +20,123 @@ public interface VectorRecordMapper {
      */
     int insert(VectorRecord record);
 
+    /**
+     * 批量插入向量记录（单条多行 INSERT ... VALUES (...),(...)）
+     * @param records 向量记录列表，调用方需控制单批条数，避免超出 JDBC 绑定参数上限
+     * @return 影响行数
+     */
+    int insertBatch(@Param("records") List<VectorRecord> records);
+
     List<VectorRecord> findTopKByEmbedding(VectorRecordSearchBO record);
 
+    /**
+     * 按余弦距离召回 TopK 分片，结果包含 embedding 列（仅在调用方确实需要向量时使用）
+     */
     List<VectorRecordWithDistanceBO> findTopKByEmbeddingWithDistance(VectorRecordSearchBO searchBO);
 
+    /**
+     * 按余弦距离召回 TopK 分片，仅投影文本与距离，不读取 embedding 列
+     * searchBO.partitions 不为空时本人知识库直接查询所在分区
+     */
+    List<VectorRecordHitBO> findTopKHitsByEmbedding(VectorRecordSearchBO searchBO);
+
+    /**
+     * 按关键词召回 TopK 分片（chunk_lexemes 全文检索，按 ts_rank 排序），同时返回与问题向量的距离
+     */
+    List<VectorRecordHitBO> findTopKHitsByLexical(VectorRecordSearchBO searchBO);
+
+    /**
+     * 读取若干文件内指定序号区间的分片（不含 embedding 列），所有区间在一条语句中查询
+     */
+    List<VectorRecordHitBO> findChunksInRanges(@Param("ranges") List<ChunkRangeBO> ranges);
+
+    /**
+     * 按 id 顺序分批读取尚未生成分词结果的分片，仅返回 id 与 chunk_text
+     */
+    List<VectorRecord> findChunksWithoutTerms(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 回填分片的分词结果
+     */
+    int updateChunkTerms(@Param("id") Long id, @Param("chunkTerms") String chunkTerms);
+
+    /**
+     * 计算知识库所在的哈希分区，按分区分组返回（需 tb_vector_record 已按 knowledge_base_id 哈希分区）
+     * @param partitionCount 分区数（哈希模数），必须与建表时一致
+     */
+    List<VectorPartitionBO> findPartitions(@Param("knowledgeBaseIds") Long[] knowledgeBaseIds,
+                                           @Param("partitionCount") int partitionCount);
+
+    /**
+     * 查询表中的最大 id，表为空时返回 0
+     * @param tableName 表名，只能传入代码中的常量
+     */
+    Long findMaxId(@Param("tableName") String tableName);
+
+    /**
+     * 将原表 id 在 (afterId, toId] 区间内的行复制到分区表 tb_vector_record_partitioned，已存在的行跳过
+     * @return 实际复制的行数
+     */
+    int copyToPartitioned(@Param("afterId") long afterId, @Param("toId") long toId);
+
+    /**
+     * 将原表中分区表尚未包含的行（不限 id 区间）复制到分区表
+     * @return 实际复制的行数
+     */
+    int copyMissingToPartitioned();
+
+    /**
+     * 将原表中复制后被修改的行同步到分区表
+     * @return 同步的行数
+     */
+    int syncChangedToPartitioned();
+
+    /**
+     * 原表中在分区表里缺失或内容不一致的行数
+     */
+    Long countPartitionedMismatches();
+
+    /**
+     * 查询表的总行数
+     * @param tableName 表名，只能传入代码中的常量
+     */
+    Long countRows(@Param("tableName") String tableName);
+
+    /**
+     * 删除分区表中已在原表被删除的行
+     */
+    int deleteMissingFromPartitioned();
+
+    /**
+     * 锁定原表，阻塞写入直到当前事务结束
+     */
+    void lockRecordTableForSwap();
+
+    /**
+     * 分区表替换原表（交换表名），必须与 lockRecordTableForSwap 在同一事务中执行
+     */
+    void swapPartitionedTable();
+
+    /**
+     * 设置当前事务内的 hnsw.ef_search，必须与检索语句在同一事务中执行
+     */
+    String setLocalEfSearch(@Param("efSearch") int efSearch);
+
+    /**
+     * 查询已安装的 pgvector 扩展版本，未安装时返回 null
+     */
+    String findVectorExtensionVersion();
+
+    /**
+     * 设置当前事务内的 HNSW 迭代扫描模式与最多扫描的元组数（需 pgvector 0.8+），必须与检索语句在同一事务中执行
+     */
+    String setLocalIterativeScan(@Param("mode") String mode, @Param("maxScanTuples") int maxScanTuples);
+
+    /**
+     * 设置当前事务内的语句超时（毫秒），必须与检索语句在同一事务中执行
+     */
+    String setLocalStatementTimeout(@Param("timeoutMillis") long timeoutMillis);
+
     /**
      * 根据文件 ID 删除向量数据
      */
@@ -0,0 +1,20 @@
+package com.springleaf.knowseek.model.bo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 同一文件内连续的分片序号区间（闭区间），用于批量读取相邻分片
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChunkRangeBO {
+
+    private Long fileId;
+
+    private Integer startIndex;
+
+    private Integer endIndex;
+}
@@ -0,0 +1,21 @@
+package com.springleaf.knowseek.model.bo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 检索路由结果：一张向量表（分区或主表）及需要在该表中检索的知识库
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class VectorPartitionBO {
+
+    /**
+     * 表名，只能由 VectorPartitionRouter 生成（SQL 中以 ${} 拼接）
+     */
+    private String tableName;
+
+    private Long[] knowledgeBaseIds;
+}
@@ -0,0 +1,22 @@
+package com.springleaf.knowseek.model.bo;
+
+import lombok.Data;
+
+/**
+ * 向量检索命中结果（不含 embedding 列，RAG 检索链路使用）
+ */
+@Data
+public class VectorRecordHitBO {
+
+    private Long id;
+    private Long userId;
+    private Long knowledgeBaseId;
+    private Long fileId;
+    private String chunkText;
+    private Integer chunkIndex;
+    private Double distance; // pgvector 返回的距离（越小越相似）
+    private Double similarity; // 余弦相似度
+    private Double lexicalRank; // 关键词检索得分（ts_rank），仅关键词召回时有值
+    private Double fusedScore; // 多路召回 RRF 融合得分（越大越相关）
+    private Double rerankScore; // 重排得分（越大越相关），未重排时为 null
+}
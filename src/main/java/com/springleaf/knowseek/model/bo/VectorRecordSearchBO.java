@@ -2,6 +2,8 @@ package com.springleaf.knowseek.model.bo;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class VectorRecordSearchBO {
 
@@ -9,7 +11,48 @@ public class VectorRecordSearchBO {
 
     private Long knowledgeBaseId;
 
+    /**
+     * 检索范围：本人的这些知识库（knowledge_base_id = ANY），TopK 分片检索与关键词检索使用
+     */
+    private Long[] knowledgeBaseIds;
+
+    /**
+     * 检索范围：共享给这些组织的分片（organization_id = ANY），为空时不检索组织共享知识
+     */
+    private Long[] organizationIds;
+
+    /**
+     * 本人知识库所在的分区（见 VectorPartitionRouter），为空时直接检索主表
+     */
+    private List<VectorPartitionBO> partitions;
+
     private int topK;
 
     private float[] queryVector;
+
+    /**
+     * 最大余弦距离，在 TopK 结果上过滤，为空时不过滤
+     */
+    private Double maxDistance;
+
+    /**
+     * 本次查询的 hnsw.ef_search（候选队列大小），为空时使用数据库默认值（40）
+     * 需不小于 topK，否则 HNSW 扫描返回的结果数会少于 topK
+     */
+    private Integer efSearch;
+
+    /**
+     * 关键词检索的 to_tsquery 查询串（见 LexicalTokenizer.toTsQuery）
+     */
+    private String lexicalQuery;
+
+    /**
+     * 关键词检索召回数量
+     */
+    private int lexicalTopK;
+
+    /**
+     * 检索语句的服务端超时（毫秒，statement_timeout），超时后由 PostgreSQL 取消语句并释放连接，为空时不限制
+     */
+    private Long statementTimeoutMs;
 }
@@ -0,0 +1,14 @@
+package com.springleaf.knowseek.model.domain;
+
+import lombok.Data;
+
+/**
+ * ID 与名称，用于批量查询文件名、知识库名
+ */
+@Data
+public class IdNameDO {
+
+    private Long id;
+
+    private String name;
+}
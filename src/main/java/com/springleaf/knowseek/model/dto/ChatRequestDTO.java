@@ -1,8 +1,13 @@
 package com.springleaf.knowseek.model.dto;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class ChatRequestDTO {
 
@@ -12,4 +17,25 @@ public class ChatRequestDTO {
     private Long sessionId;
 
     private Boolean useKnowledgeBase;
+
+    /**
+     * 检索的知识库ID（须属于当前用户），不传时检索主知识库；组织共享的知识始终参与检索
+     */
+    @Size(max = 20, message = "检索的知识库不能超过20个")
+    private List<Long> knowledgeBaseIds;
+
+    /**
+     * 知识库上下文的 Token 预算，不传时使用默认配置
+     * 上限与 knowseek.rag.context.max-token-budget 的默认值一致，该配置调低时超出的预算由 ContextAssembler 拒绝
+     */
+    @Min(value = 200, message = "上下文Token预算不能小于200")
+    @Max(value = 8000, message = "上下文Token预算不能大于8000")
+    private Integer contextTokenBudget;
+
+    /**
+     * 最多送入上下文的知识分片数，不传时使用默认配置
+     */
+    @Min(value = 1, message = "上下文分片数不能小于1")
+    @Max(value = 30, message = "上下文分片数不能大于30")
+    private Integer maxContextChunks;
 }
\ No newline at end of file
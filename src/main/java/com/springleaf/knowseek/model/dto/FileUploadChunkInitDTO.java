@@ -43,4 +43,9 @@ public class FileUploadChunkInitDTO {
      */
     @NotNull(message = "知识库ID不能为空")
     private Long knowledgeBaseId;
+
+    /**
+     * 是否共享给主组织成员检索，默认不共享
+     */
+    private Boolean isPublic;
 }
@@ -32,6 +32,11 @@ public class VectorRecord {
 
     private String chunkText;
 
+    /**
+     * 分片文本的分词结果（空格分隔），数据库据此生成关键词检索列
+     */
+    private String chunkTerms;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
@@ -1,5 +1,7 @@
 package com.springleaf.knowseek.model.vo;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 /**
@@ -24,8 +26,9 @@ public class AiChatResponseVO {
     private String content;
 
     /**
-     * 消息ID
+     * 消息ID（雪花算法生成，与 MessageVO.id 一样序列化为字符串）
      */
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long messageId;
 
     /**
@@ -1,5 +1,7 @@
 package com.springleaf.knowseek.model.vo;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -11,8 +13,9 @@ import java.time.LocalDateTime;
 public class MessageVO {
 
     /**
-     * 消息唯一ID
+     * 消息唯一ID（雪花算法生成，超出 JavaScript 安全整数范围，序列化为字符串）
      */
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
 
     /**
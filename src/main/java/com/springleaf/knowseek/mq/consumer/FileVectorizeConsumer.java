@@ -2,12 +2,15 @@ package com.springleaf.knowseek.mq.consumer;
 
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.TypeReference;
+import com.springleaf.knowseek.cache.EmbeddingCacheStats;
+import com.springleaf.knowseek.cache.SemanticAnswerCache;
 import com.springleaf.knowseek.enums.UploadStatusEnum;
 import com.springleaf.knowseek.mapper.mysql.FileUploadMapper;
 import com.springleaf.knowseek.model.bo.VectorBO;
 import com.springleaf.knowseek.mq.event.BaseEvent;
 import com.springleaf.knowseek.mq.event.FileVectorizeEvent;
 import com.springleaf.knowseek.mq.parser.FileParserFactory;
+import com.springleaf.knowseek.mq.parser.ParseSession;
 import com.springleaf.knowseek.service.EmbeddingService;
 import com.springleaf.knowseek.service.VectorRecordService;
 import jakarta.annotation.Resource;
@@ -39,6 +42,25 @@ public class FileVectorizeConsumer {
     @Value("${spring.rabbitmq.topic.file-processing-vectorize}")
     private String topic;
 
+    /**
+     * 入库批大小：累积多少个向量后执行一次多行 INSERT
+     */
+    @Value("${knowseek.vectorize.store-batch-size:200}")
+    private int storeBatchSize;
+
+    /**
+     * 单个文件总分片数达到该阈值时，从第一个分片起全部使用 COPY BINARY 批量导入；
+     * 分片数未确定前先在内存中缓存（至多该数量），因此不宜设置过大
+     */
+    @Value("${knowseek.vectorize.copy-threshold:2000}")
+    private int copyThreshold;
+
+    /**
+     * COPY BINARY 模式下每次导入的分片数
+     */
+    @Value("${knowseek.vectorize.copy-batch-size:1000}")
+    private int copyBatchSize;
+
     @Resource
     private EmbeddingService embeddingService;
 
@@ -51,8 +73,11 @@ public class FileVectorizeConsumer {
     @Resource
     private FileParserFactory fileParserFactory;
 
+    @Resource
+    private SemanticAnswerCache semanticAnswerCache;
+
     private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
-    private static final int BATCH_PROCESS_SIZE = 10; // 批量处理文本块数量
+    private static final int BATCH_PROCESS_SIZE = 10; // 批量向量化的文本块数量
     private static final int QUEUE_TIMEOUT_SECONDS = 600; // 队列等待超时设为 10 分钟（600 秒），防止大文件解析慢导致误判
 
     @RabbitListener(queues = "${spring.rabbitmq.custom.vectorize.queue}")
@@ -92,6 +117,8 @@ public class FileVectorizeConsumer {
 
             // 更新文件上传状态为“处理完成”
             safeUpdateStatus(fileId, UploadStatusEnum.PROCESSING_COMPLETED);
+            // 新文件的分片已入库，清空该知识库的语义答案缓存
+            semanticAnswerCache.invalidate(vectorBO.getKnowledgeBaseId());
 
         } catch (Exception e) {
             long processingTime = System.currentTimeMillis() - startTime;
@@ -128,6 +155,8 @@ public class FileVectorizeConsumer {
     private void processFileStreaming(String fileUrl, String extension, VectorBO vectorBO) {
         BlockingQueue<String> chunkQueue = new LinkedBlockingQueue<>(100);
         BlockingQueue<ChunkWithVector> vectorQueue = new LinkedBlockingQueue<>(100);
+        // 本文件的分片向量缓存命中统计
+        EmbeddingCacheStats cacheStats = new EmbeddingCacheStats();
 
         // 异步执行三个阶段：下载+分块、向量化、存储
         CompletableFuture<Void> downloadFuture = CompletableFuture.runAsync(
@@ -144,7 +173,7 @@ public class FileVectorizeConsumer {
         CompletableFuture<Void> vectorizeFuture = CompletableFuture.runAsync(
                 () -> {
                     try {
-                        vectorizeChunks(chunkQueue, vectorQueue);
+                        vectorizeChunks(chunkQueue, vectorQueue, cacheStats);
                     } catch (Exception e) {
                         log.error("向量化失败", e);
                         putToQueueWithTimeout(vectorQueue, new ChunkWithVector("ERROR", null));
@@ -166,6 +195,7 @@ public class FileVectorizeConsumer {
             // 等待所有任务完成，设置超时时间
             CompletableFuture.allOf(downloadFuture, vectorizeFuture, storageFuture)
                     .get(QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS); // 10分钟超时
+            log.info("文件向量缓存统计，fileId: {}，{}", vectorBO.getFileId(), cacheStats);
         } catch (Exception e) {
             log.error("流式处理超时或失败（超过 {} 秒）", QUEUE_TIMEOUT_SECONDS, e);
             // 取消所有任务
@@ -193,8 +223,11 @@ public class FileVectorizeConsumer {
 
             try (InputStream inputStream = connection.getInputStream()) {
                 // 根据文件类型选择不同的处理策略
-                fileParserFactory.getParserByExtension(extension).parse(inputStream, chunkQueue);
-                log.info("文件解析和分块完成: {}", fileUrl);
+                // 每个文件独立的解析会话，解析器单例可被多个消费线程同时使用
+                ParseSession parseSession = new ParseSession(chunkQueue);
+                fileParserFactory.getParserByExtension(extension).parse(inputStream, parseSession);
+                log.info("文件解析和分块完成: {}，共 {} 个分块，内存：{}",
+                        fileUrl, parseSession.getChunkCount(), parseSession.getMemoryStats());
             } finally {
                 connection.disconnect();
                 // 确保在所有处理完成后发送结束信号
@@ -212,7 +245,8 @@ public class FileVectorizeConsumer {
     /**
      * 异步向量化处理
      */
-    private void vectorizeChunks(BlockingQueue<String> chunkQueue, BlockingQueue<ChunkWithVector> vectorQueue) {
+    private void vectorizeChunks(BlockingQueue<String> chunkQueue, BlockingQueue<ChunkWithVector> vectorQueue,
+                                 EmbeddingCacheStats cacheStats) {
         try {
             List<String> batch = new ArrayList<>();
             String chunk;
@@ -230,7 +264,7 @@ public class FileVectorizeConsumer {
                 if ("EOF".equals(chunk)) {
                     // 处理最后一批
                     if (!batch.isEmpty()) {
-                        processBatch(batch, vectorQueue);
+                        processBatch(batch, vectorQueue, cacheStats);
                     }
                     putToQueueWithTimeout(vectorQueue, new ChunkWithVector("EOF", null));
                     break;
@@ -245,7 +279,7 @@ public class FileVectorizeConsumer {
 
                 // 批量处理
                 if (batch.size() >= BATCH_PROCESS_SIZE) {
-                    processBatch(batch, vectorQueue);
+                    processBatch(batch, vectorQueue, cacheStats);
                     batch.clear();
                 }
             }
@@ -263,10 +297,11 @@ public class FileVectorizeConsumer {
     /**
      * 批量处理向量化
      */
-    private void processBatch(List<String> batch, BlockingQueue<ChunkWithVector> vectorQueue) {
+    private void processBatch(List<String> batch, BlockingQueue<ChunkWithVector> vectorQueue,
+                              EmbeddingCacheStats cacheStats) {
         try {
             log.info("开始向量化批次处理，共 {} 个文本块", batch.size());
-            List<float[]> vectors = embeddingService.embedTexts(new ArrayList<>(batch));
+            List<float[]> vectors = embeddingService.embedTexts(new ArrayList<>(batch), cacheStats);
 
             for (int i = 0; i < batch.size(); i++) {
                 putToQueueWithTimeout(vectorQueue, new ChunkWithVector(batch.get(i), vectors.get(i)));
@@ -289,6 +324,9 @@ public class FileVectorizeConsumer {
 
             // 全局记录器记录总的分片数
             int globalChunkIndex = 1;
+            // 文件总分片数未达到 COPY 阈值前分片只缓存不写库：先遇到 EOF 为小文件，走多行 INSERT；
+            // 缓存达到阈值为大文件，从第一个分片起走 COPY，不再让前 copyThreshold 个分片走 INSERT
+            boolean bulkLoad = false;
 
             while (true) {
                 item = vectorQueue.poll(QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
@@ -301,7 +339,7 @@ public class FileVectorizeConsumer {
                 if ("EOF".equals(item.chunk())) {
                     // 处理最后一批
                     if (!chunkBatch.isEmpty()) {
-                        vectorRecordService.saveVectorRecord(chunkBatch, vectorBatch, globalChunkIndex, vectorBO);
+                        flushVectors(chunkBatch, vectorBatch, globalChunkIndex, vectorBO, bulkLoad);
                         log.info("最后一批存储完成，共 {} 个向量", chunkBatch.size());
                     }
                     break;
@@ -316,9 +354,13 @@ public class FileVectorizeConsumer {
                     chunkBatch.add(item.chunk());
                     vectorBatch.add(item.vector());
 
-                    // 批量存储
-                    if (chunkBatch.size() >= BATCH_PROCESS_SIZE) {
-                        vectorRecordService.saveVectorRecord(chunkBatch, vectorBatch, globalChunkIndex, vectorBO);
+                    // 分片数达到阈值即判定为大文件，已缓存的分片连同后续分片都按 COPY 批大小导入
+                    if (!bulkLoad && chunkBatch.size() >= copyThreshold) {
+                        bulkLoad = true;
+                        log.info("文件分片数达到 {}，改用 COPY BINARY 批量导入，fileId: {}", copyThreshold, vectorBO.getFileId());
+                    }
+                    if (bulkLoad && chunkBatch.size() >= copyBatchSize) {
+                        flushVectors(chunkBatch, vectorBatch, globalChunkIndex, vectorBO, true);
                         globalChunkIndex += chunkBatch.size(); // 累加
                         log.info("批量存储完成，共 {} 个向量", chunkBatch.size());
                         chunkBatch.clear();
@@ -332,6 +374,23 @@ public class FileVectorizeConsumer {
         }
     }
 
+    /**
+     * 将一批向量写入 pgvector：大文件使用 COPY BINARY，小文件按入库批大小多行 INSERT
+     */
+    private void flushVectors(List<String> chunkBatch, List<float[]> vectorBatch, int startChunkIndex, VectorBO vectorBO,
+                              boolean bulkLoad) {
+        if (bulkLoad) {
+            vectorRecordService.copyVectorRecord(chunkBatch, vectorBatch, startChunkIndex, vectorBO);
+            return;
+        }
+        int batchSize = Math.max(1, storeBatchSize);
+        for (int from = 0; from < chunkBatch.size(); from += batchSize) {
+            int to = Math.min(chunkBatch.size(), from + batchSize);
+            vectorRecordService.saveVectorRecord(chunkBatch.subList(from, to), vectorBatch.subList(from, to),
+                    startChunkIndex + from, vectorBO);
+        }
+    }
+
     /**
      * 应用关闭时清理资源
      */
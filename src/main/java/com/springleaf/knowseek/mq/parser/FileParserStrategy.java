@@ -5,13 +5,23 @@ import java.util.concurrent.BlockingQueue;
 
 /**
  * 文件解析策略接口
+ * 实现类为单例且无状态，单次解析的状态全部保存在 ParseSession 中
  */
 public interface FileParserStrategy {
 
     /**
      * 文件解析
      * @param inputStream 根据 URL下载文件的输入流
+     * @param session 本次解析的会话（分块队列及跨段状态）
+     */
+    void parse(InputStream inputStream, ParseSession session);
+
+    /**
+     * 文件解析，为本次解析新建会话
+     * @param inputStream 根据 URL下载文件的输入流
      * @param chunkQueue 分块队列
      */
-    void parse(InputStream inputStream, BlockingQueue<String> chunkQueue);
+    default void parse(InputStream inputStream, BlockingQueue<String> chunkQueue) {
+        parse(inputStream, new ParseSession(chunkQueue));
+    }
 }
@@ -0,0 +1,47 @@
+package com.springleaf.knowseek.mq.parser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * 单个文件解析过程中的堆内存统计，由解析器每处理完一页（或一段）采样一次，解析结束时随入库指标输出
+ * 堆使用量是进程级指标，多个文件同时解析时包含其他线程的占用，应作为本次解析峰值的上界参考
+ */
+public class ParseMemoryStats {
+
+    private static final MemoryMXBean MEMORY_BEAN = ManagementFactory.getMemoryMXBean();
+
+    private final long baselineHeapBytes = usedHeapBytes();
+    private long peakHeapBytes = baselineHeapBytes;
+    private int samples;
+
+    public void sample() {
+        samples++;
+        peakHeapBytes = Math.max(peakHeapBytes, usedHeapBytes());
+    }
+
+    /**
+     * 解析期间堆使用量相对开始时的最大增量
+     */
+    public long getPeakHeapGrowthBytes() {
+        return Math.max(0, peakHeapBytes - baselineHeapBytes);
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    private static long usedHeapBytes() {
+        return MEMORY_BEAN.getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("采样 %d 次，堆使用峰值 %.1f MB（较开始时增长 %.1f MB）",
+                samples, peakHeapBytes / 1048576.0, getPeakHeapGrowthBytes() / 1048576.0);
+    }
+}
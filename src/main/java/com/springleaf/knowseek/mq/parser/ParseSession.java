@@ -0,0 +1,40 @@
+package com.springleaf.knowseek.mq.parser;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 单次文件解析的会话：持有分块输出队列，以及跨页、跨缓冲区延续的解析状态
+ * 每次解析新建一个，只由执行该次解析的线程访问；解析器本身不保存解析状态，可被多个消费线程同时使用
+ */
+@Getter
+public class ParseSession {
+
+    private final BlockingQueue<String> chunkQueue;
+
+    /**
+     * 上一段文本（上一页或上一个缓冲区）末尾保留的重叠文本，拼接到下一段开头；按 Token 分片时为尚未输出的最后一个分块
+     */
+    @Setter
+    private String carryOver = "";
+
+    /**
+     * 本次解析已输出的分块数
+     */
+    private int chunkCount;
+
+    /**
+     * 本次解析的堆内存统计
+     */
+    private final ParseMemoryStats memoryStats = new ParseMemoryStats();
+
+    public ParseSession(BlockingQueue<String> chunkQueue) {
+        this.chunkQueue = chunkQueue;
+    }
+
+    void incrementChunkCount() {
+        chunkCount++;
+    }
+}
@@ -0,0 +1,517 @@
+package com.springleaf.knowseek.mq.parser;
+
+import com.springleaf.knowseek.tokenizer.TextTokenizer;
+import com.springleaf.knowseek.tokenizer.TokenCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 递归语义分片器：按 段落 -> 换行 -> 句子 -> 空格 的优先级切分文本，再把碎片合并成接近 chunkSize 的块，相邻块保留 chunkOverlap 重叠
+ * 实现方式：在原文上按下标扫描，切分出的片段、递归合并出的块都只记录为原文上的若干 [start, end) 区间，
+ * 重叠部分也是上一个块末尾区间的引用，只有最终输出的分块才创建 String；无状态，可被多个线程共享
+ * 指定分词器时 chunkSize、chunkOverlap 按 Token 计，否则按字符计
+ */
+public class RecursiveTextSplitter {
+
+    /**
+     * 分隔符层级，按优先级排序：
+     * 1. 双换行（段落）
+     * 2. 单换行
+     * 3. 句子结束符（中英文常见标点，标点保留在前一个片段末尾）
+     * 4. 空格
+     */
+    private static final int LEVEL_PARAGRAPH = 0;
+    private static final int LEVEL_LINE = 1;
+    private static final int LEVEL_SENTENCE = 2;
+    private static final int LEVEL_WORD = 3;
+
+    private final int chunkSize;
+    private final int chunkOverlap;
+
+    /**
+     * 为 null 时按字符计
+     */
+    private final TextTokenizer tokenizer;
+
+    public RecursiveTextSplitter(int chunkSize, int chunkOverlap) {
+        this(chunkSize, chunkOverlap, null);
+    }
+
+    public RecursiveTextSplitter(int chunkSize, int chunkOverlap, TextTokenizer tokenizer) {
+        this.chunkSize = chunkSize;
+        this.chunkOverlap = chunkOverlap;
+        this.tokenizer = tokenizer;
+    }
+
+    public boolean isTokenBased() {
+        return tokenizer != null;
+    }
+
+    public List<String> split(CharSequence text) {
+        Pieces chunks = splitRange(text, 0, text.length(), LEVEL_PARAGRAPH);
+        List<String> result = new ArrayList<>(chunks.count);
+        for (int i = 0; i < chunks.count; i++) {
+            result.add(chunks.materialize(text, i));
+        }
+        return result;
+    }
+
+    /**
+     * 分块末尾的重叠部分：按字符计时为末尾 chunkOverlap 个字符，按 Token 计时为末尾不超过 chunkOverlap 个 Token 的文本
+     */
+    public String overlapTail(String chunk) {
+        if (tokenizer == null) {
+            return chunk.substring(chunk.length() - Math.min(chunk.length(), chunkOverlap));
+        }
+        return chunk.substring(tokenizer.suffixStart(chunk, 0, chunk.length(), chunkOverlap));
+    }
+
+    /**
+     * 用 level 层级的分隔符切分 [start, end)，过大的片段递归使用下一层级，最后合并
+     */
+    private Pieces splitRange(CharSequence text, int start, int end, int level) {
+        Pieces goodSplits = new Pieces();
+        int from = start;
+        while (from < end) {
+            int fragmentEnd = fragmentEnd(text, from, end, level);
+            // 只包含空白字符（<= ' '）的片段连同分隔符一起丢弃
+            if (!isBlank(text, from, fragmentEnd)) {
+                int fragmentLength = measure(text, from, fragmentEnd);
+                if (fragmentLength < chunkSize) {
+                    goodSplits.addRange(from, fragmentEnd, fragmentLength);
+                } else if (level < LEVEL_WORD) {
+                    goodSplits.addAll(splitRange(text, from, fragmentEnd, level + 1));
+                } else {
+                    // 没有更细的分隔符了，按固定长度强制切分
+                    hardSplit(text, from, fragmentEnd, goodSplits);
+                }
+            }
+            from = fragmentEnd;
+        }
+        return tokenizer == null ? merge(text, goodSplits) : mergeByTokens(text, goodSplits);
+    }
+
+    private int measure(CharSequence text, int start, int end) {
+        return tokenizer == null ? end - start : tokenizer.countTokens(text, start, end);
+    }
+
+    private void hardSplit(CharSequence text, int start, int end, Pieces goodSplits) {
+        if (tokenizer == null) {
+            for (int i = start; i < end; i += chunkSize) {
+                int next = Math.min(end, i + chunkSize);
+                goodSplits.addRange(i, next, next - i);
+            }
+            return;
+        }
+        for (int i = start; i < end; ) {
+            int next = tokenizer.prefixEnd(text, i, end, chunkSize);
+            if (next <= i) {
+                next = i + Character.charCount(Character.codePointAt(text, i));
+            }
+            goodSplits.addRange(i, next, tokenizer.countTokens(text, i, next));
+            i = next;
+        }
+    }
+
+    /**
+     * 从 from 开始的片段的结束位置：片段包含其后的分隔符，找不到分隔符时到 end 为止
+     */
+    private static int fragmentEnd(CharSequence text, int from, int end, int level) {
+        switch (level) {
+            case LEVEL_PARAGRAPH -> {
+                for (int i = from; i + 1 < end; i++) {
+                    if (text.charAt(i) == '\n' && text.charAt(i + 1) == '\n') {
+                        return i + 2;
+                    }
+                }
+                return end;
+            }
+            case LEVEL_LINE -> {
+                return indexOf(text, '\n', from, end);
+            }
+            case LEVEL_SENTENCE -> {
+                for (int i = from; i < end; i++) {
+                    if (isSentenceEnd(text.charAt(i))) {
+                        return i + 1;
+                    }
+                }
+                return end;
+            }
+            default -> {
+                return indexOf(text, ' ', from, end);
+            }
+        }
+    }
+
+    private static int indexOf(CharSequence text, char separator, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (text.charAt(i) == separator) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '。' || c == '！' || c == '？' || c == '.' || c == '!' || c == '?';
+    }
+
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合并切分好的小片段，使其长度接近 chunkSize；生成新块时以上一个块末尾的 chunkOverlap 个字符开头
+     */
+    private Pieces merge(CharSequence text, Pieces splits) {
+        Pieces docs = new Pieces();
+        Ranges current = new Ranges();
+        Ranges previous = new Ranges();
+
+        for (int piece = 0; piece < splits.count; piece++) {
+            if (current.length + splits.lengthOf(piece) > chunkSize) {
+                if (!current.isBlank(text)) {
+                    docs.add(current, current.length);
+                }
+
+                Ranges full = current;
+                current = previous;
+                previous = full;
+                current.clear();
+
+                if (full.length > chunkOverlap) {
+                    // 截取末尾 chunkOverlap 个字符；若前半部分有空格，从第一个空格之后开始，避免从单词中间切断
+                    int tailStart = full.length - chunkOverlap;
+                    int firstSpace = full.indexOf(text, ' ', tailStart);
+                    if (firstSpace >= 0 && firstSpace - tailStart < chunkOverlap / 2) {
+                        tailStart = firstSpace + 1;
+                    }
+                    current.appendSlice(full, tailStart, full.length);
+                } else {
+                    // 上文很短时全量保留
+                    current.appendSlice(full, 0, full.length);
+                }
+            }
+            splits.appendTo(piece, current);
+        }
+
+        // 最后一个块去掉首尾空白
+        if (current.length > 0) {
+            current.trim(text);
+            if (current.length > 0) {
+                docs.add(current, current.length);
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * 与 merge 相同，长度按 Token 计：当前块的 Token 数由增量计数器维护，追加片段时不重新对整个块分词；
+     * BPE 分词在片段拼接处可能与分别计数不同，因此先追加再判断，超出 chunkSize 时撤回该片段并输出当前块，输出的块不会超过 chunkSize
+     * 重叠取上一个块末尾不超过 chunkOverlap 个 Token 的文本，加上重叠会使下一个块超出 chunkSize 时不保留重叠
+     */
+    private Pieces mergeByTokens(CharSequence text, Pieces splits) {
+        Pieces docs = new Pieces();
+        Ranges current = new Ranges();
+        Ranges previous = new Ranges();
+        TokenCounter counter = tokenizer.newCounter();
+
+        for (int piece = 0; piece < splits.count; piece++) {
+            if (tryAppend(text, splits, piece, current, counter)) {
+                continue;
+            }
+            if (!current.isBlank(text)) {
+                docs.add(current, counter.count());
+            }
+
+            Ranges full = current;
+            current = previous;
+            previous = full;
+            current.clear();
+            counter.reset();
+
+            String fullText = full.toString(text);
+            int tailStart = tokenizer.suffixStart(fullText, 0, fullText.length(), chunkOverlap);
+            current.appendSlice(full, tailStart, full.length);
+            counter.append(fullText, tailStart, fullText.length());
+            if (!tryAppend(text, splits, piece, current, counter)) {
+                current.clear();
+                counter.reset();
+                splits.appendTo(piece, current, counter, text);
+            }
+        }
+
+        if (current.length > 0) {
+            // 去掉首尾空白可能改变首尾的分词结果，去掉后超出 chunkSize 时保留原文
+            Ranges trimmed = previous;
+            trimmed.clear();
+            trimmed.appendSlice(current, 0, current.length);
+            trimmed.trim(text);
+            if (trimmed.length > 0) {
+                int untrimmedTokens = counter.count();
+                counter.reset();
+                trimmed.appendTo(counter, text);
+                if (counter.count() <= chunkSize) {
+                    docs.add(trimmed, counter.count());
+                } else {
+                    docs.add(current, untrimmedTokens);
+                }
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * 把片段追加到当前块，追加后超出 chunkSize 时撤回并返回 false；当前块为空时总是追加
+     */
+    private boolean tryAppend(CharSequence text, Pieces splits, int piece, Ranges current, TokenCounter counter) {
+        if (current.length == 0) {
+            splits.appendTo(piece, current, counter, text);
+            return true;
+        }
+        int size = current.size;
+        int length = current.length;
+        int lastEnd = current.bounds[size * 2 - 1];
+        splits.appendTo(piece, current, counter, text);
+        if (counter.count() <= chunkSize) {
+            return true;
+        }
+        current.truncate(size, length, lastEnd);
+        counter.reset();
+        current.appendTo(counter, text);
+        return false;
+    }
+
+    /**
+     * 一个块：原文上若干首尾相接的 [start, end) 区间，length 为区间总长度；相邻且连续的区间自动合并
+     */
+    private static final class Ranges {
+
+        private int[] bounds = new int[8];
+        private int size;
+        private int length;
+
+        void clear() {
+            size = 0;
+            length = 0;
+        }
+
+        void append(int start, int end) {
+            if (start == end) {
+                return;
+            }
+            if (size > 0 && bounds[size * 2 - 1] == start) {
+                bounds[size * 2 - 1] = end;
+            } else {
+                if (size * 2 == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[size * 2] = start;
+                bounds[size * 2 + 1] = end;
+                size++;
+            }
+            length += end - start;
+        }
+
+        /**
+         * 追加 other 中按块内偏移 [from, to) 的部分
+         */
+        void appendSlice(Ranges other, int from, int to) {
+            int offset = 0;
+            for (int i = 0; i < other.size && offset < to; i++) {
+                int start = other.bounds[i * 2];
+                int end = other.bounds[i * 2 + 1];
+                int rangeLength = end - start;
+                int sliceStart = Math.max(from - offset, 0);
+                int sliceEnd = Math.min(to - offset, rangeLength);
+                if (sliceStart < sliceEnd) {
+                    append(start + sliceStart, start + sliceEnd);
+                }
+                offset += rangeLength;
+            }
+        }
+
+        /**
+         * 从块内偏移 from 开始查找字符，返回块内偏移，找不到返回 -1
+         */
+        int indexOf(CharSequence text, char c, int from) {
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                int start = bounds[i * 2];
+                int end = bounds[i * 2 + 1];
+                for (int pos = Math.max(start, start + from - offset); pos < end; pos++) {
+                    if (text.charAt(pos) == c) {
+                        return offset + pos - start;
+                    }
+                }
+                offset += end - start;
+            }
+            return -1;
+        }
+
+        /**
+         * 撤回到追加前的状态：区间数、总长度，以及可能被相邻区间延长的最后一个区间的结束位置
+         */
+        void truncate(int size, int length, int lastEnd) {
+            this.size = size;
+            this.length = length;
+            bounds[size * 2 - 1] = lastEnd;
+        }
+
+        void appendTo(TokenCounter counter, CharSequence text) {
+            for (int i = 0; i < size; i++) {
+                counter.append(text, bounds[i * 2], bounds[i * 2 + 1]);
+            }
+        }
+
+        String toString(CharSequence text) {
+            StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < size; i++) {
+                builder.append(text, bounds[i * 2], bounds[i * 2 + 1]);
+            }
+            return builder.toString();
+        }
+
+        boolean isBlank(CharSequence text) {
+            for (int i = 0; i < size; i++) {
+                if (!RecursiveTextSplitter.isBlank(text, bounds[i * 2], bounds[i * 2 + 1])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 与 String.trim 一致：去掉首尾 <= ' ' 的字符
+         */
+        void trim(CharSequence text) {
+            int first = 0;
+            while (first < size) {
+                int start = bounds[first * 2];
+                int end = bounds[first * 2 + 1];
+                while (start < end && text.charAt(start) <= ' ') {
+                    start++;
+                }
+                bounds[first * 2] = start;
+                if (start < end) {
+                    break;
+                }
+                first++;
+            }
+            int last = size - 1;
+            while (last >= first) {
+                int start = bounds[last * 2];
+                int end = bounds[last * 2 + 1];
+                while (end > start && text.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                bounds[last * 2 + 1] = end;
+                if (end > start) {
+                    break;
+                }
+                last--;
+            }
+
+            int newSize = Math.max(0, last - first + 1);
+            System.arraycopy(bounds, first * 2, bounds, 0, newSize * 2);
+            size = newSize;
+            length = 0;
+            for (int i = 0; i < size; i++) {
+                length += bounds[i * 2 + 1] - bounds[i * 2];
+            }
+        }
+    }
+
+    /**
+     * 有序的块列表，所有块的区间平铺存放在同一个数组中，pieceEnds[i] 为第 i 个块最后一个区间之后的下标，
+     * pieceLengths[i] 为第 i 个块的长度（字符数或 Token 数）
+     */
+    private static final class Pieces {
+
+        private int[] bounds = new int[16];
+        private int boundCount;
+        private int[] pieceEnds = new int[8];
+        private int[] pieceLengths = new int[8];
+        private int count;
+
+        void addRange(int start, int end, int length) {
+            ensureBounds(2);
+            bounds[boundCount++] = start;
+            bounds[boundCount++] = end;
+            finishPiece(length);
+        }
+
+        void add(Ranges ranges, int length) {
+            ensureBounds(ranges.size * 2);
+            System.arraycopy(ranges.bounds, 0, bounds, boundCount, ranges.size * 2);
+            boundCount += ranges.size * 2;
+            finishPiece(length);
+        }
+
+        void addAll(Pieces other) {
+            for (int i = 0; i < other.count; i++) {
+                int from = i == 0 ? 0 : other.pieceEnds[i - 1];
+                int to = other.pieceEnds[i];
+                ensureBounds(to - from);
+                System.arraycopy(other.bounds, from, bounds, boundCount, to - from);
+                boundCount += to - from;
+                finishPiece(other.pieceLengths[i]);
+            }
+        }
+
+        int lengthOf(int piece) {
+            return pieceLengths[piece];
+        }
+
+        void appendTo(int piece, Ranges target) {
+            int from = piece == 0 ? 0 : pieceEnds[piece - 1];
+            for (int i = from; i < pieceEnds[piece]; i += 2) {
+                target.append(bounds[i], bounds[i + 1]);
+            }
+        }
+
+        void appendTo(int piece, Ranges target, TokenCounter counter, CharSequence text) {
+            int from = piece == 0 ? 0 : pieceEnds[piece - 1];
+            for (int i = from; i < pieceEnds[piece]; i += 2) {
+                target.append(bounds[i], bounds[i + 1]);
+                counter.append(text, bounds[i], bounds[i + 1]);
+            }
+        }
+
+        String materialize(CharSequence text, int piece) {
+            int from = piece == 0 ? 0 : pieceEnds[piece - 1];
+            int to = pieceEnds[piece];
+            if (to - from == 2) {
+                return text.subSequence(bounds[from], bounds[from + 1]).toString();
+            }
+            StringBuilder builder = new StringBuilder(pieceLengths[piece]);
+            for (int i = from; i < to; i += 2) {
+                builder.append(text, bounds[i], bounds[i + 1]);
+            }
+            return builder.toString();
+        }
+
+        private void finishPiece(int length) {
+            if (count == pieceEnds.length) {
+                pieceEnds = Arrays.copyOf(pieceEnds, count * 2);
+                pieceLengths = Arrays.copyOf(pieceLengths, count * 2);
+            }
+            pieceEnds[count] = boundCount;
+            pieceLengths[count] = length;
+            count++;
+        }
+
+        private void ensureBounds(int extra) {
+            if (boundCount + extra > bounds.length) {
+                bounds = Arrays.copyOf(bounds, Math.max(bounds.length * 2, boundCount + extra));
+            }
+        }
+    }
+}
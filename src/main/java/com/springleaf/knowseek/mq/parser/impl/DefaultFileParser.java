@@ -1,6 +1,7 @@
 package com.springleaf.knowseek.mq.parser.impl;
 
 import com.springleaf.knowseek.mq.parser.AbstractFileParserStrategy;
+import com.springleaf.knowseek.mq.parser.ParseSession;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
@@ -11,7 +12,6 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.InputStream;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 
 @Slf4j
 @Component("default")
@@ -25,12 +25,12 @@ public class DefaultFileParser extends AbstractFileParserStrategy {
     private static final int PARSE_BUFFER_THRESHOLD = CHUNK_SIZE * 5;
 
     @Override
-    public void parse(InputStream inputStream, BlockingQueue<String> chunkQueue) {
+    public void parse(InputStream inputStream, ParseSession session) {
         log.info("执行默认文件解析器，采用 Apache Tika (SAX流式) 进行处理。");
 
         try {
             // 1. 创建自定义的 Handler，用于流式接收文本
-            StreamingChunkHandler handler = new StreamingChunkHandler(chunkQueue);
+            StreamingChunkHandler handler = new StreamingChunkHandler(session);
 
             // 2. 元数据容器（虽然暂时不用，但 Tika 需要）
             Metadata metadata = new Metadata();
@@ -58,12 +58,12 @@ public class DefaultFileParser extends AbstractFileParserStrategy {
      * 核心逻辑：像接水管一样，接满一桶水（Buffer）就切分处理一次，而不是等水库（File）全流完。
      */
     private class StreamingChunkHandler extends DefaultHandler {
-        private final BlockingQueue<String> queue;
+        // 上一次缓冲区的尾巴保存在 session.carryOver 中
+        private final ParseSession session;
         private final StringBuilder buffer = new StringBuilder();
-        private String lastSectionTail = ""; // 用于连接上一次缓冲区的尾巴
 
-        public StreamingChunkHandler(BlockingQueue<String> queue) {
-            this.queue = queue;
+        public StreamingChunkHandler(ParseSession session) {
+            this.session = session;
         }
 
         @Override
@@ -88,7 +88,7 @@ public class DefaultFileParser extends AbstractFileParserStrategy {
             String currentText = buffer.toString();
 
             // 拼接上一次的尾巴，保证跨 Buffer 的句子完整性
-            String fullText = lastSectionTail + currentText;
+            String fullText = session.getCarryOver() + currentText;
 
             // 调用父类的递归切分逻辑
             List<String> chunks = splitTextRecursively(fullText);
@@ -100,41 +100,35 @@ public class DefaultFileParser extends AbstractFileParserStrategy {
             // 但需要注意：递归切分的最后一个 Chunk 可能因为没有结束符而被切断。
 
             // 优化策略：
-            // 直接发送所有完整 Chunk，但保留最后一段可能不完整的文本留在 lastSectionTail
+            // 直接发送所有完整 Chunk，但保留最后一段可能不完整的文本留在 session.carryOver
 
             if (!chunks.isEmpty()) {
                 // 将大部分 Chunk 放入队列
                 int limit = isEnd ? chunks.size() : chunks.size() - 1;
 
                 for (int i = 0; i < limit; i++) {
-                    try {
-                        queue.put(chunks.get(i));
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
+                    emit(session, chunks.get(i));
                 }
 
                 // 处理连接处
                 if (!isEnd) {
                     // 如果不是结束，保留最后一个块作为下一次的上下文
                     // 这样可以防止一个长句子正好被 PARSE_BUFFER_THRESHOLD 切断
-                    lastSectionTail = chunks.get(chunks.size() - 1);
+                    String lastSectionTail = chunks.get(chunks.size() - 1);
 
                     // 只有当保留的尾巴太长时（超过 ChunkSize），才被迫切出去一部分
-                    if (lastSectionTail.length() > CHUNK_SIZE) {
+                    // 按 Token 分片时分块不会超过上限，始终整块保留，与后续文本拼接继续填充
+                    if (!isTokenBasedChunking() && lastSectionTail.length() > CHUNK_SIZE) {
                         // 如果太长，说明这块本身就是个完整的大块，直接发走，只留重叠部分
-                        try {
-                            queue.put(lastSectionTail);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
+                        emit(session, lastSectionTail);
                         //以此处结尾保留重叠
-                        lastSectionTail = lastSectionTail.substring(Math.max(0, lastSectionTail.length() - CHUNK_OVERLAP));
+                        lastSectionTail = overlapTail(lastSectionTail);
                     }
+                    session.setCarryOver(lastSectionTail);
                 }
             } else {
                 // buffer 里全是空或者没切出来
-                lastSectionTail = fullText;
+                session.setCarryOver(fullText);
             }
 
             // 清空缓冲区
@@ -1,10 +1,19 @@
 package com.springleaf.knowseek.mq.parser.impl;
 
 import com.springleaf.knowseek.mq.parser.AbstractFileParserStrategy;
+import com.springleaf.knowseek.mq.parser.ParseSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -12,20 +21,83 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * pdf文件解析器
+ * 解析器无状态，跨页重叠文本保存在本次解析的 ParseSession 中，多个文件可同时解析
+ * 页数较多时按页区间并行提取文本：每个区间由独立线程打开自己的 PDDocument 和 PDFTextStripper（二者均非线程安全），
+ * 提取结果按页序交回解析线程后再逐页分块，分块结果与顺序提取完全一致
+ * 内存控制：文档通过带页缓存的文件（或内存映射文件）随机读取，不整体读入堆；解码后的流数据使用
+ * 限定堆内上限的混合缓存，超出部分写入临时文件；每页提取完成后丢弃该页解析出的字体、图片等资源
  */
 @Slf4j
 @Component("pdf")
 public class PdfFileParser extends AbstractFileParserStrategy {
 
-    private String lastPageTail = "";
-    
+    private static final String SOURCE_MEMORY_MAPPED = "memory-mapped";
+
+    /**
+     * 是否开启按页区间并行提取
+     */
+    @Value("${knowseek.parser.pdf.parallel-enabled:true}")
+    private boolean parallelEnabled;
+
+    /**
+     * 进程内提取线程数，所有文件共享，0 表示使用 CPU 核数
+     */
+    @Value("${knowseek.parser.pdf.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * 页数达到该值才并行提取，页数较少时额外打开文档的开销大于收益
+     */
+    @Value("${knowseek.parser.pdf.parallel-min-pages:64}")
+    private int parallelMinPages;
+
+    /**
+     * 每个并行任务提取的页数
+     */
+    @Value("${knowseek.parser.pdf.pages-per-range:32}")
+    private int pagesPerRange;
+
+    /**
+     * 文档读取方式：buffered-file（默认，堆内只保留少量文件页缓存）| memory-mapped（内存映射，读取不占用堆）
+     */
+    @Value("${knowseek.parser.pdf.source:buffered-file}")
+    private String source;
+
+    /**
+     * 每个打开的文档解码流数据最多占用的堆内存（MB），超出部分写入临时文件
+     */
+    @Value("${knowseek.parser.pdf.max-main-memory-mb:16}")
+    private long maxMainMemoryMb;
+
+    private ExecutorService extractExecutor;
+    private int extractThreads;
+
+    @PostConstruct
+    public void start() {
+        extractThreads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        // 文本提取是 CPU 密集型任务，使用固定数量的平台线程
+        extractExecutor = Executors.newFixedThreadPool(extractThreads,
+                Thread.ofPlatform().name("pdf-extract-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractExecutor.shutdownNow();
+    }
+
     @Override
-    public void parse(InputStream inputStream, BlockingQueue<String> chunkQueue) {
+    public void parse(InputStream inputStream, ParseSession session) {
         log.info("执行PDF文件解析器，采用 临时文件 +  Apache PDFBox依赖 进行处理。");
 
         Path tempFile = null;
@@ -38,29 +110,26 @@ public class PdfFileParser extends AbstractFileParserStrategy {
             // 将输入流复制到临时文件
             Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
 
-            // 从临时文件加载PDF
-            try (PDDocument document = Loader.loadPDF(tempFile.toFile())) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                int totalPages = document.getNumberOfPages();
-
-                log.info("开始解析PDF，总页数: {}", totalPages);
-
-                for (int page = 1; page <= totalPages; page++) {
-                    stripper.setStartPage(page);
-                    stripper.setEndPage(page);
-                    String pageText = stripper.getText(document);
-                    if (pageText != null && !pageText.trim().isEmpty()) {
-                        chunkExtractedText(pageText, chunkQueue);
-                        log.debug("已处理第 {} 页，文本长度: {}", page, pageText.length());
-                    }
-
-                    // 定期提示进度
-                    if (page % 10 == 0) {
-                        log.info("当前进度： {}/{} 页", page, totalPages);
+            int totalPages;
+            // 从临时文件加载PDF：PDF 的交叉引用表位于文件末尾，需要随机读取，无法直接从 HTTP 流解析
+            try (PDDocument document = openDocument(tempFile)) {
+                totalPages = document.getNumberOfPages();
+                if (!parallelEnabled || extractThreads <= 1 || totalPages < parallelMinPages) {
+                    log.info("开始解析PDF，总页数: {}", totalPages);
+                    PDFTextStripper stripper = new PDFTextStripper();
+                    for (int page = 1; page <= totalPages; page++) {
+                        handlePage(page, totalPages, extractPage(stripper, document, page), session);
                     }
+                    flushCarryOver(session);
+                    log.info("PDF解析完成，共处理 {} 页，{}", totalPages, session.getMemoryStats());
+                    return;
                 }
-                log.info("PDF解析完成，共处理 {} 页", totalPages);
             }
+
+            log.info("开始并行解析PDF，总页数: {}，每 {} 页一个任务，提取线程数: {}", totalPages, pagesPerRange, extractThreads);
+            parseParallel(tempFile, totalPages, session);
+            flushCarryOver(session);
+            log.info("PDF解析完成，共处理 {} 页，{}", totalPages, session.getMemoryStats());
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
@@ -77,30 +146,102 @@ public class PdfFileParser extends AbstractFileParserStrategy {
     }
 
     /**
-     * 对一个已知的长字符串进行分块处理
-     *
-     * @param text       要分块的文本
-     * @param chunkQueue 文本块队列
+     * 按页区间并行提取，按提交顺序取回结果并分块
+     * 在途任务数限制为线程数的 2 倍：下游分块或队列阻塞时不再提交新任务，已提取但未分块的文本不会无限堆积
      */
-    private void chunkExtractedText(String text, BlockingQueue<String> chunkQueue) {
-        // 将上一页的尾部加到当前页开头
-        String combinedText = lastPageTail + text;
-        List<String> chunks = splitTextRecursively(combinedText);
-
-        // 更新 lastPageTail 为当前页末尾（用于下一页）
-        if (!chunks.isEmpty()) {
-            String lastChunk = chunks.get(chunks.size() - 1);
-            int tailLength = Math.min(lastChunk.length(), CHUNK_OVERLAP);
-            lastPageTail = lastChunk.substring(lastChunk.length() - tailLength);
-        } else {
-            lastPageTail = "";
+    private void parseParallel(Path pdfFile, int totalPages, ParseSession session) {
+        Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+        int maxInFlight = extractThreads * 2;
+        int nextStartPage = 1;
+        int page = 1;
+        try {
+            while (nextStartPage <= totalPages || !inFlight.isEmpty()) {
+                while (nextStartPage <= totalPages && inFlight.size() < maxInFlight) {
+                    int startPage = nextStartPage;
+                    int endPage = Math.min(totalPages, startPage + pagesPerRange - 1);
+                    inFlight.addLast(extractExecutor.submit(() -> extractRange(pdfFile, startPage, endPage)));
+                    nextStartPage = endPage + 1;
+                }
+                for (String pageText : inFlight.pollFirst().get()) {
+                    handlePage(page++, totalPages, pageText, session);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("PDF解析被中断", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("PDF页面提取失败: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<List<String>> future : inFlight) {
+                future.cancel(true);
+            }
         }
+    }
 
-        // 将生成的所有块放入队列
-        for (String chunk : chunks) {
-            putToQueue(chunkQueue, chunk);
+    /**
+     * 在当前线程中独立打开文档，提取 [startPage, endPage] 区间内每一页的文本
+     */
+    private List<String> extractRange(Path pdfFile, int startPage, int endPage) throws IOException {
+        try (PDDocument document = openDocument(pdfFile)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            List<String> pages = new ArrayList<>(endPage - startPage + 1);
+            for (int page = startPage; page <= endPage; page++) {
+                pages.add(extractPage(stripper, document, page));
+            }
+            return pages;
         }
+    }
 
-        log.info("从Tika提取的文本中生成了 {} 个文本块", chunks.size());
+    /**
+     * 打开文档，文件读取方式与解码流缓存上限见 source、maxMainMemoryMb
+     */
+    private PDDocument openDocument(Path pdfFile) throws IOException {
+        RandomAccessRead read = SOURCE_MEMORY_MAPPED.equalsIgnoreCase(source)
+                ? new RandomAccessReadMemoryMappedFile(pdfFile.toFile())
+                : new RandomAccessReadBufferedFile(pdfFile.toFile());
+        try {
+            // 文档关闭时一并关闭 read
+            return Loader.loadPDF(read, "", null, null,
+                    MemoryUsageSetting.setupMixed(maxMainMemoryMb * 1024 * 1024).streamCache);
+        } catch (IOException e) {
+            read.close();
+            throw e;
+        }
+    }
+
+    private String extractPage(PDFTextStripper stripper, PDDocument document, int page) throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        try {
+            return stripper.getText(document);
+        } finally {
+            // 默认的资源缓存会在整个文档生命周期内保留已解析的字体、图片等资源，每页提取后换成新的缓存以便回收
+            document.setResourceCache(new DefaultResourceCache());
+        }
+    }
+
+    private void handlePage(int page, int totalPages, String pageText, ParseSession session) {
+        session.getMemoryStats().sample();
+        if (pageText != null && !pageText.trim().isEmpty()) {
+            chunkExtractedText(pageText, session);
+            log.debug("已处理第 {} 页，文本长度: {}", page, pageText.length());
+        }
+
+        // 定期提示进度
+        if (page % 10 == 0) {
+            log.info("当前进度： {}/{} 页", page, totalPages);
+        }
+    }
+
+    /**
+     * 对一个已知的长字符串进行分块处理
+     *
+     * @param text    要分块的文本
+     * @param session 本次解析的会话，carryOver 为上一页末尾的重叠文本（按 Token 分片时为上一页未输出的最后一个分块）
+     */
+    private void chunkExtractedText(String text, ParseSession session) {
+        // 将上一页的尾部加到当前页开头，切分后更新为当前页末尾（用于下一页）
+        int chunkCount = chunkAndEmit(text, session);
+        log.info("从Tika提取的文本中生成了 {} 个文本块", chunkCount);
     }
 }
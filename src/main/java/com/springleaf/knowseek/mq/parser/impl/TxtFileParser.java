@@ -1,6 +1,7 @@
 package com.springleaf.knowseek.mq.parser.impl;
 
 import com.springleaf.knowseek.mq.parser.AbstractFileParserStrategy;
+import com.springleaf.knowseek.mq.parser.ParseSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -10,7 +11,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * 纯文本文件解析器
@@ -22,7 +22,7 @@ import java.util.concurrent.BlockingQueue;
 public class TxtFileParser extends AbstractFileParserStrategy {
 
     @Override
-    public void parse(InputStream inputStream, BlockingQueue<String> chunkQueue) {
+    public void parse(InputStream inputStream, ParseSession session) {
         log.info("执行纯文本文件解析器，采用 纯文本流式 进行处理。");
 
         try (BufferedReader reader = new BufferedReader(
@@ -38,14 +38,15 @@ public class TxtFileParser extends AbstractFileParserStrategy {
                 // 当缓冲区积累到一定大小时进行处理
                 // 这里的 buffer 大小建议比 CHUNK_SIZE 大一些，以便找到合适的切分点
                 if (buffer.length() >= CHUNK_SIZE * 3) {
-                    totalChunks += extractChunksFromBufferSmart(buffer, chunkQueue, false);
+                    totalChunks += extractChunksFromBufferSmart(buffer, session, false);
                 }
             }
 
             // 处理剩余的所有内容
             if (!buffer.isEmpty()) {
-                totalChunks += extractChunksFromBufferSmart(buffer, chunkQueue, true);
+                totalChunks += extractChunksFromBufferSmart(buffer, session, true);
             }
+            totalChunks += flushCarryOver(session);
             log.info("纯文本流式处理共生成 {} 个文本块", totalChunks);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -56,7 +57,7 @@ public class TxtFileParser extends AbstractFileParserStrategy {
      * 智能从缓冲区提取文本块
      * 逻辑：找到缓冲区中最后一个安全的换行点，只处理那之前的数据，剩余数据保留在 StringBuilder 中
      */
-    private int extractChunksFromBufferSmart(StringBuilder buffer, BlockingQueue<String> chunkQueue, boolean isLastBuffer) {
+    private int extractChunksFromBufferSmart(StringBuilder buffer, ParseSession session, boolean isLastBuffer) {
         String content = buffer.toString();
 
         String textToProcess;
@@ -77,11 +78,18 @@ public class TxtFileParser extends AbstractFileParserStrategy {
             }
         }
 
+        if (isTokenBasedChunking()) {
+            // 按 Token 分片：未填满的最后一个分块留在 session.carryOver 中，与后续文本拼接，文件结束时输出
+            buffer.setLength(0);
+            buffer.append(remainingText);
+            return chunkAndEmit(textToProcess, session);
+        }
+
         // 调用核心分块方法
         List<String> chunks = splitTextRecursively(textToProcess);
 
         for (String chunk : chunks) {
-            putToQueue(chunkQueue, chunk);
+            emit(session, chunk);
         }
 
         // 重置缓冲区并填入残留文本
@@ -95,9 +103,8 @@ public class TxtFileParser extends AbstractFileParserStrategy {
             // 这样下一次处理 buffer 时，开头就是上一次的结尾，实现了跨 buffer 的重叠。
             if (!chunks.isEmpty()) {
                 String lastChunk = chunks.get(chunks.size() - 1);
-                int keepLen = Math.min(lastChunk.length(), CHUNK_OVERLAP);
                 // 插入到 buffer 头部
-                buffer.insert(0, lastChunk.substring(lastChunk.length() - keepLen));
+                buffer.insert(0, overlapTail(lastChunk));
             }
         }
 
@@ -0,0 +1,127 @@
+package com.springleaf.knowseek.partition;
+
+import com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 历史向量数据迁移到按知识库哈希分区的 tb_vector_record_partitioned（建表语句见 docs/postgres_sql.sql）
+ * 迁移分两步，均可重复执行：
+ * copy —— 按 id 区间分批复制，再补齐区间之外晚提交的行、同步已复制行的修改，不锁表，业务照常读写；
+ *         复制完成后再在分区表上创建 HNSW / GIN 索引，避免逐行维护索引
+ * swap —— 锁定原表写入，对整张原表补齐缺失行、同步修改、删除已不存在的行，校验两表一致后交换表名，
+ *         原表保留为 tb_vector_record_legacy；校验不通过时回滚，不切换
+ */
+@Slf4j
+@Component
+public class VectorPartitionMigrator {
+
+    private static final String MODE_COPY = "copy";
+    private static final String MODE_SWAP = "swap";
+    private static final String PARTITIONED_TABLE = "tb_vector_record_partitioned";
+
+    @Resource
+    private VectorRecordMapper vectorRecordMapper;
+
+    @Resource(name = "pgVectorTransactionManager")
+    private PlatformTransactionManager pgVectorTransactionManager;
+
+    /**
+     * 启动后执行的迁移步骤：none（默认）| copy | swap
+     */
+    @Value("${knowseek.pgvector.partition.migrate-on-startup:none}")
+    private String migrateOnStartup;
+
+    /**
+     * 每批复制的 id 区间长度
+     */
+    @Value("${knowseek.pgvector.partition.migrate-batch-size:5000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!MODE_COPY.equalsIgnoreCase(migrateOnStartup) && !MODE_SWAP.equalsIgnoreCase(migrateOnStartup)) {
+            return;
+        }
+        Thread.ofVirtual().name("vector-partition-migrate").start(() -> {
+            try {
+                if (MODE_COPY.equalsIgnoreCase(migrateOnStartup)) {
+                    copy();
+                } else {
+                    swap();
+                }
+            } catch (Exception e) {
+                log.error("向量表分区迁移失败（{}）", migrateOnStartup, e);
+            }
+        });
+    }
+
+    /**
+     * 从分区表已有的最大 id 之后继续复制，直到追上原表当前的最大 id；
+     * 区间复制只覆盖已提交的行，之后再补齐晚提交的小 id 行并同步已复制行的修改
+     * @return 本次复制的行数
+     */
+    public long copy() {
+        long start = System.currentTimeMillis();
+        long afterId = vectorRecordMapper.findMaxId(PARTITIONED_TABLE);
+        long maxId = vectorRecordMapper.findMaxId(VectorPartitionRouter.RECORD_TABLE);
+        long total = copyRange(afterId, maxId);
+        long missing = vectorRecordMapper.copyMissingToPartitioned();
+        int changed = vectorRecordMapper.syncChangedToPartitioned();
+        log.info("向量数据复制到分区表完成，id ({}, {}] 共 {} 条，补齐遗漏 {} 条，同步修改 {} 条，耗时 {} ms",
+                afterId, maxId, total, missing, changed, System.currentTimeMillis() - start);
+        return total + missing;
+    }
+
+    /**
+     * 在一个事务内锁定原表、补齐增量、校验一致并交换表名；切换后需开启 knowseek.pgvector.partition.enabled
+     * @throws IllegalStateException 补齐后两表仍不一致时抛出，事务回滚，原表保持不变
+     */
+    public void swap() {
+        // 先在不锁表的情况下追平大部分增量，缩短锁表时间
+        copy();
+
+        long start = System.currentTimeMillis();
+        new TransactionTemplate(pgVectorTransactionManager).executeWithoutResult(status -> {
+            vectorRecordMapper.lockRecordTableForSwap();
+            // 锁定后原表不再变化，对整张表做反连接补齐，不依赖 id 区间
+            int copied = vectorRecordMapper.copyMissingToPartitioned();
+            int changed = vectorRecordMapper.syncChangedToPartitioned();
+            int deleted = vectorRecordMapper.deleteMissingFromPartitioned();
+            verifyPartitioned();
+            vectorRecordMapper.swapPartitionedTable();
+            log.info("分区表已替换 tb_vector_record，补齐新增 {} 条、同步修改 {} 条、删除 {} 条", copied, changed, deleted);
+        });
+        log.info("向量表分区切换完成，锁表耗时 {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 行数与逐行内容均一致才允许切换；不一致通常是唯一键冲突导致行被跳过，需人工排查
+     */
+    private void verifyPartitioned() {
+        long sourceRows = vectorRecordMapper.countRows(VectorPartitionRouter.RECORD_TABLE);
+        long partitionedRows = vectorRecordMapper.countRows(PARTITIONED_TABLE);
+        long mismatches = vectorRecordMapper.countPartitionedMismatches();
+        if (sourceRows != partitionedRows || mismatches > 0) {
+            throw new IllegalStateException(String.format(
+                    "分区表与原表不一致，放弃切换：原表 %d 行，分区表 %d 行，缺失或不一致 %d 行",
+                    sourceRows, partitionedRows, mismatches));
+        }
+    }
+
+    private long copyRange(long afterId, long maxId) {
+        long total = 0;
+        for (long from = afterId; from < maxId; from += batchSize) {
+            long to = Math.min(from + batchSize, maxId);
+            total += vectorRecordMapper.copyToPartitioned(from, to);
+            log.debug("已复制 id ({}, {}]，累计 {} 条", from, to, total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,83 @@
+package com.springleaf.knowseek.partition;
+
+import com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper;
+import com.springleaf.knowseek.model.bo.VectorPartitionBO;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 向量表分区路由
+ * tb_vector_record 按 knowledge_base_id 哈希分区后，把待检索的知识库按所在分区分组，检索语句直接查询分区表，
+ * 每个分区只扫描自己的 HNSW 索引；知识库与分区的对应关系只取决于分区数，首次查询后缓存在进程内
+ * 未开启分区或路由失败时返回主表，由数据库自行决定扫描哪些分区
+ */
+@Slf4j
+@Component
+public class VectorPartitionRouter {
+
+    public static final String RECORD_TABLE = "tb_vector_record";
+
+    @Resource
+    private VectorRecordMapper vectorRecordMapper;
+
+    /**
+     * tb_vector_record 是否已切换为分区表（见 docs/postgres_sql.sql 及 VectorPartitionMigrator）
+     */
+    @Value("${knowseek.pgvector.partition.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 哈希分区数，必须与建表时的 MODULUS 一致
+     */
+    @Value("${knowseek.pgvector.partition.count:16}")
+    private int partitionCount;
+
+    private final Map<Long, String> tableByKnowledgeBase = new ConcurrentHashMap<>();
+
+    /**
+     * 将知识库按所在分区分组
+     * @return 每个元素为一张表及需要在该表中检索的知识库
+     */
+    public List<VectorPartitionBO> route(Long[] knowledgeBaseIds) {
+        if (!enabled || knowledgeBaseIds == null || knowledgeBaseIds.length == 0) {
+            return List.of(new VectorPartitionBO(RECORD_TABLE, knowledgeBaseIds));
+        }
+
+        List<Long> unresolved = new ArrayList<>();
+        for (Long knowledgeBaseId : knowledgeBaseIds) {
+            if (!tableByKnowledgeBase.containsKey(knowledgeBaseId)) {
+                unresolved.add(knowledgeBaseId);
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            try {
+                for (VectorPartitionBO partition : vectorRecordMapper.findPartitions(
+                        unresolved.toArray(Long[]::new), partitionCount)) {
+                    for (Long knowledgeBaseId : partition.getKnowledgeBaseIds()) {
+                        tableByKnowledgeBase.put(knowledgeBaseId, partition.getTableName());
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("计算知识库所在分区失败，检索主表: {}", e.getMessage());
+                return List.of(new VectorPartitionBO(RECORD_TABLE, knowledgeBaseIds));
+            }
+        }
+
+        Map<String, List<Long>> grouped = new LinkedHashMap<>();
+        for (Long knowledgeBaseId : knowledgeBaseIds) {
+            String tableName = tableByKnowledgeBase.getOrDefault(knowledgeBaseId, RECORD_TABLE);
+            grouped.computeIfAbsent(tableName, name -> new ArrayList<>()).add(knowledgeBaseId);
+        }
+        List<VectorPartitionBO> partitions = new ArrayList<>(grouped.size());
+        grouped.forEach((tableName, ids) -> partitions.add(new VectorPartitionBO(tableName, ids.toArray(Long[]::new))));
+        return partitions;
+    }
+}
@@ -0,0 +1,401 @@
+package com.springleaf.knowseek.persist;
+
+import com.alibaba.fastjson2.JSON;
+import com.springleaf.knowseek.cache.ChatSessionCache;
+import com.springleaf.knowseek.constans.ChatRedisKeyConstant;
+import com.springleaf.knowseek.mapper.mysql.MessageMapper;
+import com.springleaf.knowseek.model.entity.Message;
+import com.springleaf.knowseek.utils.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话消息异步批量落库
+ * 消息先分配ID并写入 Redis Stream（持久化兜底），再进入内存有界队列，由后台线程批量写入 tb_message，
+ * 并按会话合并更新最后活跃时间；写库成功后从 Stream 删除
+ * 进程崩溃或写库失败时，残留在 Stream 中的消息由恢复任务重放，批量插入按ID幂等，重放不会产生重复消息
+ * 会话消息被清空时记录清空标记（本地 + Redis），写库前按标记过滤，正在写库的批次、重放的遗留消息都不会让已清空的消息重新出现
+ */
+@Slf4j
+@Component
+public class MessageWriteBehindQueue {
+
+    private static final String FIELD_DATA = "data";
+
+    @Resource
+    private MessageMapper messageMapper;
+
+    @Resource
+    private ChatSessionCache chatSessionCache;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 内存队列容量，队列满时在调用线程同步写库
+     */
+    @Value("${knowseek.chat.persist.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * 单次批量插入的最大消息数
+     */
+    @Value("${knowseek.chat.persist.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * Stream 中超过该时长仍未删除的消息视为遗留消息，由恢复任务重放（秒）
+     * 需明显大于正常的写库延迟，避免与仍在运行的实例重复写入
+     */
+    @Value("${knowseek.chat.persist.recover-after-seconds:60}")
+    private long recoverAfterSeconds;
+
+    /**
+     * 会话消息清空标记的保留时长（小时），需覆盖遗留消息可能被重放的时间
+     */
+    @Value("${knowseek.chat.persist.discard-marker-ttl-hours:24}")
+    private long discardMarkerTtlHours;
+
+    private BlockingQueue<PendingMessage> queue;
+    private SnowflakeIdGenerator idGenerator;
+    private Thread drainer;
+    private volatile boolean running;
+
+    /**
+     * 已从队列取出、正在写库的批次，写库完成前仍需对读取可见
+     */
+    private volatile List<PendingMessage> inFlight = List.of();
+
+    /**
+     * 已提交、尚未写库完成的消息（消息ID -> 消息），写库完成后才移除，按ID读取时不存在出队到写库之间的空档
+     */
+    private final Map<Long, Message> pendingById = new ConcurrentHashMap<>();
+
+    /**
+     * 本实例记录的会话消息清空标记（会话ID -> 标记），Redis 不可用时仍能过滤本实例的消息
+     */
+    private final Map<Long, DiscardMarker> discardMarkers = new ConcurrentHashMap<>();
+
+    /**
+     * 写库与清空互斥：清空在设置标记后获取该锁，等待正在写库的批次完成，之后的批次都会按标记过滤
+     */
+    private final Object persistLock = new Object();
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        idGenerator = new SnowflakeIdGenerator(allocateWorkerId());
+        running = true;
+        drainer = Thread.ofVirtual().name("message-write-behind").start(this::drainLoop);
+    }
+
+    /**
+     * 提交一条消息，立即返回已分配ID的消息，实际写库异步进行
+     */
+    public Message submit(Long sessionId, String role, String content, String metadata) {
+        Message message = new Message(idGenerator.nextId(), sessionId, role, content, LocalDateTime.now(), metadata);
+        pendingById.put(message.getId(), message);
+
+        RecordId recordId = null;
+        try {
+            recordId = stringRedisTemplate.opsForStream().add(StreamRecords.string(
+                    Map.of(FIELD_DATA, JSON.toJSONString(message))).withStreamKey(ChatRedisKeyConstant.MESSAGE_PENDING_STREAM_KEY));
+        } catch (Exception e) {
+            // 没有持久化兜底时不能只放在内存里，直接同步写库
+            log.warn("消息写入待落库 Stream 失败，改为同步写库，sessionId: {}: {}", sessionId, e.getMessage());
+            try {
+                persist(List.of(new PendingMessage(message, null)));
+            } catch (RuntimeException persistException) {
+                // 没有 Stream 记录，不会被重放
+                pendingById.remove(message.getId());
+                throw persistException;
+            }
+            return message;
+        }
+
+        if (!queue.offer(new PendingMessage(message, recordId))) {
+            log.warn("消息落库队列已满（{}），在调用线程同步写库，sessionId: {}", queueCapacity, sessionId);
+            persist(List.of(new PendingMessage(message, recordId)));
+        }
+        return message;
+    }
+
+    /**
+     * 尚未写入数据库的会话消息，读库时与查询结果合并，保证刚提交的消息立即可见
+     */
+    public List<Message> pendingMessages(Long sessionId) {
+        List<Message> messages = new ArrayList<>();
+        for (PendingMessage pending : inFlight) {
+            if (pending.message().getSessionId().equals(sessionId)) {
+                messages.add(pending.message());
+            }
+        }
+        for (PendingMessage pending : queue) {
+            if (pending.message().getSessionId().equals(sessionId)) {
+                messages.add(pending.message());
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 按ID查询尚未写入数据库的消息
+     * @return 已写库或不存在时返回 null
+     */
+    public Message pendingMessage(Long messageId) {
+        return pendingById.get(messageId);
+    }
+
+    /**
+     * 丢弃会话尚未落库的消息（会话消息被清空时调用），返回时已没有该会话的批次正在写库，之后再删库不会被写回
+     * 此刻之前提交的消息，无论在队列中、正在写库，还是遗留在 Stream 中待重放，都不会再写入
+     */
+    public void discard(Long sessionId) {
+        long maxMessageId = SnowflakeIdGenerator.maxIdAt(System.currentTimeMillis());
+        long ttlMillis = TimeUnit.HOURS.toMillis(discardMarkerTtlHours);
+        discardMarkers.put(sessionId, new DiscardMarker(maxMessageId, System.currentTimeMillis() + ttlMillis));
+        try {
+            stringRedisTemplate.opsForValue().set(discardedKey(sessionId), String.valueOf(maxMessageId),
+                    ttlMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // 本实例仍按本地标记过滤，其他实例遗留的消息可能被重放
+            log.warn("记录会话消息清空标记失败，sessionId: {}: {}", sessionId, e.getMessage());
+        }
+
+        List<PendingMessage> discarded = new ArrayList<>();
+        queue.removeIf(pending -> {
+            if (pending.message().getSessionId().equals(sessionId)) {
+                discarded.add(pending);
+                return true;
+            }
+            return false;
+        });
+        discarded.forEach(pending -> pendingById.remove(pending.message().getId()));
+        acknowledge(discarded);
+
+        // 等待已在写库的批次完成
+        synchronized (persistLock) {
+            discardMarkers.values().removeIf(marker -> marker.expireAt() <= System.currentTimeMillis());
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                inFlight = List.copyOf(batch);
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // 写库失败的消息仍保留在 Stream 中，由恢复任务重放
+                log.error("批量写入对话消息失败，{} 条消息等待重放", batch.size(), e);
+            } finally {
+                inFlight = List.of();
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量写库，成功后按会话合并更新最后活跃时间并从 Stream 删除；所属会话已清空的消息不写库，直接从 Stream 删除
+     */
+    private void persist(List<PendingMessage> batch) {
+        synchronized (persistLock) {
+            Map<Long, Long> discardedBefore = discardedBefore(batch);
+            List<Message> messages = new ArrayList<>(batch.size());
+            Set<Long> sessionIds = new LinkedHashSet<>();
+            for (PendingMessage pending : batch) {
+                Message message = pending.message();
+                Long maxDiscardedId = discardedBefore.get(message.getSessionId());
+                if (maxDiscardedId == null || message.getId() > maxDiscardedId) {
+                    messages.add(message);
+                    sessionIds.add(message.getSessionId());
+                }
+            }
+            if (messages.size() < batch.size()) {
+                log.info("跳过所属会话已清空的待落库消息 {} 条", batch.size() - messages.size());
+            }
+
+            long start = System.currentTimeMillis();
+            if (!messages.isEmpty()) {
+                messageMapper.insertBatch(messages);
+            }
+            for (Long sessionId : sessionIds) {
+                chatSessionCache.markActive(sessionId);
+            }
+            batch.forEach(pending -> pendingById.remove(pending.message().getId()));
+            acknowledge(batch);
+            log.debug("批量写入对话消息 {} 条（{} 个会话），耗时 {} ms",
+                    messages.size(), sessionIds.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 查询批次内各会话的清空标记，本地标记优先，其余从 Redis 一次读取
+     * @return 会话ID -> 清空时刻可能生成的最大消息ID，没有标记的会话不在结果中
+     */
+    private Map<Long, Long> discardedBefore(List<PendingMessage> batch) {
+        Map<Long, Long> result = new HashMap<>();
+        List<Long> remoteSessionIds = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (PendingMessage pending : batch) {
+            Long sessionId = pending.message().getSessionId();
+            if (result.containsKey(sessionId) || remoteSessionIds.contains(sessionId)) {
+                continue;
+            }
+            DiscardMarker marker = discardMarkers.get(sessionId);
+            if (marker != null && marker.expireAt() > now) {
+                result.put(sessionId, marker.maxMessageId());
+            } else {
+                remoteSessionIds.add(sessionId);
+            }
+        }
+        if (remoteSessionIds.isEmpty()) {
+            return result;
+        }
+        try {
+            List<String> values = stringRedisTemplate.opsForValue()
+                    .multiGet(remoteSessionIds.stream().map(this::discardedKey).toList());
+            for (int i = 0; values != null && i < values.size(); i++) {
+                if (values.get(i) != null) {
+                    result.put(remoteSessionIds.get(i), Long.valueOf(values.get(i)));
+                }
+            }
+        } catch (Exception e) {
+            // 读不到标记时按未清空处理，与清空标记写入失败的情况一致
+            log.warn("读取会话消息清空标记失败: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    private void acknowledge(List<PendingMessage> batch) {
+        String[] recordIds = batch.stream()
+                .filter(pending -> pending.recordId() != null)
+                .map(pending -> pending.recordId().getValue())
+                .toArray(String[]::new);
+        if (recordIds.length == 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForStream().delete(ChatRedisKeyConstant.MESSAGE_PENDING_STREAM_KEY, recordIds);
+        } catch (Exception e) {
+            // 删除失败只会导致恢复任务重放，插入按ID幂等
+            log.warn("删除已落库消息的 Stream 记录失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重放 Stream 中遗留的消息（本实例或其他实例崩溃前未落库的消息），启动后及运行期间定期执行
+     */
+    @Scheduled(initialDelay = 10_000, fixedDelayString = "${knowseek.chat.persist.recover-interval-ms:60000}")
+    public void recoverPending() {
+        // Stream 记录ID以毫秒时间戳开头，只取超过等待时长的记录
+        String maxId = (System.currentTimeMillis() - recoverAfterSeconds * 1000) + "-0";
+        int recovered = 0;
+        while (true) {
+            List<MapRecord<String, Object, Object>> records;
+            try {
+                records = stringRedisTemplate.opsForStream().range(ChatRedisKeyConstant.MESSAGE_PENDING_STREAM_KEY,
+                        Range.of(Range.Bound.unbounded(), Range.Bound.inclusive(maxId)), Limit.limit().count(batchSize));
+            } catch (Exception e) {
+                log.warn("读取待落库消息 Stream 失败: {}", e.getMessage());
+                return;
+            }
+            if (records == null || records.isEmpty()) {
+                break;
+            }
+
+            List<PendingMessage> batch = new ArrayList<>(records.size());
+            for (MapRecord<String, Object, Object> record : records) {
+                Message message = JSON.parseObject((String) record.getValue().get(FIELD_DATA), Message.class);
+                batch.add(new PendingMessage(message, record.getId()));
+            }
+            try {
+                persist(batch);
+            } catch (Exception e) {
+                log.error("重放待落库消息失败，{} 条消息等待下次重放", batch.size(), e);
+                return;
+            }
+            recovered += batch.size();
+            if (records.size() < batchSize) {
+                break;
+            }
+        }
+        if (recovered > 0) {
+            log.warn("已重放 {} 条遗留的待落库消息", recovered);
+        }
+    }
+
+    /**
+     * 通过 Redis 计数器为每个实例分配节点号，Redis 不可用时随机选取
+     */
+    private long allocateWorkerId() {
+        try {
+            Long counter = stringRedisTemplate.opsForValue().increment(ChatRedisKeyConstant.MESSAGE_ID_WORKER_KEY);
+            if (counter != null) {
+                return counter % (SnowflakeIdGenerator.MAX_WORKER_ID + 1);
+            }
+        } catch (Exception e) {
+            log.warn("分配消息ID节点号失败，随机选取: {}", e.getMessage());
+        }
+        return ThreadLocalRandom.current().nextLong(SnowflakeIdGenerator.MAX_WORKER_ID + 1);
+    }
+
+    /**
+     * 停机时等待队列中的消息写完；未写完的仍在 Stream 中，下次启动后重放
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private String discardedKey(Long sessionId) {
+        return String.format(ChatRedisKeyConstant.MESSAGE_DISCARDED_KEY, sessionId);
+    }
+
+    /**
+     * @param recordId 对应的 Stream 记录ID，未写入 Stream 时为 null
+     */
+    private record PendingMessage(Message message, RecordId recordId) {
+    }
+
+    /**
+     * @param maxMessageId 清空时刻可能生成的最大消息ID
+     * @param expireAt     标记过期时间（毫秒）
+     */
+    private record DiscardMarker(long maxMessageId, long expireAt) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.springleaf.knowseek.rag;
+
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按 Token 预算组装好的知识上下文
+ * @param passages   各段文本，按文件相关性排序，同一文件内按分片序号排序
+ * @param tokenCount 估算的 Token 数（含来源标注）
+ */
+public record AssembledContext(List<ContextPassage> passages, int tokenCount) {
+
+    public static final AssembledContext EMPTY = new AssembledContext(List.of(), 0);
+
+    public boolean isEmpty() {
+        return passages.isEmpty();
+    }
+
+    /**
+     * 实际送入上下文的分片ID
+     */
+    public Set<Long> chunkIds() {
+        Set<Long> chunkIds = new LinkedHashSet<>();
+        for (ContextPassage passage : passages) {
+            chunkIds.addAll(passage.chunkIds());
+        }
+        return chunkIds;
+    }
+
+    /**
+     * 提供了分片的知识库ID
+     */
+    public Set<Long> knowledgeBaseIds() {
+        Set<Long> knowledgeBaseIds = new LinkedHashSet<>();
+        for (ContextPassage passage : passages) {
+            for (VectorRecordHitBO chunk : passage.chunks()) {
+                knowledgeBaseIds.add(chunk.getKnowledgeBaseId());
+            }
+        }
+        return knowledgeBaseIds;
+    }
+
+    public Set<Long> fileIds() {
+        Set<Long> fileIds = new LinkedHashSet<>();
+        for (ContextPassage passage : passages) {
+            fileIds.add(passage.fileId());
+        }
+        return fileIds;
+    }
+}
@@ -0,0 +1,122 @@
+package com.springleaf.knowseek.rag;
+
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+import com.springleaf.knowseek.utils.LexicalTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于 BM25 的轻量重排（纯 CPU，不依赖外部模型）
+ * 以候选分片集合作为语料计算问题词项的 BM25 得分，与向量相似度各自归一化后加权，得到重排得分
+ * 分词规则与关键词召回一致（见 LexicalTokenizer）
+ */
+@Slf4j
+@Component
+public class Bm25Reranker implements Reranker {
+
+    /**
+     * 词频饱和参数
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * 文档长度归一化参数
+     */
+    private static final double B = 0.75;
+
+    @Value("${knowseek.rag.rerank.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 单次重排的时间预算（毫秒），超出后放弃重排，保持召回顺序
+     */
+    @Value("${knowseek.rag.rerank.time-budget-ms:50}")
+    private long timeBudgetMillis;
+
+    /**
+     * BM25 得分在重排得分中的权重，其余为向量相似度
+     */
+    @Value("${knowseek.rag.rerank.lexical-weight:0.4}")
+    private double lexicalWeight;
+
+    @Override
+    public List<VectorRecordHitBO> rerank(String question, List<VectorRecordHitBO> candidates) {
+        if (!enabled || candidates.size() < 2) {
+            return candidates;
+        }
+        Set<String> queryTerms = new LinkedHashSet<>(LexicalTokenizer.tokenize(question));
+        if (queryTerms.isEmpty()) {
+            return candidates;
+        }
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000;
+
+        // 统计每个候选分片中问题词项的词频、分片长度，以及词项的文档频率
+        int n = candidates.size();
+        List<Map<String, Integer>> termFreqs = new ArrayList<>(n);
+        int[] lengths = new int[n];
+        long totalLength = 0;
+        Map<String, Integer> docFreqs = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (System.nanoTime() > deadline) {
+                log.warn("重排超出时间预算 {} ms（已处理 {}/{} 个分片），保持召回顺序", timeBudgetMillis, i, n);
+                return candidates;
+            }
+            List<String> terms = LexicalTokenizer.tokenize(candidates.get(i).getChunkText());
+            Map<String, Integer> termFreq = new HashMap<>();
+            for (String term : terms) {
+                if (queryTerms.contains(term)) {
+                    termFreq.merge(term, 1, Integer::sum);
+                }
+            }
+            for (String term : termFreq.keySet()) {
+                docFreqs.merge(term, 1, Integer::sum);
+            }
+            termFreqs.add(termFreq);
+            lengths[i] = terms.size();
+            totalLength += terms.size();
+        }
+        double avgLength = Math.max(1.0, (double) totalLength / n);
+
+        double[] bm25 = new double[n];
+        double maxBm25 = 0;
+        double minSimilarity = Double.MAX_VALUE;
+        double maxSimilarity = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            for (Map.Entry<String, Integer> entry : termFreqs.get(i).entrySet()) {
+                int docFreq = docFreqs.get(entry.getKey());
+                double idf = Math.log(1 + (n - docFreq + 0.5) / (docFreq + 0.5));
+                double tf = entry.getValue();
+                bm25[i] += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[i] / avgLength));
+            }
+            maxBm25 = Math.max(maxBm25, bm25[i]);
+            double similarity = similarity(candidates.get(i));
+            minSimilarity = Math.min(minSimilarity, similarity);
+            maxSimilarity = Math.max(maxSimilarity, similarity);
+        }
+
+        // 两种得分量纲不同，各自归一化到 [0, 1] 后加权
+        double similarityRange = maxSimilarity - minSimilarity;
+        List<VectorRecordHitBO> reranked = new ArrayList<>(candidates);
+        for (int i = 0; i < n; i++) {
+            double lexicalScore = maxBm25 > 0 ? bm25[i] / maxBm25 : 0;
+            double vectorScore = similarityRange > 0 ? (similarity(candidates.get(i)) - minSimilarity) / similarityRange : 0;
+            candidates.get(i).setRerankScore(lexicalWeight * lexicalScore + (1 - lexicalWeight) * vectorScore);
+        }
+        // 排序稳定，得分相同时保持召回顺序
+        reranked.sort(Comparator.comparing(VectorRecordHitBO::getRerankScore).reversed());
+        return reranked;
+    }
+
+    private static double similarity(VectorRecordHitBO hit) {
+        return hit.getSimilarity() != null ? hit.getSimilarity() : 0;
+    }
+}
@@ -0,0 +1,361 @@
+package com.springleaf.knowseek.rag;
+
+import com.springleaf.knowseek.exception.BusinessException;
+import com.springleaf.knowseek.model.bo.ChunkRangeBO;
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+import com.springleaf.knowseek.utils.LexicalTokenizer;
+import com.springleaf.knowseek.utils.TokenCountUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 知识上下文组装
+ * 按相关性依次挑选分片装入 Token 预算：与已选分片近似重复的跳过；同一文件内 chunk_index 相邻的分片合并为一段，
+ * 相邻分片间切分时保留的重叠文本只计入、只发送一次
+ * 开启邻近分片扩展时，在剩余预算内为入选分片补充前后 N 个分片，由近及远加入，使召回的孤立分片扩展为连续段落
+ */
+@Slf4j
+@Component
+public class ContextAssembler {
+
+    /**
+     * 每个来源文件的标注行（文件名、分片序号）预估占用的 Token 数
+     */
+    private static final int FILE_HEADER_TOKENS = 20;
+
+    /**
+     * 认定为重叠的最少字符数，避免把偶然相同的标点、短词当作重叠去掉
+     */
+    private static final int MIN_OVERLAP_CHARS = 8;
+
+    /**
+     * 默认的上下文 Token 预算
+     */
+    @Value("${knowseek.rag.context.token-budget:3000}")
+    private int defaultTokenBudget;
+
+    /**
+     * 单次请求允许的 Token 预算上限
+     */
+    @Value("${knowseek.rag.context.max-token-budget:8000}")
+    private int maxTokenBudget;
+
+    /**
+     * 默认最多送入上下文的分片数
+     */
+    @Value("${knowseek.rag.context.max-chunks:8}")
+    private int defaultMaxChunks;
+
+    /**
+     * 两个分片词项集合的 Jaccard 相似度达到该值视为近似重复
+     */
+    @Value("${knowseek.rag.context.dedup-similarity:0.9}")
+    private double dedupSimilarity;
+
+    /**
+     * 为入选分片补充的前后邻近分片数，0 表示不扩展
+     */
+    @Value("${knowseek.rag.context.neighbor-window:0}")
+    private int neighborWindow;
+
+    /**
+     * 组装上下文
+     * @param ranked      候选分片，按相关性从高到低排序
+     * @param tokenBudget 本次请求的 Token 预算，为 null 时使用默认值
+     * @param maxChunks   本次请求最多使用的分片数，为 null 时使用默认值
+     */
+    public AssembledContext assemble(List<VectorRecordHitBO> ranked, Integer tokenBudget, Integer maxChunks) {
+        int budget = resolveBudget(tokenBudget);
+        int chunkLimit = maxChunks != null ? maxChunks : defaultMaxChunks;
+
+        // 文件ID -> (chunk_index -> 分片)，文件按首个入选分片的顺序排列，即按文件相关性排列
+        Map<Long, TreeMap<Integer, VectorRecordHitBO>> selectedByFile = new LinkedHashMap<>();
+        List<Set<String>> selectedTerms = new ArrayList<>();
+        int usedTokens = 0;
+        int duplicates = 0;
+        int overBudget = 0;
+        for (VectorRecordHitBO hit : ranked) {
+            if (selectedTerms.size() >= chunkLimit) {
+                break;
+            }
+            if (hit.getChunkText() == null || hit.getChunkText().isBlank()) {
+                continue;
+            }
+            Set<String> terms = new HashSet<>(LexicalTokenizer.tokenize(hit.getChunkText()));
+            if (isNearDuplicate(terms, selectedTerms)) {
+                duplicates++;
+                continue;
+            }
+            TreeMap<Integer, VectorRecordHitBO> fileChunks = selectedByFile.get(hit.getFileId());
+            int cost = cost(hit, fileChunks);
+            if (usedTokens + cost > budget) {
+                // 较短的低分分片可能仍能装入，继续尝试
+                overBudget++;
+                continue;
+            }
+            selectedByFile.computeIfAbsent(hit.getFileId(), id -> new TreeMap<>()).put(hit.getChunkIndex(), hit);
+            selectedTerms.add(terms);
+            usedTokens += cost;
+        }
+
+        AssembledContext context = toContext(selectedByFile);
+        log.debug("上下文组装完成：候选 {} 个，入选 {} 个分片（{} 段），近似重复 {} 个，超出预算 {} 个，约 {}/{} Token",
+                ranked.size(), selectedTerms.size(), context.passages().size(), duplicates, overBudget,
+                context.tokenCount(), budget);
+        return context;
+    }
+
+    /**
+     * 入选分片前后 neighborWindow 个分片所在的序号区间，同一文件内重叠或相接的区间合并
+     * @return 未开启扩展或上下文为空时返回空列表
+     */
+    public List<ChunkRangeBO> neighborRanges(AssembledContext context) {
+        List<ChunkRangeBO> ranges = new ArrayList<>();
+        if (neighborWindow <= 0 || context.isEmpty()) {
+            return ranges;
+        }
+        for (Map.Entry<Long, TreeMap<Integer, VectorRecordHitBO>> entry : selectedByFile(context).entrySet()) {
+            ChunkRangeBO current = null;
+            for (Integer chunkIndex : entry.getValue().keySet()) {
+                int start = Math.max(0, chunkIndex - neighborWindow);
+                int end = chunkIndex + neighborWindow;
+                if (current != null && start <= current.getEndIndex() + 1) {
+                    current.setEndIndex(end);
+                } else {
+                    current = new ChunkRangeBO(entry.getKey(), start, end);
+                    ranges.add(current);
+                }
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 在剩余预算内加入邻近分片：按与最近入选分片的距离由近及远加入，同距离时按文件相关性排序，装不下的跳过
+     * @param neighbors 按 neighborRanges 读取到的分片（可包含已入选的分片）
+     */
+    public AssembledContext expandNeighbors(AssembledContext context, List<VectorRecordHitBO> neighbors,
+                                            Integer tokenBudget) {
+        if (neighbors.isEmpty()) {
+            return context;
+        }
+        int budget = resolveBudget(tokenBudget);
+        Map<Long, TreeMap<Integer, VectorRecordHitBO>> selectedByFile = selectedByFile(context);
+        List<Long> fileOrder = new ArrayList<>(selectedByFile.keySet());
+
+        // 计算每个候选邻近分片与本文件最近的入选分片的距离
+        List<VectorRecordHitBO> candidates = new ArrayList<>();
+        Map<Long, Integer> gaps = new HashMap<>();
+        for (VectorRecordHitBO neighbor : neighbors) {
+            TreeMap<Integer, VectorRecordHitBO> fileChunks = selectedByFile.get(neighbor.getFileId());
+            if (fileChunks == null || fileChunks.containsKey(neighbor.getChunkIndex())) {
+                continue;
+            }
+            Integer lower = fileChunks.lowerKey(neighbor.getChunkIndex());
+            Integer higher = fileChunks.higherKey(neighbor.getChunkIndex());
+            int gap = Math.min(lower != null ? neighbor.getChunkIndex() - lower : Integer.MAX_VALUE,
+                    higher != null ? higher - neighbor.getChunkIndex() : Integer.MAX_VALUE);
+            gaps.put(neighbor.getId(), gap);
+            candidates.add(neighbor);
+        }
+        candidates.sort(Comparator.comparing((VectorRecordHitBO neighbor) -> gaps.get(neighbor.getId()))
+                .thenComparing(neighbor -> fileOrder.indexOf(neighbor.getFileId()))
+                .thenComparing(VectorRecordHitBO::getChunkIndex));
+
+        int usedTokens = context.tokenCount();
+        int added = 0;
+        for (VectorRecordHitBO neighbor : candidates) {
+            TreeMap<Integer, VectorRecordHitBO> fileChunks = selectedByFile.get(neighbor.getFileId());
+            int cost = cost(neighbor, fileChunks);
+            if (usedTokens + cost > budget) {
+                continue;
+            }
+            fileChunks.put(neighbor.getChunkIndex(), neighbor);
+            usedTokens += cost;
+            added++;
+        }
+        if (added == 0) {
+            return context;
+        }
+
+        AssembledContext expanded = toContext(selectedByFile);
+        log.debug("邻近分片扩展完成：候选 {} 个，加入 {} 个，约 {}/{} Token",
+                candidates.size(), added, expanded.tokenCount(), budget);
+        return expanded;
+    }
+
+    /**
+     * 渲染为提示词中的知识文本，每个来源文件一组，标注文件名与分片序号
+     */
+    public String render(AssembledContext context, Map<Long, String> fileNames) {
+        StringBuilder builder = new StringBuilder();
+        Map<Long, List<ContextPassage>> passagesByFile = context.passages().stream()
+                .collect(Collectors.groupingBy(ContextPassage::fileId, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<Long, List<ContextPassage>> entry : passagesByFile.entrySet()) {
+            String chunkIndices = entry.getValue().stream()
+                    .flatMap(passage -> passage.chunkIndexes().stream())
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(","));
+            builder.append("【来源文件: ").append(fileNames.get(entry.getKey()))
+                    .append(" (chunks: ").append(chunkIndices).append(")】\n");
+            for (ContextPassage passage : entry.getValue()) {
+                builder.append("- ").append(passage.text()).append("\n");
+            }
+            builder.append("\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 拼接相邻分片，去掉后一分片开头与前一分片结尾重复的部分
+     */
+    public static String stitch(String previous, String next) {
+        return previous + next.substring(overlapLength(previous, next));
+    }
+
+    /**
+     * 前一分片结尾与后一分片开头的最长重叠字符数，不足 MIN_OVERLAP_CHARS 时视为没有重叠
+     * 重叠长度由切分方式决定（按字符为 100 字符，按 Token 为 overlapTokens 个 Token，英文 200 Token 约 600~800 字符），
+     * 且切分时总小于分块长度，因此以较短分片的全长为上限；用 KMP 失配表在线性时间内求出，不随重叠长度变慢
+     */
+    static int overlapLength(String previous, String next) {
+        int length = Math.min(previous.length(), next.length());
+        // failure[i]：next[0, i] 中既是真前缀又是后缀的最长长度
+        int[] failure = new int[length];
+        for (int i = 1, k = 0; i < length; i++) {
+            while (k > 0 && next.charAt(i) != next.charAt(k)) {
+                k = failure[k - 1];
+            }
+            if (next.charAt(i) == next.charAt(k)) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        // 在前一分片末尾 length 个字符上匹配 next 的前缀，扫描结束时的匹配长度即最长重叠
+        int matched = 0;
+        for (int i = previous.length() - length; i < previous.length(); i++) {
+            char c = previous.charAt(i);
+            while (matched > 0 && (matched == length || c != next.charAt(matched))) {
+                matched = failure[matched - 1];
+            }
+            if (c == next.charAt(matched)) {
+                matched++;
+            }
+        }
+        return matched >= MIN_OVERLAP_CHARS ? matched : 0;
+    }
+
+    /**
+     * 加入分片需要的 Token 数：与已入选的相邻分片重叠的部分不重复计入，文件首个分片计入来源标注
+     */
+    private int cost(VectorRecordHitBO hit, TreeMap<Integer, VectorRecordHitBO> fileChunks) {
+        String text = hit.getChunkText();
+        if (fileChunks == null) {
+            return FILE_HEADER_TOKENS + TokenCountUtil.estimate(text);
+        }
+        int start = 0;
+        int end = text.length();
+        VectorRecordHitBO previous = fileChunks.get(hit.getChunkIndex() - 1);
+        if (previous != null) {
+            start = overlapLength(previous.getChunkText(), text);
+        }
+        VectorRecordHitBO next = fileChunks.get(hit.getChunkIndex() + 1);
+        if (next != null) {
+            end = Math.max(start, text.length() - overlapLength(text, next.getChunkText()));
+        }
+        return TokenCountUtil.estimate(text.substring(start, end));
+    }
+
+    /**
+     * 校验请求指定的 Token 预算不超过配置上限，超出时拒绝而不是静默截断
+     * @param tokenBudget 本次请求的 Token 预算，为 null 时使用默认值，不校验
+     */
+    public void checkTokenBudget(Integer tokenBudget) {
+        if (tokenBudget != null && tokenBudget > maxTokenBudget) {
+            throw new BusinessException("上下文Token预算不能大于" + maxTokenBudget);
+        }
+    }
+
+    private int resolveBudget(Integer tokenBudget) {
+        checkTokenBudget(tokenBudget);
+        return tokenBudget != null ? tokenBudget : Math.min(defaultTokenBudget, maxTokenBudget);
+    }
+
+    /**
+     * 由已选分片生成各段文本并估算 Token 数，文件顺序保持不变
+     */
+    private AssembledContext toContext(Map<Long, TreeMap<Integer, VectorRecordHitBO>> selectedByFile) {
+        List<ContextPassage> passages = new ArrayList<>();
+        int tokenCount = 0;
+        for (Map.Entry<Long, TreeMap<Integer, VectorRecordHitBO>> entry : selectedByFile.entrySet()) {
+            tokenCount += FILE_HEADER_TOKENS;
+            for (ContextPassage passage : mergeAdjacent(entry.getKey(), entry.getValue())) {
+                passages.add(passage);
+                tokenCount += TokenCountUtil.estimate(passage.text());
+            }
+        }
+        return new AssembledContext(passages, tokenCount);
+    }
+
+    private Map<Long, TreeMap<Integer, VectorRecordHitBO>> selectedByFile(AssembledContext context) {
+        Map<Long, TreeMap<Integer, VectorRecordHitBO>> selectedByFile = new LinkedHashMap<>();
+        for (ContextPassage passage : context.passages()) {
+            TreeMap<Integer, VectorRecordHitBO> fileChunks =
+                    selectedByFile.computeIfAbsent(passage.fileId(), id -> new TreeMap<>());
+            for (VectorRecordHitBO chunk : passage.chunks()) {
+                fileChunks.put(chunk.getChunkIndex(), chunk);
+            }
+        }
+        return selectedByFile;
+    }
+
+    private List<ContextPassage> mergeAdjacent(Long fileId, TreeMap<Integer, VectorRecordHitBO> chunks) {
+        List<ContextPassage> passages = new ArrayList<>();
+        List<VectorRecordHitBO> run = new ArrayList<>();
+        String text = null;
+        for (VectorRecordHitBO chunk : chunks.values()) {
+            if (text != null && chunk.getChunkIndex() != run.get(run.size() - 1).getChunkIndex() + 1) {
+                passages.add(new ContextPassage(fileId, run, text));
+                run = new ArrayList<>();
+                text = null;
+            }
+            text = text == null ? chunk.getChunkText() : stitch(text, chunk.getChunkText());
+            run.add(chunk);
+        }
+        if (text != null) {
+            passages.add(new ContextPassage(fileId, run, text));
+        }
+        return passages;
+    }
+
+    private boolean isNearDuplicate(Set<String> terms, List<Set<String>> selectedTerms) {
+        if (terms.isEmpty()) {
+            return false;
+        }
+        for (Set<String> selected : selectedTerms) {
+            int intersection = 0;
+            for (String term : terms) {
+                if (selected.contains(term)) {
+                    intersection++;
+                }
+            }
+            int union = terms.size() + selected.size() - intersection;
+            if ((double) intersection / union >= dedupSimilarity) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
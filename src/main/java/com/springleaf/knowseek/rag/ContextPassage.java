@@ -0,0 +1,22 @@
+package com.springleaf.knowseek.rag;
+
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+
+import java.util.List;
+
+/**
+ * 上下文中的一段连续文本：同一文件内 chunk_index 相邻的分片去除重叠后拼接而成
+ * @param fileId 来源文件ID
+ * @param chunks 组成该段的分片（按序号升序、连续）
+ * @param text   拼接后的文本
+ */
+public record ContextPassage(Long fileId, List<VectorRecordHitBO> chunks, String text) {
+
+    public List<Long> chunkIds() {
+        return chunks.stream().map(VectorRecordHitBO::getId).toList();
+    }
+
+    public List<Integer> chunkIndexes() {
+        return chunks.stream().map(VectorRecordHitBO::getChunkIndex).toList();
+    }
+}
@@ -0,0 +1,48 @@
+package com.springleaf.knowseek.rag;
+
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多路召回结果融合
+ */
+public final class RankFusion {
+
+    private RankFusion() {}
+
+    /**
+     * 倒数排名融合（Reciprocal Rank Fusion）：score = Σ 1 / (k + rank)，rank 从 1 开始
+     * 只依赖各路结果的名次，不需要对向量距离与关键词得分做归一化；同一分片在多路中出现时得分累加
+     * @param rankings 各路召回结果，每路内部已按相关性从高到低排序
+     * @param k        平滑常数，越大名次差异的影响越小
+     * @return 去重后的分片，按融合得分从高到低排序，fusedScore 已赋值
+     */
+    public static List<VectorRecordHitBO> reciprocalRankFusion(List<List<VectorRecordHitBO>> rankings, int k) {
+        Map<Long, VectorRecordHitBO> hitsById = new LinkedHashMap<>();
+        Map<Long, Double> scores = new HashMap<>();
+        for (List<VectorRecordHitBO> ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                VectorRecordHitBO hit = ranking.get(i);
+                scores.merge(hit.getId(), 1.0 / (k + i + 1), Double::sum);
+                VectorRecordHitBO existing = hitsById.putIfAbsent(hit.getId(), hit);
+                if (existing != null && existing.getLexicalRank() == null) {
+                    existing.setLexicalRank(hit.getLexicalRank());
+                }
+            }
+        }
+
+        List<VectorRecordHitBO> fused = new ArrayList<>(hitsById.values());
+        for (VectorRecordHitBO hit : fused) {
+            hit.setFusedScore(scores.get(hit.getId()));
+        }
+        fused.sort(Comparator.comparing(VectorRecordHitBO::getFusedScore).reversed()
+                .thenComparing(VectorRecordHitBO::getDistance, Comparator.nullsLast(Comparator.naturalOrder())));
+        return fused;
+    }
+}
@@ -0,0 +1,20 @@
+package com.springleaf.knowseek.rag;
+
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+
+import java.util.List;
+
+/**
+ * 召回结果重排：在召回与构建上下文之间，对候选分片按与问题的相关性重新排序
+ * 实现需控制耗时；超出时间预算时返回原顺序，调用方不应因重排失败而中断检索
+ */
+public interface Reranker {
+
+    /**
+     * 重排候选分片
+     * @param question   用户问题
+     * @param candidates 召回的候选分片（已按召回得分排序）
+     * @return 按相关性从高到低排序的分片，rerankScore 已赋值；未重排时返回原列表
+     */
+    List<VectorRecordHitBO> rerank(String question, List<VectorRecordHitBO> candidates);
+}
@@ -1,8 +1,21 @@
 package com.springleaf.knowseek.service;
 
+import com.springleaf.knowseek.cache.EmbeddingCacheStats;
+
 import java.util.List;
 
 public interface EmbeddingService {
 
     List<float[]> embedTexts(List<String> texts);
+
+    /**
+     * 批量向量化，命中分片向量缓存的文本不再调用远程接口
+     * @param stats 缓存命中统计，可为空
+     */
+    List<float[]> embedTexts(List<String> texts, EmbeddingCacheStats stats);
+
+    /**
+     * 对话检索时向量化用户问题，相同问题（归一化后）命中问题向量缓存时不调用远程接口
+     */
+    float[] embedQuery(String question);
 }
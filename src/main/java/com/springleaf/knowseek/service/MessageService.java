@@ -17,6 +17,14 @@ public interface MessageService {
      */
     MessageVO createMessage(MessageCreateDTO createDTO, Long userId);
 
+    /**
+     * 保存对话消息（异步落库），调用方需已校验会话归属
+     * @param sessionId 会话ID
+     * @param role 消息角色
+     * @param content 消息内容
+     */
+    void saveMessage(Long sessionId, String role, String content);
+
     /**
      * 获取消息详情
      * @param messageId 消息ID
@@ -31,6 +39,21 @@ public interface MessageService {
      */
     List<MessageVO> getMessagesBySessionId(Long sessionId);
 
+    /**
+     * 获取会话最近的历史消息（用于构建对话上下文），按最近 N 轮与 Token 预算截断
+     * @param sessionId 会话ID
+     * @return 消息VO列表（旧 -> 新）
+     */
+    List<MessageVO> getRecentMessages(Long sessionId);
+
+    /**
+     * 获取指定用户会话最近的历史消息，用于不在请求线程上执行的调用方
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @return 消息VO列表（旧 -> 新）
+     */
+    List<MessageVO> getRecentMessages(Long sessionId, Long userId);
+
     /**
      * 删除会话的所有消息
      * @param sessionId 会话ID
@@ -18,6 +18,14 @@ public interface SessionService {
      */
     SessionVO createSession(SessionCreateDTO createDTO);
 
+    /**
+     * 为指定用户创建会话，用于不在请求线程上执行的调用方
+     * @param createDTO 创建会话DTO
+     * @param userId 用户ID
+     * @return 会话VO
+     */
+    SessionVO createSession(SessionCreateDTO createDTO, Long userId);
+
     /**
      * 获取会话详情
      * @param id 会话ID
@@ -25,6 +33,14 @@ public interface SessionService {
      */
     SessionVO getSessionById(Long id);
 
+    /**
+     * 获取指定用户的会话详情，用于不在请求线程上执行的调用方（无法从登录态取当前用户）
+     * @param id 会话ID
+     * @param userId 用户ID
+     * @return 会话VO
+     */
+    SessionVO getSessionById(Long id, Long userId);
+
     /**
      * 获取当前用户的会话列表
      * @return 会话VO列表
@@ -1,10 +1,43 @@
 package com.springleaf.knowseek.service;
 
+import com.springleaf.knowseek.model.bo.ChunkRangeBO;
 import com.springleaf.knowseek.model.bo.VectorBO;
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+import com.springleaf.knowseek.model.bo.VectorRecordSearchBO;
 
 import java.util.List;
 
 public interface VectorRecordService {
 
+    /**
+     * 批量写入向量记录（多行 INSERT）
+     */
     void saveVectorRecord(List<String> chunks, List<float[]> vectors, int startChunkIndex, VectorBO vectorBO);
+
+    /**
+     * 通过 COPY ... FROM STDIN (FORMAT BINARY) 批量导入向量记录，适用于大文件
+     */
+    void copyVectorRecord(List<String> chunks, List<float[]> vectors, int startChunkIndex, VectorBO vectorBO);
+
+    /**
+     * TopK 向量检索（不含 embedding 列），searchBO.efSearch 不为空时仅对本次查询生效
+     * 开启分区后本人知识库按所在分区路由（见 VectorPartitionRouter）
+     */
+    List<VectorRecordHitBO> searchTopKHits(VectorRecordSearchBO searchBO);
+
+    /**
+     * TopK 关键词检索，searchBO.lexicalQuery 为空时返回空列表
+     */
+    List<VectorRecordHitBO> searchLexicalHits(VectorRecordSearchBO searchBO);
+
+    /**
+     * 读取若干文件内指定序号区间的分片（邻近分片扩展），ranges 为空时返回空列表
+     */
+    List<VectorRecordHitBO> findChunksInRanges(List<ChunkRangeBO> ranges);
+
+    /**
+     * 为尚未生成分词结果的历史分片回填 chunk_terms
+     * @return 回填的分片数
+     */
+    int backfillChunkTerms();
 }
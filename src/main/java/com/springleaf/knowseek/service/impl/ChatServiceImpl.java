@@ -2,27 +2,35 @@ package com.springleaf.knowseek.service.impl;
 
 import cn.dev33.satoken.stp.StpUtil;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel;
+import com.springleaf.knowseek.cache.NameCache;
+import com.springleaf.knowseek.cache.SemanticAnswerCache;
 import com.springleaf.knowseek.constans.RagConstant;
-import com.springleaf.knowseek.mapper.mysql.FileUploadMapper;
 import com.springleaf.knowseek.mapper.mysql.KnowledgeBaseMapper;
 import com.springleaf.knowseek.mapper.mysql.UserMapper;
-import com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper;
+import com.springleaf.knowseek.mapper.mysql.UserOrganizationMapper;
+import com.springleaf.knowseek.model.bo.ChunkRangeBO;
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
 import com.springleaf.knowseek.model.bo.VectorRecordSearchBO;
-import com.springleaf.knowseek.model.bo.VectorRecordWithDistanceBO;
-import com.springleaf.knowseek.model.dto.MessageCreateDTO;
 import com.springleaf.knowseek.model.dto.ChatRequestDTO;
 import com.springleaf.knowseek.model.dto.SessionCreateDTO;
 import com.springleaf.knowseek.model.dto.SessionUpdateDTO;
-import com.springleaf.knowseek.model.entity.VectorRecord;
+import com.springleaf.knowseek.model.entity.UserOrganization;
 import com.springleaf.knowseek.model.vo.MessageVO;
 import com.springleaf.knowseek.model.vo.ChatResponseVO;
 import com.springleaf.knowseek.model.vo.SessionVO;
 import com.springleaf.knowseek.service.MessageService;
 import com.springleaf.knowseek.service.ChatService;
+import com.springleaf.knowseek.service.EmbeddingService;
 import com.springleaf.knowseek.service.SessionService;
+import com.springleaf.knowseek.service.VectorRecordService;
+import com.springleaf.knowseek.rag.AssembledContext;
+import com.springleaf.knowseek.rag.ContextAssembler;
+import com.springleaf.knowseek.rag.RankFusion;
+import com.springleaf.knowseek.rag.Reranker;
+import com.springleaf.knowseek.utils.LexicalTokenizer;
 import com.springleaf.knowseek.utils.PromptSecurityGuardUtil;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.springleaf.knowseek.utils.StageTimer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -32,7 +40,7 @@ import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -42,7 +50,14 @@ import reactor.core.publisher.Flux;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -53,11 +68,25 @@ public class ChatServiceImpl implements ChatService {
     private final DashScopeChatModel chatModel;
     private final SessionService sessionService;
     private final MessageService messageService;
-    private final VectorRecordMapper vectorRecordMapper;
+    private final VectorRecordService vectorRecordService;
     private final UserMapper userMapper;
-    private final EmbeddingModel embeddingModel;
     private final KnowledgeBaseMapper knowledgeBaseMapper;
-    private final FileUploadMapper fileUploadMapper;
+    private final UserOrganizationMapper userOrganizationMapper;
+    private final EmbeddingService embeddingService;
+    private final NameCache nameCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final Reranker reranker;
+    private final ContextAssembler contextAssembler;
+
+    /**
+     * 回放缓存答案时每个 SSE 事件携带的字符数
+     */
+    private static final int REPLAY_PIECE_LENGTH = 20;
+
+    /**
+     * 对话预处理（会话、历史、向量化、检索等）各阶段的执行器，阶段以阻塞 IO 为主，每个阶段一个虚拟线程
+     */
+    private final ExecutorService preflightExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -66,18 +95,18 @@ public class ChatServiceImpl implements ChatService {
             Long currentUserId = StpUtil.getLoginIdAsLong();
 
             // 获取或创建会话
-            SessionVO sessionVO = getOrCreateSession(requestDTO.getSessionId());
+            SessionVO sessionVO = getOrCreateSession(requestDTO.getSessionId(), currentUserId);
             Long sessionId = sessionVO.getId();
 
             // 获取会话历史消息
-            List<Message> messages = getSessionMessages(sessionId);
+            List<Message> messages = getSessionMessages(sessionId, currentUserId);
             boolean isFirstMessage = messages.isEmpty();
 
             // 添加用户消息
             messages.add(new UserMessage(requestDTO.getMessage()));
 
             // 保存用户消息到数据库
-            saveUserMessage(sessionId, requestDTO.getMessage(), currentUserId);
+            saveUserMessage(sessionId, requestDTO.getMessage());
 
             // 调用AI获取回复
             Prompt prompt = new Prompt(messages);
@@ -85,7 +114,7 @@ public class ChatServiceImpl implements ChatService {
             String assistantResponse = response.getResult().getOutput().getText();
 
             // 保存AI回复到数据库
-            saveAssistantMessage(sessionId, assistantResponse, currentUserId);
+            saveAssistantMessage(sessionId, assistantResponse);
 
             // 如果是用户的第一次提问，生成会话标题
             if (isFirstMessage) {
@@ -116,20 +145,40 @@ public class ChatServiceImpl implements ChatService {
         final StringBuilder fullResponse = new StringBuilder();
 
         try {
+            // 登录态绑定在请求线程上，需在进入异步阶段前取出
             Long currentUserId = StpUtil.getLoginIdAsLong();
-
-            // 获取或创建会话
-            SessionVO sessionVO = getOrCreateSession(requestDTO.getSessionId());
+            String userQuestion = requestDTO.getMessage();
+            Boolean useKnowledgeBase = requestDTO.getUseKnowledgeBase();
+            StageTimer timer = new StageTimer();
+
+            // 超出上限的上下文预算直接拒绝，不发起任何预处理
+            contextAssembler.checkTokenBudget(requestDTO.getContextTokenBudget());
+
+            // 输入安全检测不依赖 IO，先行判断，被拦截时不发起检索
+            boolean inputMalicious = PromptSecurityGuardUtil.isInputMalicious(userQuestion);
+
+            // 预处理依赖图：会话 -> 历史消息；会话 -> 问题向量，问题向量 + 检索知识库 + 所在组织 -> 检索 -> 上下文组装 -> 来源文件名；
+            // 主知识库ID -> 知识库名。向量化与检索会消耗接口配额和 pgvector 连接，在会话归属校验通过后才开始，校验失败时不会执行
+            // 其余阶段互不依赖，在虚拟线程上并发执行
+            CompletableFuture<SessionVO> sessionFuture = CompletableFuture.supplyAsync(
+                    () -> timer.time("session", () -> getOrCreateSession(requestDTO.getSessionId(), currentUserId)),
+                    preflightExecutor);
+            CompletableFuture<List<Message>> historyFuture = sessionFuture.thenApplyAsync(
+                    session -> requestDTO.getSessionId() == null
+                            ? new ArrayList<>() // 新建的会话没有历史消息
+                            : timer.time("history", () -> getSessionMessages(session.getId(), currentUserId)),
+                    preflightExecutor);
+            RagPreflight ragPreflight = useKnowledgeBase != null && useKnowledgeBase && !inputMalicious
+                    ? startRagPreflight(requestDTO, currentUserId, sessionFuture, timer)
+                    : null;
+
+            SessionVO sessionVO = await(sessionFuture);
             Long sessionId = sessionVO.getId();
-
-            // 获取会话历史消息
-            List<Message> messages = getSessionMessages(sessionId);
+            List<Message> messages = await(historyFuture);
             boolean isFirstMessage = messages.isEmpty();
 
-            String userQuestion = requestDTO.getMessage();
-
             // 输入安全检测
-            if (PromptSecurityGuardUtil.isInputMalicious(userQuestion)) {
+            if (inputMalicious) {
                 // 直接返回拦截响应，不调用模型
                 ChatResponseVO blockedResponse = new ChatResponseVO();
                 blockedResponse.setMessage(PromptSecurityGuardUtil.INJECTION_BLOCKED_RESPONSE);
@@ -149,68 +198,59 @@ public class ChatServiceImpl implements ChatService {
             }
 
             // RAG 检索知识
-            Boolean useKnowledgeBase = requestDTO.getUseKnowledgeBase();
-            if (useKnowledgeBase != null && useKnowledgeBase) {
-
-                float[] queryVector = embeddingModel.embed(userQuestion);
-                Long primaryKnowledgeBaseId = userMapper.selectById(currentUserId).getPrimaryKnowledgeBaseId();
+            // 语义答案缓存的写入参数，仅会话首问且检索到知识时赋值（有历史上下文的追问答案依赖上下文，不缓存）
+            SemanticAnswerCache.Scope answerCacheScope = null;
+            Set<Long> answerCacheSourceKbIds = null;
+            float[] answerCacheVector = null;
+            Set<Long> answerCacheChunkIds = null;
+            if (ragPreflight != null) {
+
+                float[] queryVector = await(ragPreflight.queryVector());
+                SemanticAnswerCache.Scope searchScope = await(ragPreflight.searchScope());
+                AssembledContext assembledContext = await(ragPreflight.context());
+
+                // 首问且检索结果与缓存一致时，直接回放缓存答案
+                if (isFirstMessage && !assembledContext.isEmpty()) {
+                    Set<Long> chunkIds = assembledContext.chunkIds();
+                    String cachedAnswer = semanticAnswerCache.lookup(searchScope, queryVector, chunkIds);
+                    if (cachedAnswer != null) {
+                        log.info("对话预处理完成（命中答案缓存），sessionId: {}，阶段耗时：{}", sessionId, timer);
+                        replayCachedAnswer(emitter, sessionId, userQuestion, cachedAnswer, currentUserId);
+                        return emitter;
+                    }
+                    answerCacheScope = searchScope;
+                    answerCacheSourceKbIds = assembledContext.knowledgeBaseIds();
+                    answerCacheVector = queryVector;
+                    answerCacheChunkIds = chunkIds;
+                }
 
                 // 即使不检索，也要准备 kbName
-                String kbName = knowledgeBaseMapper.getNameById(primaryKnowledgeBaseId);
+                String kbName = await(ragPreflight.knowledgeBaseName());
                 String knowledgeContext = ""; // 默认为空
 
-                VectorRecordSearchBO searchBO = new VectorRecordSearchBO();
-                searchBO.setUserId(currentUserId);
-                searchBO.setKnowledgeBaseId(primaryKnowledgeBaseId);
-                searchBO.setTopK(RagConstant.TOPK);
-                searchBO.setQueryVector(queryVector);
-
-                // 执行检索
-                List<VectorRecord> relevantRecords = performEnhancedRetrieval(searchBO);
-
                 // 构建知识上下文并加入 messages
-                if (!relevantRecords.isEmpty()) {
-                    // 按 file_id 分组 chunks
-                    Map<Long, List<VectorRecord>> recordsByFile = relevantRecords.stream()
-                            .collect(Collectors.groupingBy(VectorRecord::getFileId));
-
-                    StringBuilder kbBuilder = new StringBuilder();
-                    // 为每个文件单独标注
-                    for (Map.Entry<Long, List<VectorRecord>> entry : recordsByFile.entrySet()) {
-                        String fileName = getFileDisplayName(entry.getKey());
-
-                        // 提取当前文件中所有 chunk 的 chunkIndex
-                        String chunkIndices = entry.getValue().stream()
-                                .map(record -> String.valueOf(record.getChunkIndex()))
-                                .collect(Collectors.joining(","));
-
-                        // 拼接来源文件名 + chunk 索引
-                        kbBuilder.append("【来源文件: ").append(fileName);
-                        if (!chunkIndices.isEmpty()) {
-                            kbBuilder.append(" (chunks: ").append(chunkIndices).append(")");
-                        }
-                        kbBuilder.append("】\n");
-
-                        // 拼接 chunk 文本内容
-                        for (VectorRecord record : entry.getValue()) {
-                            kbBuilder.append("- ").append(record.getChunkText()).append("\n");
-                        }
-                        kbBuilder.append("\n");
-                    }
-
-                    knowledgeContext = kbBuilder.toString();
-                    log.info("检索到的相关知识：{}", knowledgeContext);
+                if (!assembledContext.isEmpty()) {
+                    Map<Long, String> fileNames = await(ragPreflight.fileNames());
+                    knowledgeContext = contextAssembler.render(assembledContext, fileNames);
+                    log.info("检索到的相关知识（{} 个分片，约 {} Token）：{}",
+                            assembledContext.chunkIds().size(), assembledContext.tokenCount(), knowledgeContext);
                 }
                 // 无论是否有知识，都添加 system prompt
                 String systemPrompt = PromptSecurityGuardUtil.buildSecureSystemPrompt(knowledgeContext, kbName);
                 messages.add(new SystemMessage(systemPrompt));
             }
+            log.info("对话预处理完成，sessionId: {}，阶段耗时：{}", sessionId, timer);
 
             // 添加用户真实提问
             messages.add(new UserMessage(userQuestion));
 
             // 保存用户消息到数据库
-            saveUserMessage(sessionId, requestDTO.getMessage(), currentUserId);
+            saveUserMessage(sessionId, requestDTO.getMessage());
+
+            final SemanticAnswerCache.Scope cacheScope = answerCacheScope;
+            final Set<Long> cacheSourceKbIds = answerCacheSourceKbIds;
+            final float[] cacheVector = answerCacheVector;
+            final Set<Long> cacheChunkIds = answerCacheChunkIds;
 
             // 调用AI流式获取回复
             Prompt prompt = new Prompt(messages);
@@ -226,7 +266,7 @@ public class ChatServiceImpl implements ChatService {
 
                 // 保存已收到的部分或全部回复
                 if (!fullResponse.isEmpty()) {
-                    saveAssistantMessage(sessionId, fullResponse.toString(), currentUserId);
+                    saveAssistantMessage(sessionId, fullResponse.toString());
                     if (isFirstMessage) {
                         generateAndUpdateSessionTitle(sessionId, requestDTO.getMessage(), currentUserId);
                     }
@@ -243,6 +283,7 @@ public class ChatServiceImpl implements ChatService {
             });
 
             // 订阅AI模型流，并将订阅对象保存到 AtomicReference
+            final AtomicBoolean firstTokenReceived = new AtomicBoolean(false);
             Disposable disposable = responseFlux.subscribe(
                     // 1. onNext: 接收到新数据块时的处理
                     chatResponse -> {
@@ -250,6 +291,11 @@ public class ChatServiceImpl implements ChatService {
                             String content = chatResponse.getResult().getOutput().getText();
                             if (content == null) return; // 有时模型会返回 null content
 
+                            if (firstTokenReceived.compareAndSet(false, true)) {
+                                timer.mark("firstToken");
+                                log.info("首个 Token 到达，sessionId: {}，阶段耗时：{}", sessionId, timer);
+                            }
+
                             fullResponse.append(content);
 
                             // 输出安全检测
@@ -291,6 +337,12 @@ public class ChatServiceImpl implements ChatService {
                     // 3. onComplete: AI模型流正常结束时的处理
                     () -> {
                         log.info("AI model stream for session {} completed successfully.", sessionId);
+                        // 仅缓存完整且安全的回答
+                        if (cacheChunkIds != null
+                                && !PromptSecurityGuardUtil.SAFE_FALLBACK_RESPONSE.contentEquals(fullResponse)) {
+                            semanticAnswerCache.put(cacheScope, cacheSourceKbIds, cacheVector, cacheChunkIds,
+                                    fullResponse.toString());
+                        }
                         emitter.complete(); // 这会触发 emitter 的 onCompletion 回调
                     }
             );
@@ -306,20 +358,127 @@ public class ChatServiceImpl implements ChatService {
         return emitter;
     }
 
-    private SessionVO getOrCreateSession(Long sessionId) {
+    /**
+     * 通过 SSE 分段回放缓存答案，消息落库与标题生成与正常对话保持一致
+     */
+    private void replayCachedAnswer(SseEmitter emitter, Long sessionId, String userQuestion,
+                                    String answer, Long currentUserId) {
+        saveUserMessage(sessionId, userQuestion);
+        try {
+            for (int start = 0; start < answer.length(); start += REPLAY_PIECE_LENGTH) {
+                ChatResponseVO responseVO = new ChatResponseVO();
+                responseVO.setMessage(answer.substring(start, Math.min(start + REPLAY_PIECE_LENGTH, answer.length())));
+                responseVO.setSessionId(sessionId);
+                responseVO.setTimestamp(LocalDateTime.now());
+                responseVO.setRole("assistant");
+                responseVO.setFromKnowledgeBase(true);
+                emitter.send(SseEmitter.event().data(responseVO));
+            }
+            emitter.complete();
+        } catch (IOException e) {
+            log.warn("Failed to replay cached answer for session {}, likely client disconnected.", sessionId);
+            emitter.completeWithError(e);
+        }
+        // 回放的答案已完整生成过，与正常流程一样保存并生成首问标题
+        saveAssistantMessage(sessionId, answer);
+        generateAndUpdateSessionTitle(sessionId, userQuestion, currentUserId);
+    }
+
+    /**
+     * 启动 RAG 预处理链路：问题向量化（会话校验通过后）、检索范围（知识库、所在组织）查询并发，完成后检索并按预算组装上下文，之后批量查询来源文件名
+     * @param sessionFuture 会话获取与归属校验，失败时向量化与检索不会执行
+     */
+    private RagPreflight startRagPreflight(ChatRequestDTO requestDTO, Long userId,
+                                           CompletableFuture<SessionVO> sessionFuture, StageTimer timer) {
+        String userQuestion = requestDTO.getMessage();
+        CompletableFuture<float[]> queryVectorFuture = sessionFuture.thenApplyAsync(
+                session -> timer.time("embedQuery", () -> embeddingService.embedQuery(userQuestion)), preflightExecutor);
+        CompletableFuture<Long> knowledgeBaseIdFuture = CompletableFuture.supplyAsync(
+                () -> timer.time("primaryKb", () -> userMapper.selectById(userId).getPrimaryKnowledgeBaseId()),
+                preflightExecutor);
+        CompletableFuture<String> knowledgeBaseNameFuture = knowledgeBaseIdFuture.thenApplyAsync(
+                knowledgeBaseId -> timer.time("kbName", () -> nameCache.getKnowledgeBaseName(knowledgeBaseId)),
+                preflightExecutor);
+
+        CompletableFuture<Long[]> knowledgeBaseIdsFuture = knowledgeBaseIdFuture.thenApplyAsync(
+                primaryKnowledgeBaseId -> timer.time("kbScope", () -> resolveKnowledgeBaseIds(
+                        requestDTO.getKnowledgeBaseIds(), primaryKnowledgeBaseId, userId)),
+                preflightExecutor);
+        CompletableFuture<Long[]> organizationIdsFuture = CompletableFuture.supplyAsync(
+                () -> timer.time("organizations", () -> userOrganizationMapper.selectByUserId(userId).stream()
+                        .map(UserOrganization::getOrganizationId)
+                        .toArray(Long[]::new)),
+                preflightExecutor);
+
+        CompletableFuture<SemanticAnswerCache.Scope> searchScopeFuture = knowledgeBaseIdsFuture.thenCombine(
+                organizationIdsFuture, SemanticAnswerCache.Scope::of);
+
+        CompletableFuture<List<VectorRecordHitBO>> rankedFuture = CompletableFuture
+                .allOf(queryVectorFuture, knowledgeBaseIdsFuture, organizationIdsFuture)
+                .thenApplyAsync(ignored -> timer.time("retrieval", () -> {
+                    VectorRecordSearchBO searchBO = new VectorRecordSearchBO();
+                    searchBO.setUserId(userId);
+                    searchBO.setKnowledgeBaseIds(knowledgeBaseIdsFuture.join());
+                    searchBO.setOrganizationIds(organizationIdsFuture.join());
+                    searchBO.setTopK(RagConstant.TOPK);
+                    searchBO.setQueryVector(queryVectorFuture.join());
+                    searchBO.setMaxDistance(RagConstant.MAX_DISTANCE);
+                    searchBO.setEfSearch(RagConstant.HNSW_EF_SEARCH);
+                    searchBO.setLexicalQuery(LexicalTokenizer.toTsQuery(userQuestion));
+                    searchBO.setLexicalTopK(RagConstant.LEXICAL_TOPK);
+                    return performEnhancedRetrieval(userQuestion, searchBO);
+                }), preflightExecutor);
+        CompletableFuture<AssembledContext> contextFuture = rankedFuture.thenApply(
+                ranked -> timer.time("assemble", () -> assembleContext(ranked, requestDTO)));
+        CompletableFuture<Map<Long, String>> fileNamesFuture = contextFuture.thenApplyAsync(
+                context -> timer.time("fileNames", () -> getFileDisplayNames(context.fileIds())), preflightExecutor);
+
+        return new RagPreflight(queryVectorFuture, searchScopeFuture, knowledgeBaseNameFuture,
+                contextFuture, fileNamesFuture);
+    }
+
+    /**
+     * 本次检索的知识库：请求指定时取其中属于当前用户的知识库，否则为主知识库
+     */
+    private Long[] resolveKnowledgeBaseIds(List<Long> requestedIds, Long primaryKnowledgeBaseId, Long userId) {
+        if (requestedIds != null && !requestedIds.isEmpty()) {
+            List<Long> ownedIds = knowledgeBaseMapper.selectOwnedIds(userId, new LinkedHashSet<>(requestedIds));
+            if (ownedIds.size() < new HashSet<>(requestedIds).size()) {
+                log.warn("请求检索的知识库中存在不属于当前用户或已删除的知识库，已忽略，userId: {}", userId);
+            }
+            return ownedIds.toArray(Long[]::new);
+        }
+        return primaryKnowledgeBaseId != null ? new Long[]{primaryKnowledgeBaseId} : new Long[0];
+    }
+
+    /**
+     * 等待预处理阶段完成，阶段内抛出的异常原样抛出
+     */
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private SessionVO getOrCreateSession(Long sessionId, Long userId) {
         if (sessionId == null) {
             // 创建新会话
             SessionCreateDTO createDTO = new SessionCreateDTO();
             createDTO.setSessionName("新对话");
-            return sessionService.createSession(createDTO);
+            return sessionService.createSession(createDTO, userId);
         } else {
             // 获取已有会话
-            return sessionService.getSessionById(sessionId);
+            return sessionService.getSessionById(sessionId, userId);
         }
     }
 
-    private List<Message> getSessionMessages(Long sessionId) {
-        List<MessageVO> messageVOs = messageService.getMessagesBySessionId(sessionId);
+    private List<Message> getSessionMessages(Long sessionId, Long userId) {
+        List<MessageVO> messageVOs = messageService.getRecentMessages(sessionId, userId);
         List<Message> messages = new ArrayList<>();
 
         for (MessageVO messageVO : messageVOs) {
@@ -333,20 +492,15 @@ public class ChatServiceImpl implements ChatService {
         return messages;
     }
 
-    private void saveUserMessage(Long sessionId, String content, Long currentUserId) {
-        MessageCreateDTO createDTO = new MessageCreateDTO();
-        createDTO.setSessionId(sessionId);
-        createDTO.setRole("user");
-        createDTO.setContent(content);
-        messageService.createMessage(createDTO, currentUserId);
+    /**
+     * 会话归属已在 getOrCreateSession 中校验，消息异步落库，不阻塞对话响应
+     */
+    private void saveUserMessage(Long sessionId, String content) {
+        messageService.saveMessage(sessionId, "user", content);
     }
 
-    private void saveAssistantMessage(Long sessionId, String content, Long currentUserId) {
-        MessageCreateDTO createDTO = new MessageCreateDTO();
-        createDTO.setSessionId(sessionId);
-        createDTO.setRole("assistant");
-        createDTO.setContent(content);
-        messageService.createMessage(createDTO, currentUserId);
+    private void saveAssistantMessage(Long sessionId, String content) {
+        messageService.saveMessage(sessionId, "assistant", content);
     }
 
     /**
@@ -394,79 +548,118 @@ public class ChatServiceImpl implements ChatService {
         }
     }
 
-    private String getFileDisplayName(Long fileId) {
-        String fileName = fileUploadMapper.getFileNameById(fileId);
-        return StringUtils.defaultIfBlank(fileName, "未知文件_" + fileId);
+    /**
+     * 批量查询检索结果涉及的来源文件名
+     * @return 文件ID -> 展示名称
+     */
+    private Map<Long, String> getFileDisplayNames(Set<Long> fileIds) {
+        Map<Long, String> fileNames = nameCache.getFileNames(fileIds);
+        Map<Long, String> displayNames = new HashMap<>();
+        for (Long fileId : fileIds) {
+            displayNames.put(fileId, StringUtils.defaultIfBlank(fileNames.get(fileId), "未知文件_" + fileId));
+        }
+        return displayNames;
     }
 
     /**
      * 召回流程：
-     * 先从数据库全局召回满足相似度阈值的 TopK 个候选分片，按文件分组后筛选出最相关的的前 MAX_FILES 个文件，最后在这些文件中各保留前 CHUNKS_PER_FILE 个最匹配的分片。
+     * 向量召回（满足相似度阈值的 TopK）与关键词召回（全文检索 TopK）并发执行，按 RRF 融合两路排名，再经重排得到候选分片的最终顺序；
+     * 送入上下文的分片由 ContextAssembler 按 Token 预算挑选。
      */
-    private List<VectorRecord> performEnhancedRetrieval(VectorRecordSearchBO searchBO) {
-        // Step 1: 召回候选（带 distance）
-        List<VectorRecordWithDistanceBO> candidates = vectorRecordMapper.findTopKByEmbeddingWithDistance(searchBO);
+    private List<VectorRecordHitBO> performEnhancedRetrieval(String question, VectorRecordSearchBO searchBO) {
+        // Step 1: 两路召回并发执行，各自超时，任一路失败或超时只使用另一路的结果
+        // 检索语句同时设置相同的服务端超时，调用方放弃等待后由 PostgreSQL 取消语句，及时释放 pgvector 连接
+        VectorRecordSearchBO vectorSearch = withStatementTimeout(searchBO, RagConstant.VECTOR_RECALL_TIMEOUT_MS);
+        VectorRecordSearchBO lexicalSearch = withStatementTimeout(searchBO, RagConstant.LEXICAL_RECALL_TIMEOUT_MS);
+        CompletableFuture<List<VectorRecordHitBO>> vectorRecall = recall("向量",
+                () -> vectorRecordService.searchTopKHits(vectorSearch), RagConstant.VECTOR_RECALL_TIMEOUT_MS);
+        CompletableFuture<List<VectorRecordHitBO>> lexicalRecall = recall("关键词",
+                () -> vectorRecordService.searchLexicalHits(lexicalSearch), RagConstant.LEXICAL_RECALL_TIMEOUT_MS);
+        List<VectorRecordHitBO> vectorHits = vectorRecall.join();
+        List<VectorRecordHitBO> lexicalHits = lexicalRecall.join();
+
+        List<VectorRecordHitBO> candidates = RankFusion.reciprocalRankFusion(
+                List.of(vectorHits, lexicalHits), RagConstant.RRF_K);
+        log.info("多路召回融合完成，向量 {} 个 + 关键词 {} 个 -> 候选分片 {} 个",
+                vectorHits.size(), lexicalHits.size(), candidates.size());
 
         if (candidates.isEmpty()) {
             return Collections.emptyList();
         }
 
-        // Step 2: 按 file_id 分组
-        Map<Long, List<VectorRecordWithDistanceBO>> groupedByFile = candidates.stream()
-                .collect(Collectors.groupingBy(VectorRecordWithDistanceBO::getFileId));
-
-        // Step 3: 为每个文件计算“代表分数”——取最小 distance（即最相关 chunk 的距离）
-        List<FileRelevance> fileRelevances = new ArrayList<>();
-        for (Map.Entry<Long, List<VectorRecordWithDistanceBO>> entry : groupedByFile.entrySet()) {
-            List<VectorRecordWithDistanceBO> chunks = entry.getValue();
-            // 找该文件中最相关的 chunk 的 distance
-            double bestDistance = chunks.stream()
-                    .mapToDouble(VectorRecordWithDistanceBO::getDistance)
-                    .min()
-                    .orElse(Double.MAX_VALUE);
-            fileRelevances.add(new FileRelevance(entry.getKey(), bestDistance, chunks));
-        }
-
-        // Step 4: 按文件相关性排序（distance 越小越相关）
-        fileRelevances.sort(Comparator.comparing(FileRelevance::getBestDistance));
-
-        // Step 5: 选择最相关的 MAX_FILES 个文件
-        List<VectorRecord> selected = new ArrayList<>();
+        // Step 2: 重排，失败时保持融合顺序
+        return rerank(question, candidates);
+    }
 
-        for (int i = 0; i < Math.min(RagConstant.MAX_FILES, fileRelevances.size()); i++) {
-            List<VectorRecordWithDistanceBO> chunks = fileRelevances.get(i).getChunks();
-            // Step 6: 对该文件内的 chunks 按 distance 排序，取 CHUNKS_PER_FILE 个分片
-            List<VectorRecordWithDistanceBO> topChunks = chunks.stream()
-                    .sorted(Comparator.comparing(VectorRecordWithDistanceBO::getDistance))
-                    .limit(RagConstant.CHUNKS_PER_FILE)
-                    .toList();
+    /**
+     * 按 Token 预算组装上下文；开启邻近分片扩展时，用一次区间查询读取入选分片前后的分片并在剩余预算内补充
+     */
+    private AssembledContext assembleContext(List<VectorRecordHitBO> ranked, ChatRequestDTO requestDTO) {
+        AssembledContext context = contextAssembler.assemble(ranked,
+                requestDTO.getContextTokenBudget(), requestDTO.getMaxContextChunks());
+        List<ChunkRangeBO> ranges = contextAssembler.neighborRanges(context);
+        if (ranges.isEmpty()) {
+            return context;
+        }
+        try {
+            List<VectorRecordHitBO> neighbors = vectorRecordService.findChunksInRanges(ranges);
+            return contextAssembler.expandNeighbors(context, neighbors, requestDTO.getContextTokenBudget());
+        } catch (Exception e) {
+            log.warn("邻近分片扩展失败，仅使用召回分片: {}", e.getMessage());
+            return context;
+        }
+    }
 
-            // 转换为原始 VectorRecord（去掉 distance）
-            selected.addAll(topChunks.stream().map(this::convertToVectorRecord).toList());
+    private List<VectorRecordHitBO> rerank(String question, List<VectorRecordHitBO> candidates) {
+        long start = System.nanoTime();
+        try {
+            List<VectorRecordHitBO> ranked = reranker.rerank(question, candidates);
+            log.info("重排完成，候选分片 {} 个，耗时 {} ms", candidates.size(), (System.nanoTime() - start) / 1_000_000);
+            return ranked;
+        } catch (Exception e) {
+            log.warn("重排失败，保持召回顺序: {}", e.getMessage());
+            return candidates;
         }
+    }
 
-        return selected;
+    /**
+     * RAG 预处理各阶段的结果
+     */
+    private record RagPreflight(CompletableFuture<float[]> queryVector,
+                                CompletableFuture<SemanticAnswerCache.Scope> searchScope,
+                                CompletableFuture<String> knowledgeBaseName,
+                                CompletableFuture<AssembledContext> context,
+                                CompletableFuture<Map<Long, String>> fileNames) {
     }
 
-    // 辅助类
-    @Data
-    @AllArgsConstructor
-    private static class FileRelevance {
-        private Long fileId;
-        private double bestDistance;
-        private List<VectorRecordWithDistanceBO> chunks;
+    @PreDestroy
+    public void shutdown() {
+        preflightExecutor.shutdownNow();
     }
 
-    // 转换方法
-    private VectorRecord convertToVectorRecord(VectorRecordWithDistanceBO withDist) {
-        VectorRecord record = new VectorRecord();
-        record.setId(withDist.getId());
-        record.setUserId(withDist.getUserId());
-        record.setKnowledgeBaseId(withDist.getKnowledgeBaseId());
-        record.setFileId(withDist.getFileId());
-        record.setChunkIndex(withDist.getChunkIndex());
-        record.setChunkText(withDist.getChunkText());
-        record.setEmbedding(withDist.getEmbedding());
-        return record;
+    private VectorRecordSearchBO withStatementTimeout(VectorRecordSearchBO searchBO, long timeoutMillis) {
+        VectorRecordSearchBO copy = new VectorRecordSearchBO();
+        BeanUtils.copyProperties(searchBO, copy);
+        copy.setStatementTimeoutMs(timeoutMillis);
+        return copy;
+    }
+
+    /**
+     * 在预处理执行器上执行一路召回，记录该路耗时；超时或失败时返回空结果
+     * orTimeout 只结束等待，不会中断正在执行的语句，语句由检索参数中的服务端超时取消
+     */
+    private CompletableFuture<List<VectorRecordHitBO>> recall(String name, Supplier<List<VectorRecordHitBO>> search,
+                                                              long timeoutMillis) {
+        return CompletableFuture.supplyAsync(() -> {
+                    long start = System.currentTimeMillis();
+                    List<VectorRecordHitBO> hits = search.get();
+                    log.info("{}召回完成，命中 {} 个，耗时 {} ms", name, hits.size(), System.currentTimeMillis() - start);
+                    return hits;
+                }, preflightExecutor)
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.warn("{}召回失败或超时（{} ms），本次忽略该路结果: {}", name, timeoutMillis, e.toString());
+                    return Collections.emptyList();
+                });
     }
 }
\ No newline at end of file
@@ -1,60 +1,227 @@
 package com.springleaf.knowseek.service.impl;
 
+import com.springleaf.knowseek.cache.EmbeddingCache;
+import com.springleaf.knowseek.cache.EmbeddingCacheStats;
+import com.springleaf.knowseek.cache.QueryEmbeddingMetrics;
+import com.springleaf.knowseek.config.EmbeddingConfig;
+import com.springleaf.knowseek.limiter.EmbeddingRateLimiter;
 import com.springleaf.knowseek.service.EmbeddingService;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class EmbeddingServiceImpl implements EmbeddingService {
 
+    /**
+     * 每累计多少次问题向量化输出一次缓存统计
+     */
+    private static final int QUERY_METRICS_LOG_INTERVAL = 100;
+
     private final EmbeddingModel embeddingModel;
-    private static final long RATE_LIMIT_DELAY_MS = 3500; // 每3.5秒调用一次，确保不超过1800RPM
-    private static final int MAX_BATCH_SIZE = 25; // 阿里云 DashScope 的批处理限制
+    private final EmbeddingRateLimiter embeddingRateLimiter;
+    private final EmbeddingCache embeddingCache;
+    private final EmbeddingCache queryEmbeddingCache;
+    private final QueryEmbeddingMetrics queryMetrics = new QueryEmbeddingMetrics();
+    private final int batchSize;
+
+    /**
+     * 进程内所有分片向量化调用方共享的在途请求上限，多个文件同时向量化时总并发也不会超出
+     */
+    private final Semaphore concurrencyPermits;
+
+    /**
+     * 问题向量化单独的在途请求上限，不排在文件向量化的批次之后
+     */
+    private final Semaphore queryPermits;
+
+    /**
+     * 每个批次一个虚拟线程，阻塞在限流或网络 IO 上不占用平台线程
+     */
+    private final ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public EmbeddingServiceImpl(EmbeddingModel embeddingModel,
+                                EmbeddingRateLimiter embeddingRateLimiter,
+                                @Qualifier("embeddingCache") EmbeddingCache embeddingCache,
+                                @Qualifier("queryEmbeddingCache") EmbeddingCache queryEmbeddingCache,
+                                EmbeddingConfig embeddingConfig) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingRateLimiter = embeddingRateLimiter;
+        this.embeddingCache = embeddingCache;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.batchSize = embeddingConfig.getBatchSize();
+        this.concurrencyPermits = new Semaphore(embeddingConfig.getMaxConcurrency(), true);
+        this.queryPermits = new Semaphore(embeddingConfig.getQueryMaxConcurrency(), true);
+    }
 
     @Override
     public List<float[]> embedTexts(List<String> texts) {
-        List<float[]> allEmbeddings = new ArrayList<>();
-        int totalBatches = (texts.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE;
-
-        log.info("开始向量化处理，共 {} 个文本，分 {} 批处理", texts.size(), totalBatches);
-
-        // 分批处理文本
-        for (int i = 0; i < texts.size(); i += MAX_BATCH_SIZE) {
-            int endIndex = Math.min(i + MAX_BATCH_SIZE, texts.size());
-            List<String> batch = texts.subList(i, endIndex);
-            int batchNumber = (i / MAX_BATCH_SIZE) + 1;
-            
-            // 限流：除第一批外，每批之间等待
-            if (i > 0) {
-                try {
-                    log.debug("限流等待 {} 毫秒后处理第 {} 批（共 {} 个文本）",
-                            RATE_LIMIT_DELAY_MS, batchNumber, batch.size());
-                    Thread.sleep(RATE_LIMIT_DELAY_MS);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("向量化处理被中断", e);
-                }
+        return embedTexts(texts, null);
+    }
+
+    @Override
+    public List<float[]> embedTexts(List<String> texts, EmbeddingCacheStats stats) {
+        if (texts.isEmpty() || !embeddingCache.isEnabled()) {
+            return embedRemote(texts, false);
+        }
+
+        List<String> keys = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            keys.add(embeddingCache.key(text));
+        }
+        Map<String, float[]> vectorsByKey = new HashMap<>(embeddingCache.getAll(new LinkedHashSet<>(keys)));
+
+        // 未命中的文本按 Key 去重，同一批内重复的分片只向量化一次
+        Map<String, String> missTexts = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!vectorsByKey.containsKey(keys.get(i))) {
+                missTexts.putIfAbsent(keys.get(i), texts.get(i));
             }
-            log.debug("正在向量化第 {}/{} 批（{}个文本）",
-                    batchNumber, totalBatches, batch.size());
+        }
 
-            // 对当前批次进行向量化
-            List<float[]> batchEmbeddings = embeddingModel.embed(batch);
-            allEmbeddings.addAll(batchEmbeddings);
+        if (!missTexts.isEmpty()) {
+            List<float[]> fetched = embedRemote(new ArrayList<>(missTexts.values()), false);
+            Map<String, float[]> fresh = new HashMap<>();
+            int index = 0;
+            for (String key : missTexts.keySet()) {
+                fresh.put(key, fetched.get(index++));
+            }
+            embeddingCache.putAll(fresh);
+            vectorsByKey.putAll(fresh);
+        }
 
-            log.debug("第 {} 批向量化完成，本批生成 {} 个向量",
-                    batchNumber, batchEmbeddings.size());
+        List<float[]> result = new ArrayList<>(texts.size());
+        for (String key : keys) {
+            result.add(vectorsByKey.get(key));
+        }
+
+        int hitCount = texts.size() - missTexts.size();
+        int savedCalls = batchCount(texts.size()) - batchCount(missTexts.size());
+        if (stats != null) {
+            stats.record(hitCount, missTexts.size(), savedCalls);
+        }
+        log.debug("分片向量缓存命中 {}/{}，节省接口调用 {} 次", hitCount, texts.size(), savedCalls);
+        return result;
+    }
+
+    @Override
+    public float[] embedQuery(String question) {
+        long start = System.nanoTime();
+        String key = queryEmbeddingCache.isEnabled() ? queryEmbeddingCache.key(question) : null;
+        float[] vector = key != null ? queryEmbeddingCache.get(key) : null;
+        boolean hit = vector != null;
+        if (!hit) {
+            vector = embedRemote(List.of(question), true).get(0);
+            if (key != null) {
+                queryEmbeddingCache.put(key, vector);
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        queryMetrics.record(hit, elapsedNanos);
+        log.debug("问题向量化{}，耗时 {} ms", hit ? "命中缓存" : "调用接口", elapsedNanos / 1_000_000);
+        if (queryMetrics.getTotal() % QUERY_METRICS_LOG_INTERVAL == 0) {
+            log.info("问题向量缓存统计：{}", queryMetrics);
+        }
+        return vector;
+    }
+
+    public QueryEmbeddingMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+
+    /**
+     * 调用远程向量化接口，按 batchSize 分批并发请求
+     * @param query 是否为问题向量化，问题向量化使用预留的配额与并发许可
+     */
+    private List<float[]> embedRemote(List<String> texts, boolean query) {
+        if (texts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int totalBatches = batchCount(texts.size());
+        log.info("开始向量化处理，共 {} 个文本，分 {} 批并发处理", texts.size(), totalBatches);
+
+        // 各批次并发提交，由限流器和并发上限控制实际发送节奏
+        List<Future<List<float[]>>> futures = new ArrayList<>(totalBatches);
+        for (int i = 0; i < texts.size(); i += batchSize) {
+            List<String> batch = texts.subList(i, Math.min(i + batchSize, texts.size()));
+            int batchNumber = (i / batchSize) + 1;
+            futures.add(batchExecutor.submit(() -> embedBatch(batch, batchNumber, totalBatches, query)));
+        }
+
+        // 按提交顺序收集，保证向量与文本一一对应
+        List<float[]> allEmbeddings = new ArrayList<>(texts.size());
+        try {
+            for (Future<List<float[]>> future : futures) {
+                allEmbeddings.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("向量化处理被中断", e);
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            throw new RuntimeException("向量化处理失败: " + e.getCause().getMessage(), e.getCause());
         }
 
         log.info("向量化处理完成，共 {} 个文本生成 {} 个向量",
                 texts.size(), allEmbeddings.size());
         return allEmbeddings;
     }
+
+    private List<float[]> embedBatch(List<String> batch, int batchNumber, int totalBatches, boolean query)
+            throws InterruptedException {
+        // 先等待限流再占用并发许可：被限流的批次休眠期间不占许可，许可只用于限制真正在途的请求
+        if (query) {
+            embeddingRateLimiter.acquireQuery(batch);
+        } else {
+            embeddingRateLimiter.acquire(batch);
+        }
+        Semaphore permits = query ? queryPermits : concurrencyPermits;
+        permits.acquire();
+        try {
+            log.debug("正在向量化第 {}/{} 批（{}个文本）", batchNumber, totalBatches, batch.size());
+
+            List<float[]> batchEmbeddings = embeddingModel.embed(batch);
+            if (batchEmbeddings.size() != batch.size()) {
+                throw new IllegalStateException("第 " + batchNumber + " 批向量数量与文本数量不一致: "
+                        + batchEmbeddings.size() + " != " + batch.size());
+            }
+
+            log.debug("第 {} 批向量化完成，本批生成 {} 个向量", batchNumber, batchEmbeddings.size());
+            return batchEmbeddings;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private int batchCount(int textCount) {
+        return (textCount + batchSize - 1) / batchSize;
+    }
+
+    private void cancelAll(List<Future<List<float[]>>> futures) {
+        for (Future<List<float[]>> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
 }
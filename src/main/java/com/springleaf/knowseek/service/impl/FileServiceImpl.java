@@ -8,12 +8,15 @@ import com.aliyun.oss.OSSException;
 import com.aliyun.oss.model.*;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import com.springleaf.knowseek.cache.NameCache;
+import com.springleaf.knowseek.cache.SemanticAnswerCache;
 import com.springleaf.knowseek.config.OssConfig;
 import com.springleaf.knowseek.constans.OssUserFileKeyConstant;
 import com.springleaf.knowseek.constans.UploadRedisKeyConstant;
 import com.springleaf.knowseek.enums.UploadStatusEnum;
 import com.springleaf.knowseek.exception.BusinessException;
 import com.springleaf.knowseek.mapper.mysql.FileUploadMapper;
+import com.springleaf.knowseek.mapper.mysql.UserMapper;
 import com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper;
 import com.springleaf.knowseek.model.bo.VectorBO;
 import com.springleaf.knowseek.model.domain.FileWithKbNameDO;
@@ -54,6 +57,9 @@ public class FileServiceImpl implements FileService {
     private final EventPublisher eventPublisher;
     private final FileVectorizeEvent fileVectorizeEvent;
     private final VectorRecordMapper vectorRecordMapper;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final NameCache nameCache;
+    private final UserMapper userMapper;
 
     @Override
     public PageInfo<FileItemVO> getFileList(FilePageDTO filePageDTO) {
@@ -116,6 +122,15 @@ public class FileServiceImpl implements FileService {
         Long fileSize = dto.getFileSize();  //文件大小
         Integer chunkTotal = dto.getChunkTotal();   // 分片总数
         Long knowledgeBaseId = dto.getKnowledgeBaseId();
+        boolean isPublic = Boolean.TRUE.equals(dto.getIsPublic());
+        // 共享的文件记录上传者的主组织，组织成员检索时可见；不共享的文件不记录组织
+        Long organizationId = null;
+        if (isPublic) {
+            organizationId = userMapper.selectById(userId).getPrimaryOrgId();
+            if (organizationId == null) {
+                throw new BusinessException("未设置主组织，无法共享文件");
+            }
+        }
         String extension = FileUtil.extractFileExtension(fileName);  // 获取文件扩展名：xxx
         // URL 过期时间配置化
         long expireSeconds = ossConfig.getPresignedUrlExpiration();
@@ -184,8 +199,7 @@ public class FileServiceImpl implements FileService {
             fileUpload.setUserId(userId);
             fileUpload.setTotalSize(fileSize);
             fileUpload.setKnowledgeBaseId(knowledgeBaseId);
-            // TODO:对于是否公开需要用户自行设置 或者 取消这个字段
-            fileUpload.setIsPublic(false);
+            fileUpload.setIsPublic(isPublic);
             fileUploadMapper.saveFileUpload(fileUpload);
             log.info("文件上传信息已保存到数据库，上传状态设置为上传中");
 
@@ -200,8 +214,9 @@ public class FileServiceImpl implements FileService {
             redisValue.put("userId", String.valueOf(userId));
             redisValue.put("chunkTotal", String.valueOf(chunkTotal));
             redisValue.put("knowledgeBaseId", String.valueOf(knowledgeBaseId));
-            // TODO：待替换真实值
-            redisValue.put("organizationId", "123");
+            if (organizationId != null) {
+                redisValue.put("organizationId", String.valueOf(organizationId));
+            }
 
             stringRedisTemplate.opsForHash().putAll(fileUploadInfoKey, redisValue);
             stringRedisTemplate.expire(fileUploadInfoKey, expireSeconds, TimeUnit.SECONDS);
@@ -380,11 +395,9 @@ public class FileServiceImpl implements FileService {
             }
             Long knowledgeBaseId = Long.valueOf(knowledgeBaseIdStr.trim());
 
+            // 未共享的文件没有组织ID
             String organizationIdStr = (String) stringRedisTemplate.opsForHash().get(fileUploadInfoKey, "organizationId");
-            if (organizationIdStr == null) {
-                throw new IllegalArgumentException("organizationId 不存在");
-            }
-            Long organizationId = Long.valueOf(organizationIdStr.trim());
+            Long organizationId = organizationIdStr != null ? Long.valueOf(organizationIdStr.trim()) : null;
 
             VectorBO vectorBO = VectorBO.builder()
                     .organizationId(organizationId)
@@ -401,6 +414,8 @@ public class FileServiceImpl implements FileService {
                     .extension(extension)
                     .build();
             eventPublisher.publish(fileVectorizeEvent.topic(), fileVectorizeEvent.buildEventMessage(fileVectorizeMessage));
+            // 知识库新增文件，已缓存的答案可能不再完整
+            semanticAnswerCache.invalidate(knowledgeBaseId);
             return new UploadCompleteVO(false, null, location);
         } catch (Exception e) {
             log.error("分片合并失败", e);
@@ -649,6 +664,7 @@ public class FileServiceImpl implements FileService {
         try {
             if (file.getLocation() == null) {
                 fileUploadMapper.deleteByFileId(id);
+                nameCache.evictFile(id);
                 log.info("文件地址不存在，删除数据库记录");
                 return;
             }
@@ -660,9 +676,13 @@ public class FileServiceImpl implements FileService {
 
         // 2. 删除数据库记录
         fileUploadMapper.deleteByFileId(id);
+        nameCache.evictFile(id);
 
         // 3. 删除向量库数据
         vectorRecordMapper.deleteByFileId(id);
+
+        // 4. 清空该知识库的语义答案缓存
+        semanticAnswerCache.invalidate(file.getKnowledgeBaseId());
     }
 
     @Override
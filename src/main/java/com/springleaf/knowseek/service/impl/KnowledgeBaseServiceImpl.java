@@ -1,6 +1,7 @@
 package com.springleaf.knowseek.service.impl;
 
 import cn.dev33.satoken.stp.StpUtil;
+import com.springleaf.knowseek.cache.NameCache;
 import com.springleaf.knowseek.enums.UploadStatusEnum;
 import com.springleaf.knowseek.exception.BusinessException;
 import com.springleaf.knowseek.mapper.mysql.FileUploadMapper;
@@ -21,6 +22,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,6 +33,7 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
     private final FileUploadMapper fileUploadMapper;
     private final KnowledgeBaseMapper knowledgeBaseMapper;
     private final UserMapper userMapper;
+    private final NameCache nameCache;
 
     @Override
     public List<FileItemVO> getFileList(Long id) {
@@ -39,6 +42,11 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
             return Collections.emptyList();
         }
 
+        // 一次性查询涉及的知识库名称
+        Map<Long, String> knowledgeBaseNames = nameCache.getKnowledgeBaseNames(fileUploads.stream()
+                .map(FileUpload::getKnowledgeBaseId)
+                .collect(Collectors.toSet()));
+
         return fileUploads.stream()
                 .map(fileUpload -> {
                     FileItemVO fileItemVO = new FileItemVO();
@@ -55,7 +63,7 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
                     fileItemVO.setStatus(statusEnum != null ? statusEnum.getDescription() : "未知状态");
 
                     // 设置知识库名称
-                    fileItemVO.setKnowledgeBaseName(knowledgeBaseMapper.getNameById(fileUpload.getKnowledgeBaseId()));
+                    fileItemVO.setKnowledgeBaseName(knowledgeBaseNames.get(fileUpload.getKnowledgeBaseId()));
 
                     return fileItemVO;
                 })
@@ -84,6 +92,7 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
             throw new BusinessException("只有知识库所有者能删除该知识库");
         }
         knowledgeBaseMapper.deleteKnowledgeBaseById(id);
+        nameCache.evictKnowledgeBase(id);
     }
 
     @Override
@@ -105,6 +114,7 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
     @Override
     public void updateKnowledgeBaseName(KnowledgeBaseUpdateDTO updateDTO) {
         knowledgeBaseMapper.updateKnowledgeBaseNameById(updateDTO.getId(), updateDTO.getName(), updateDTO.getDescription());
+        nameCache.evictKnowledgeBase(updateDTO.getId());
     }
 
     @Override
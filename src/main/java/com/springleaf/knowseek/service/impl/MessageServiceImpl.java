@@ -1,38 +1,65 @@
 package com.springleaf.knowseek.service.impl;
 
 import cn.dev33.satoken.stp.StpUtil;
+import com.springleaf.knowseek.cache.ChatSessionCache;
 import com.springleaf.knowseek.exception.BusinessException;
 import com.springleaf.knowseek.mapper.mysql.MessageMapper;
-import com.springleaf.knowseek.mapper.mysql.SessionMapper;
 import com.springleaf.knowseek.model.dto.MessageCreateDTO;
 import com.springleaf.knowseek.model.entity.Message;
 import com.springleaf.knowseek.model.entity.Session;
 import com.springleaf.knowseek.model.vo.MessageVO;
+import com.springleaf.knowseek.persist.MessageWriteBehindQueue;
 import com.springleaf.knowseek.service.MessageService;
+import com.springleaf.knowseek.utils.TokenCountUtil;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * AI消息服务实现类
  */
+@Slf4j
 @RequiredArgsConstructor
 @Service
 public class MessageServiceImpl implements MessageService {
 
+    /**
+     * 加载历史消息时每页查询的条数
+     */
+    private static final int HISTORY_PAGE_SIZE = 20;
+
     private final MessageMapper messageMapper;
 
-    private final SessionMapper sessionMapper;
+    private final ChatSessionCache chatSessionCache;
+
+    private final MessageWriteBehindQueue messageWriteBehindQueue;
+
+    /**
+     * 对话上下文最多携带的历史轮数（一问一答为一轮）
+     */
+    @Value("${knowseek.chat.history.max-turns:10}")
+    private int historyMaxTurns;
+
+    /**
+     * 对话上下文中历史消息的 Token 预算（估算值）
+     */
+    @Value("${knowseek.chat.history.token-budget:4000}")
+    private int historyTokenBudget;
 
     @Override
     public MessageVO createMessage(MessageCreateDTO createDTO, Long userId) {
 
         // 验证会话是否存在且属于当前用户
-        Session session = sessionMapper.selectById(createDTO.getSessionId());
+        Session session = chatSessionCache.getSession(createDTO.getSessionId());
         if (session == null) {
             throw new BusinessException("会话不存在");
         }
@@ -40,38 +67,38 @@ public class MessageServiceImpl implements MessageService {
             throw new BusinessException("无权访问该会话");
         }
 
-        // 创建消息实体
-        Message message = new Message();
-        message.setSessionId(createDTO.getSessionId());
-        message.setRole(createDTO.getRole());
-        message.setContent(createDTO.getContent());
-        message.setMetadata(createDTO.getMetadata());
-        message.setCreatedAt(LocalDateTime.now());
-
-        // 插入数据库
-        messageMapper.insert(message);
-
-        // 更新会话的最后活跃时间
-        session.setUpdatedAt(LocalDateTime.now());
-        sessionMapper.updateById(session);
+        // 异步落库
+        Message message = messageWriteBehindQueue.submit(createDTO.getSessionId(), createDTO.getRole(),
+                createDTO.getContent(), createDTO.getMetadata());
+        chatSessionCache.appendMessage(message);
 
         // 转换为VO返回
         return convertToVO(message);
     }
 
+    @Override
+    public void saveMessage(Long sessionId, String role, String content) {
+        // 调用方已校验会话归属，这里只提交异步落库并追加到缓存的最近消息窗口
+        Message message = messageWriteBehindQueue.submit(sessionId, role, content, null);
+        chatSessionCache.appendMessage(message);
+    }
+
     @Override
     public MessageVO getMessageById(Long messageId) {
         // 获取当前登录用户ID
         Long userId = StpUtil.getLoginIdAsLong();
 
-        // 查询消息
-        Message message = messageMapper.selectById(messageId);
+        // 查询消息：先查尚未落库的消息（写库完成后才移除），未命中再读库
+        Message message = messageWriteBehindQueue.pendingMessage(messageId);
+        if (message == null) {
+            message = messageMapper.selectById(messageId);
+        }
         if (message == null) {
             throw new BusinessException("消息不存在");
         }
 
         // 验证消息所属会话是否属于当前用户
-        Session session = sessionMapper.selectById(message.getSessionId());
+        Session session = chatSessionCache.getSession(message.getSessionId());
         if (session == null || !session.getUserId().equals(userId)) {
             throw new BusinessException("无权访问该消息");
         }
@@ -86,7 +113,7 @@ public class MessageServiceImpl implements MessageService {
         Long userId = StpUtil.getLoginIdAsLong();
 
         // 验证会话是否存在且属于当前用户
-        Session session = sessionMapper.selectById(sessionId);
+        Session session = chatSessionCache.getSession(sessionId);
         if (session == null) {
             throw new BusinessException("会话不存在");
         }
@@ -94,8 +121,8 @@ public class MessageServiceImpl implements MessageService {
             throw new BusinessException("无权访问该会话");
         }
 
-        // 查询会话的所有消息
-        List<Message> messages = messageMapper.selectBySessionId(sessionId);
+        // 查询会话的所有消息（含尚未落库的消息）
+        List<Message> messages = withPendingMessages(sessionId, messageMapper.selectBySessionId(sessionId));
 
         // 转换为VO列表返回
         return messages.stream()
@@ -103,13 +130,110 @@ public class MessageServiceImpl implements MessageService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<MessageVO> getRecentMessages(Long sessionId) {
+        // 获取当前登录用户ID
+        return getRecentMessages(sessionId, StpUtil.getLoginIdAsLong());
+    }
+
+    @Override
+    public List<MessageVO> getRecentMessages(Long sessionId, Long userId) {
+        // 验证会话是否存在且属于当前用户
+        Session session = chatSessionCache.getSession(sessionId);
+        if (session == null) {
+            throw new BusinessException("会话不存在");
+        }
+        if (!session.getUserId().equals(userId)) {
+            throw new BusinessException("无权访问该会话");
+        }
+
+        long start = System.currentTimeMillis();
+        // 优先读缓存的最近消息窗口，未命中时读库并回填
+        List<Message> recent = chatSessionCache.getRecentMessages(sessionId);
+        boolean cached = recent != null;
+        if (!cached) {
+            recent = loadRecentMessages(sessionId, historyMaxTurns * 2);
+            chatSessionCache.putRecentMessages(sessionId, recent);
+        }
+
+        // 从最新消息开始倒序累加，直到达到 Token 预算
+        List<Message> window = new ArrayList<>();
+        int tokens = 0;
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            Message message = recent.get(i);
+            int messageTokens = TokenCountUtil.estimate(message.getContent());
+            // 至少保留最近一条，避免单条超长消息导致上下文为空
+            if (tokens + messageTokens > historyTokenBudget && !window.isEmpty()) {
+                break;
+            }
+            tokens += messageTokens;
+            window.add(message);
+        }
+
+        Collections.reverse(window);
+        log.debug("加载会话历史消息，sessionId: {}，{} 条，约 {} tokens，{}，耗时 {} ms",
+                sessionId, window.size(), tokens, cached ? "命中缓存" : "读取数据库",
+                System.currentTimeMillis() - start);
+
+        return window.stream()
+                .map(this::convertToVO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 从数据库倒序分页读取会话最近的消息
+     * @param sessionId 会话ID
+     * @param maxMessages 最多读取的条数
+     * @return 消息列表（旧 -> 新）
+     */
+    private List<Message> loadRecentMessages(Long sessionId, int maxMessages) {
+        List<Message> messages = new ArrayList<>();
+        LocalDateTime beforeCreatedAt = null;
+        Long beforeId = null;
+        while (messages.size() < maxMessages) {
+            int limit = Math.min(HISTORY_PAGE_SIZE, maxMessages - messages.size());
+            List<Message> page = messageMapper.selectRecentBySessionId(sessionId, beforeCreatedAt, beforeId, limit);
+            messages.addAll(page);
+            if (page.size() < limit) {
+                break;
+            }
+            Message oldest = page.get(page.size() - 1);
+            beforeCreatedAt = oldest.getCreatedAt();
+            beforeId = oldest.getId();
+        }
+        Collections.reverse(messages);
+        List<Message> merged = withPendingMessages(sessionId, messages);
+        return merged.size() > maxMessages ? merged.subList(merged.size() - maxMessages, merged.size()) : merged;
+    }
+
+    /**
+     * 将尚未落库的消息追加到数据库查询结果之后（待落库消息总是更新），按消息ID去重
+     * @param sessionId 会话ID
+     * @param messages 数据库中的消息（旧 -> 新）
+     * @return 合并后的消息列表（旧 -> 新）
+     */
+    private List<Message> withPendingMessages(Long sessionId, List<Message> messages) {
+        List<Message> pending = messageWriteBehindQueue.pendingMessages(sessionId);
+        if (pending.isEmpty()) {
+            return messages;
+        }
+        Set<Long> ids = messages.stream().map(Message::getId).collect(Collectors.toSet());
+        List<Message> merged = new ArrayList<>(messages);
+        for (Message message : pending) {
+            if (ids.add(message.getId())) {
+                merged.add(message);
+            }
+        }
+        return merged;
+    }
+
     @Override
     public boolean deleteMessagesBySessionId(Long sessionId) {
         // 获取当前登录用户ID
         Long userId = StpUtil.getLoginIdAsLong();
 
         // 验证会话是否存在且属于当前用户
-        Session session = sessionMapper.selectById(sessionId);
+        Session session = chatSessionCache.getSession(sessionId);
         if (session == null) {
             throw new BusinessException("会话不存在");
         }
@@ -118,7 +242,10 @@ public class MessageServiceImpl implements MessageService {
         }
 
         // 删除会话的所有消息
-        return messageMapper.deleteBySessionId(sessionId) >= 0;
+        messageWriteBehindQueue.discard(sessionId);
+        boolean deleted = messageMapper.deleteBySessionId(sessionId) >= 0;
+        chatSessionCache.evictMessages(sessionId);
+        return deleted;
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.springleaf.knowseek.service.impl;
 
 import cn.dev33.satoken.stp.StpUtil;
+import com.springleaf.knowseek.cache.ChatSessionCache;
 import com.springleaf.knowseek.exception.BusinessException;
 import com.springleaf.knowseek.mapper.mysql.SessionMapper;
 import com.springleaf.knowseek.model.dto.SessionCreateDTO;
@@ -30,11 +31,17 @@ public class SessionServiceImpl implements SessionService {
     @Resource
     private MessageService messageService;
 
+    @Resource
+    private ChatSessionCache chatSessionCache;
+
     @Override
     public SessionVO createSession(SessionCreateDTO createDTO) {
         // 获取当前登录用户ID
-        Long userId = StpUtil.getLoginIdAsLong();
+        return createSession(createDTO, StpUtil.getLoginIdAsLong());
+    }
 
+    @Override
+    public SessionVO createSession(SessionCreateDTO createDTO, Long userId) {
         // 创建会话实体
         Session session = new Session();
         session.setUserId(userId);
@@ -46,6 +53,7 @@ public class SessionServiceImpl implements SessionService {
 
         // 插入数据库
         sessionMapper.insert(session);
+        chatSessionCache.putSession(session);
 
         // 转换为VO返回
         return convertToVO(session);
@@ -54,10 +62,13 @@ public class SessionServiceImpl implements SessionService {
     @Override
     public SessionVO getSessionById(Long id) {
         // 获取当前登录用户ID
-        Long userId = StpUtil.getLoginIdAsLong();
+        return getSessionById(id, StpUtil.getLoginIdAsLong());
+    }
 
-        // 查询会话
-        Session session = sessionMapper.selectById(id);
+    @Override
+    public SessionVO getSessionById(Long id, Long userId) {
+        // 查询会话（优先读缓存）
+        Session session = chatSessionCache.getSession(id);
         if (session == null) {
             throw new BusinessException("会话不存在");
         }
@@ -89,7 +100,7 @@ public class SessionServiceImpl implements SessionService {
     public boolean updateSession(SessionUpdateDTO updateDTO, Long userId) {
 
         // 查询会话
-        Session session = sessionMapper.selectById(updateDTO.getId());
+        Session session = chatSessionCache.getSession(updateDTO.getId());
         if (session == null) {
             throw new BusinessException("会话不存在");
         }
@@ -104,7 +115,11 @@ public class SessionServiceImpl implements SessionService {
         session.setUpdatedAt(LocalDateTime.now());
 
         // 更新数据库
-        return sessionMapper.updateById(session) > 0;
+        boolean updated = sessionMapper.updateById(session) > 0;
+        if (updated) {
+            chatSessionCache.putSession(session);
+        }
+        return updated;
     }
 
     @Override
@@ -114,7 +129,7 @@ public class SessionServiceImpl implements SessionService {
         Long userId = StpUtil.getLoginIdAsLong();
 
         // 查询会话
-        Session session = sessionMapper.selectById(id);
+        Session session = chatSessionCache.getSession(id);
         if (session == null) {
             throw new BusinessException("会话不存在");
         }
@@ -124,6 +139,9 @@ public class SessionServiceImpl implements SessionService {
             throw new BusinessException("无权删除该会话");
         }
 
+        // 先标记删除再删库，并发读库得到的旧会话不会回填缓存；事务提交后再次清除缓存
+        chatSessionCache.evictDeletedSession(id);
+
         // 删除会话的所有消息
         messageService.deleteMessagesBySessionId(id);
 
@@ -137,7 +155,7 @@ public class SessionServiceImpl implements SessionService {
         Long userId = StpUtil.getLoginIdAsLong();
 
         // 查询会话
-        Session session = sessionMapper.selectById(id);
+        Session session = chatSessionCache.getSession(id);
         if (session == null) {
             throw new BusinessException("会话不存在");
         }
@@ -1,13 +1,36 @@
 package com.springleaf.knowseek.service.impl;
 
 import com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper;
+import com.springleaf.knowseek.model.bo.ChunkRangeBO;
 import com.springleaf.knowseek.model.bo.VectorBO;
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+import com.springleaf.knowseek.model.bo.VectorRecordSearchBO;
 import com.springleaf.knowseek.model.entity.VectorRecord;
+import com.springleaf.knowseek.partition.VectorPartitionRouter;
 import com.springleaf.knowseek.service.VectorRecordService;
+import com.springleaf.knowseek.utils.LexicalTokenizer;
+import com.springleaf.knowseek.utils.PgBinaryCopyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -15,10 +38,95 @@ import java.util.List;
 @RequiredArgsConstructor
 public class VectorRecordServiceImpl implements VectorRecordService {
 
+    /**
+     * 单条多行 INSERT 最多携带的行数
+     * 每行 8 个绑定参数，500 行约 4000 个参数，远低于 PostgreSQL JDBC 的 32767 参数上限
+     */
+    private static final int MAX_ROWS_PER_INSERT = 500;
+
+    /**
+     * 二进制 COPY 语句，列顺序必须与 writeCopyTuple 中的写入顺序一致
+     * created_at / updated_at / deleted 使用表默认值
+     */
+    private static final String COPY_SQL = "COPY tb_vector_record (user_id, knowledge_base_id, organization_id, file_id, "
+            + "embedding, chunk_index, chunk_text, chunk_terms) FROM STDIN (FORMAT BINARY)";
+    private static final int COPY_FIELD_COUNT = 8;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 回填分词结果时每批处理的分片数
+     */
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    /**
+     * pgvector 允许的 hnsw.ef_search 上限
+     */
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private static final String FILTERED_SEARCH_OVER_FETCH = "over-fetch";
+
     private final VectorRecordMapper vectorRecordMapper;
+    private final VectorPartitionRouter vectorPartitionRouter;
+
+    @Resource(name = "pgVectorDataSource")
+    private DataSource pgVectorDataSource;
+
+    /**
+     * 启动后是否为历史分片回填分词结果（升级关键词检索后执行一次即可）
+     */
+    @Value("${knowseek.rag.lexical.backfill-on-startup:false}")
+    private boolean backfillOnStartup;
+
+    /**
+     * 带检索范围过滤的 HNSW 检索策略：
+     * iterative（默认）—— 开启 pgvector 0.8+ 的迭代扫描，过滤后不足 K 条时继续扫描索引；启动时检测到 pgvector 低于 0.8 则回退为 over-fetch；
+     * over-fetch —— 适用于旧版本 pgvector，按 topK 的倍数放大 ef_search，结果仍不足 K 条时以 ef_search 上限重试一次
+     */
+    @Value("${knowseek.pgvector.filtered-search:iterative}")
+    private String filteredSearch;
+
+    /**
+     * 启动时根据配置与 pgvector 版本确定是否使用迭代扫描
+     */
+    private volatile boolean iterativeScan;
+
+    /**
+     * 迭代扫描最多扫描的元组数，限制过滤条件极其严格时的最坏耗时
+     */
+    @Value("${knowseek.pgvector.max-scan-tuples:20000}")
+    private int maxScanTuples;
+
+    /**
+     * over-fetch 策略下 ef_search 相对 topK 的放大倍数
+     */
+    @Value("${knowseek.pgvector.over-fetch-factor:4}")
+    private int overFetchFactor;
+
+    @PostConstruct
+    public void detectFilteredSearch() {
+        if (FILTERED_SEARCH_OVER_FETCH.equalsIgnoreCase(filteredSearch)) {
+            iterativeScan = false;
+            return;
+        }
+        String version = null;
+        try {
+            version = vectorRecordMapper.findVectorExtensionVersion();
+        } catch (Exception e) {
+            log.warn("查询 pgvector 版本失败", e);
+        }
+        iterativeScan = supportsIterativeScan(version);
+        if (!iterativeScan) {
+            log.warn("pgvector 版本 {} 不支持迭代扫描（需 0.8+），带过滤的 HNSW 检索回退为 over-fetch", version);
+        }
+    }
 
     @Override
     public void saveVectorRecord(List<String> chunks, List<float[]> vectors, int startChunkIndex, VectorBO vectorBO) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        List<VectorRecord> records = new ArrayList<>(Math.min(chunks.size(), MAX_ROWS_PER_INSERT));
         for (int i = 0; i < chunks.size(); i++) {
             VectorRecord record = VectorRecord.builder()
                     .fileId(vectorBO.getFileId())
@@ -27,10 +135,198 @@ public class VectorRecordServiceImpl implements VectorRecordService {
                     .knowledgeBaseId(vectorBO.getKnowledgeBaseId())
                     .chunkIndex(startChunkIndex + i)
                     .chunkText(chunks.get(i))
+                    .chunkTerms(LexicalTokenizer.toIndexText(chunks.get(i)))
                     .embedding(vectors.get(i))
                     .build();
+            records.add(record);
+
+            // 攒满一批后执行一次多行插入
+            if (records.size() >= MAX_ROWS_PER_INSERT) {
+                vectorRecordMapper.insertBatch(records);
+                records = new ArrayList<>(Math.min(chunks.size() - i - 1, MAX_ROWS_PER_INSERT));
+            }
+        }
+
+        if (!records.isEmpty()) {
+            vectorRecordMapper.insertBatch(records);
+        }
+        log.debug("批量写入向量记录完成，fileId: {}，共 {} 条", vectorBO.getFileId(), chunks.size());
+    }
+
+    @Override
+    public void copyVectorRecord(List<String> chunks, List<float[]> vectors, int startChunkIndex, VectorBO vectorBO) {
+        if (chunks.isEmpty()) {
+            return;
+        }
 
-            vectorRecordMapper.insert(record);
+        long start = System.currentTimeMillis();
+        Connection connection = DataSourceUtils.getConnection(pgVectorDataSource);
+        PGCopyOutputStream copyStream = null;
+        try {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            copyStream = new PGCopyOutputStream(pgConnection, COPY_SQL, COPY_BUFFER_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(copyStream, COPY_BUFFER_SIZE));
+
+            PgBinaryCopyUtil.writeHeader(out);
+            for (int i = 0; i < chunks.size(); i++) {
+                writeCopyTuple(out, vectorBO, startChunkIndex + i, chunks.get(i), vectors.get(i));
+            }
+            PgBinaryCopyUtil.writeTrailer(out);
+
+            // close 会 flush 缓冲区并结束 COPY，服务端在此时提交整批数据
+            out.close();
+            log.debug("COPY 写入向量记录完成，fileId: {}，共 {} 条，耗时 {} ms",
+                    vectorBO.getFileId(), chunks.size(), System.currentTimeMillis() - start);
+        } catch (SQLException | IOException e) {
+            cancelCopyQuietly(copyStream);
+            throw new RuntimeException("COPY 写入向量记录失败，fileId: " + vectorBO.getFileId(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, pgVectorDataSource);
+        }
+    }
+
+    @Override
+    @Transactional(transactionManager = "pgVectorTransactionManager", readOnly = true)
+    public List<VectorRecordHitBO> searchTopKHits(VectorRecordSearchBO searchBO) {
+        if (searchBO.getPartitions() == null) {
+            searchBO.setPartitions(vectorPartitionRouter.route(searchBO.getKnowledgeBaseIds()));
+        }
+        if (searchBO.getStatementTimeoutMs() != null) {
+            vectorRecordMapper.setLocalStatementTimeout(searchBO.getStatementTimeoutMs());
+        }
+        if (!iterativeScan) {
+            return searchTopKHitsWithOverFetch(searchBO);
+        }
+        // set_config(..., true) 只在当前事务内生效，因此与检索语句放在同一个 pgvector 事务中
+        if (searchBO.getEfSearch() != null) {
+            vectorRecordMapper.setLocalEfSearch(searchBO.getEfSearch());
+        }
+        // relaxed_order 下索引返回的顺序可能略有偏差，检索语句外层按距离重新排序
+        vectorRecordMapper.setLocalIterativeScan("relaxed_order", maxScanTuples);
+        return vectorRecordMapper.findTopKHitsByEmbedding(searchBO);
+    }
+
+    /**
+     * 放大 ef_search 检索；距离阈值改在应用侧过滤，以便根据 HNSW 实际返回的行数判断候选是否被检索范围过滤截断
+     * 检索范围内的分片本身不足 K 条时也会重试一次，代价是多一次索引扫描
+     */
+    private List<VectorRecordHitBO> searchTopKHitsWithOverFetch(VectorRecordSearchBO searchBO) {
+        VectorRecordSearchBO unbounded = new VectorRecordSearchBO();
+        BeanUtils.copyProperties(searchBO, unbounded);
+        unbounded.setMaxDistance(null);
+
+        int topK = searchBO.getTopK();
+        int efSearch = searchBO.getEfSearch() != null ? searchBO.getEfSearch() : topK;
+        efSearch = Math.min(MAX_EF_SEARCH, Math.max(efSearch, topK * overFetchFactor));
+        vectorRecordMapper.setLocalEfSearch(efSearch);
+        List<VectorRecordHitBO> hits = vectorRecordMapper.findTopKHitsByEmbedding(unbounded);
+        if (hits.size() < topK && efSearch < MAX_EF_SEARCH) {
+            log.debug("过滤后候选不足（{}/{}，ef_search={}），以 ef_search={} 重试", hits.size(), topK, efSearch, MAX_EF_SEARCH);
+            vectorRecordMapper.setLocalEfSearch(MAX_EF_SEARCH);
+            hits = vectorRecordMapper.findTopKHitsByEmbedding(unbounded);
+        }
+
+        Double maxDistance = searchBO.getMaxDistance();
+        if (maxDistance != null) {
+            hits.removeIf(hit -> hit.getDistance() >= maxDistance);
+        }
+        return hits;
+    }
+
+    @Override
+    @Transactional(transactionManager = "pgVectorTransactionManager", readOnly = true)
+    public List<VectorRecordHitBO> searchLexicalHits(VectorRecordSearchBO searchBO) {
+        if (searchBO.getLexicalQuery() == null || searchBO.getLexicalTopK() <= 0) {
+            return new ArrayList<>();
+        }
+        if (searchBO.getStatementTimeoutMs() != null) {
+            vectorRecordMapper.setLocalStatementTimeout(searchBO.getStatementTimeoutMs());
+        }
+        return vectorRecordMapper.findTopKHitsByLexical(searchBO);
+    }
+
+    @Override
+    public List<VectorRecordHitBO> findChunksInRanges(List<ChunkRangeBO> ranges) {
+        if (ranges.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return vectorRecordMapper.findChunksInRanges(ranges);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillChunkTermsOnStartup() {
+        if (backfillOnStartup) {
+            Thread.ofVirtual().name("chunk-terms-backfill").start(() -> {
+                try {
+                    backfillChunkTerms();
+                } catch (Exception e) {
+                    log.error("分片分词结果回填失败", e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public int backfillChunkTerms() {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            List<VectorRecord> chunks = vectorRecordMapper.findChunksWithoutTerms(afterId, BACKFILL_BATCH_SIZE);
+            for (VectorRecord chunk : chunks) {
+                vectorRecordMapper.updateChunkTerms(chunk.getId(), LexicalTokenizer.toIndexText(chunk.getChunkText()));
+            }
+            total += chunks.size();
+            if (chunks.size() < BACKFILL_BATCH_SIZE) {
+                break;
+            }
+            afterId = chunks.get(chunks.size() - 1).getId();
+        }
+        log.info("分片分词结果回填完成，共 {} 条，耗时 {} ms", total, System.currentTimeMillis() - start);
+        return total;
+    }
+
+    /**
+     * pgvector 0.8.0 起支持 hnsw.iterative_scan；版本未知（未安装或检测失败）时按不支持处理
+     */
+    private static boolean supportsIterativeScan(String version) {
+        if (version == null) {
+            return false;
+        }
+        String[] parts = version.split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 0 || minor >= 8;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 按 COPY_SQL 的列顺序写入一行
+     */
+    private void writeCopyTuple(DataOutputStream out, VectorBO vectorBO, int chunkIndex,
+                                String chunkText, float[] embedding) throws IOException {
+        PgBinaryCopyUtil.writeTupleStart(out, COPY_FIELD_COUNT);
+        PgBinaryCopyUtil.writeInt8(out, vectorBO.getUserId());
+        PgBinaryCopyUtil.writeInt8(out, vectorBO.getKnowledgeBaseId());
+        PgBinaryCopyUtil.writeInt8(out, vectorBO.getOrganizationId());
+        PgBinaryCopyUtil.writeInt8(out, vectorBO.getFileId());
+        PgBinaryCopyUtil.writeVector(out, embedding);
+        PgBinaryCopyUtil.writeInt4(out, chunkIndex);
+        PgBinaryCopyUtil.writeText(out, chunkText);
+        PgBinaryCopyUtil.writeText(out, LexicalTokenizer.toIndexText(chunkText));
+    }
+
+    private void cancelCopyQuietly(PGCopyOutputStream copyStream) {
+        if (copyStream == null || !copyStream.isActive()) {
+            return;
+        }
+        try {
+            copyStream.cancelCopy();
+        } catch (SQLException e) {
+            log.warn("取消 COPY 失败", e);
         }
     }
 }
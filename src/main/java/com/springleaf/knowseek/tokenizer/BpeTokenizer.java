@@ -0,0 +1,405 @@
+package com.springleaf.knowseek.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 字节级 BPE 分词器，词表为 tiktoken 格式：每行 "base64(Token 字节) rank"，rank 越小合并优先级越高（Qwen 系列模型的 qwen.tiktoken 即此格式）
+ * 先按与 Qwen 相同的正则预切分出片段，再对每个片段的 UTF-8 字节按 rank 从小到大两两合并，合并结束后剩余的字节串数即 Token 数
+ * 超过 MAX_PIECE_CHARS 的片段（如不含标点的长段中文）按固定长度分窗后各自合并，避免单个片段合并耗时过长，每个窗口边界最多多计 1 个 Token
+ * 无状态（片段缓存除外），可被多个解析线程共享
+ */
+public class BpeTokenizer implements TextTokenizer {
+
+    /**
+     * 预切分规则，与 Qwen 分词器一致：英文缩写、字母串（可带一个前导符号）、单个数字、符号串、换行、空白
+     */
+    private static final Pattern PRE_TOKENIZE = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*"
+                    + "|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+            Pattern.UNICODE_CHARACTER_CLASS);
+
+    static final int MAX_PIECE_CHARS = 256;
+
+    /**
+     * 短片段（单词、短句）重复率高，缓存其 Token 数；超出条目上限时整体清空
+     */
+    private static final int PIECE_CACHE_MAX_CHARS = 32;
+    private static final int PIECE_CACHE_MAX_ENTRIES = 100_000;
+
+    private static final int NO_RANK = Integer.MAX_VALUE;
+
+    /**
+     * Token 字节串（按 ISO-8859-1 逐字节转为 String 作为键） -> rank
+     */
+    private final Map<String, Integer> ranks;
+
+    private final Map<String, Integer> pieceCache = new ConcurrentHashMap<>();
+
+    public BpeTokenizer(Map<String, Integer> ranks) {
+        this.ranks = ranks;
+    }
+
+    /**
+     * 读取 tiktoken 格式的词表
+     */
+    public static BpeTokenizer load(InputStream inputStream) throws IOException {
+        Map<String, Integer> ranks = new HashMap<>(1 << 18);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                if (space < 0) {
+                    throw new IOException("BPE 词表格式错误: " + line);
+                }
+                byte[] token = Base64.getDecoder().decode(line.substring(0, space));
+                ranks.put(new String(token, StandardCharsets.ISO_8859_1), Integer.parseInt(line.substring(space + 1).trim()));
+            }
+        }
+        return new BpeTokenizer(ranks);
+    }
+
+    public int vocabularySize() {
+        return ranks.size();
+    }
+
+    @Override
+    public int countTokens(CharSequence text, int start, int end) {
+        int count = 0;
+        Matcher matcher = PRE_TOKENIZE.matcher(text).region(start, end);
+        while (matcher.find()) {
+            count += countPiece(text, matcher.start(), matcher.end());
+        }
+        return count;
+    }
+
+    @Override
+    public int prefixEnd(CharSequence text, int start, int end, int maxTokens) {
+        int tokens = 0;
+        Matcher matcher = PRE_TOKENIZE.matcher(text).region(start, end);
+        while (matcher.find()) {
+            for (int windowStart = matcher.start(); windowStart < matcher.end(); ) {
+                int windowEnd = windowEnd(text, windowStart, matcher.end());
+                int windowTokens = countWindow(text, windowStart, windowEnd);
+                if (tokens + windowTokens > maxTokens) {
+                    // 在窗口内部按 Token 边界截断
+                    String window = text.subSequence(windowStart, windowEnd).toString();
+                    int[] boundaries = tokenBoundaries(window.getBytes(StandardCharsets.UTF_8));
+                    return windowStart + toCharOffset(window, boundaries[maxTokens - tokens], true);
+                }
+                tokens += windowTokens;
+                windowStart = windowEnd;
+            }
+        }
+        return end;
+    }
+
+    @Override
+    public int suffixStart(CharSequence text, int start, int end, int maxTokens) {
+        // 先记录所有窗口，再从末尾向前累加
+        int[] windows = new int[32];
+        int size = 0;
+        Matcher matcher = PRE_TOKENIZE.matcher(text).region(start, end);
+        while (matcher.find()) {
+            for (int windowStart = matcher.start(); windowStart < matcher.end(); ) {
+                int windowEnd = windowEnd(text, windowStart, matcher.end());
+                if (size + 2 > windows.length) {
+                    windows = Arrays.copyOf(windows, windows.length * 2);
+                }
+                windows[size++] = windowStart;
+                windows[size++] = windowEnd;
+                windowStart = windowEnd;
+            }
+        }
+
+        int tokens = 0;
+        for (int i = size - 2; i >= 0; i -= 2) {
+            int windowTokens = countWindow(text, windows[i], windows[i + 1]);
+            if (tokens + windowTokens > maxTokens) {
+                String window = text.subSequence(windows[i], windows[i + 1]).toString();
+                int[] boundaries = tokenBoundaries(window.getBytes(StandardCharsets.UTF_8));
+                int keep = maxTokens - tokens;
+                return windows[i] + toCharOffset(window, boundaries[boundaries.length - 1 - keep], false);
+            }
+            tokens += windowTokens;
+        }
+        return start;
+    }
+
+    @Override
+    public TokenCounter newCounter() {
+        return new IncrementalCounter();
+    }
+
+    private int countPiece(CharSequence text, int start, int end) {
+        int count = 0;
+        for (int windowStart = start; windowStart < end; ) {
+            int windowEnd = windowEnd(text, windowStart, end);
+            count += countWindow(text, windowStart, windowEnd);
+            windowStart = windowEnd;
+        }
+        return count;
+    }
+
+    private static int windowEnd(CharSequence text, int windowStart, int pieceEnd) {
+        int windowEnd = Math.min(pieceEnd, windowStart + MAX_PIECE_CHARS);
+        if (windowEnd < pieceEnd && Character.isHighSurrogate(text.charAt(windowEnd - 1))) {
+            windowEnd--;
+        }
+        return windowEnd;
+    }
+
+    private int countWindow(CharSequence text, int start, int end) {
+        String window = text.subSequence(start, end).toString();
+        if (window.length() > PIECE_CACHE_MAX_CHARS) {
+            return merge(window.getBytes(StandardCharsets.UTF_8), null);
+        }
+        Integer cached = pieceCache.get(window);
+        if (cached != null) {
+            return cached;
+        }
+        int count = merge(window.getBytes(StandardCharsets.UTF_8), null);
+        if (pieceCache.size() >= PIECE_CACHE_MAX_ENTRIES) {
+            pieceCache.clear();
+        }
+        pieceCache.put(window, count);
+        return count;
+    }
+
+    /**
+     * @return 各 Token 在字节串中的边界，首元素为 0，末元素为字节数
+     */
+    private int[] tokenBoundaries(byte[] bytes) {
+        int[] next = new int[bytes.length];
+        int count = merge(bytes, next);
+        int[] boundaries = new int[count + 1];
+        int position = 0;
+        for (int i = 1; i <= count; i++) {
+            position = next[position];
+            boundaries[i] = position;
+        }
+        return boundaries;
+    }
+
+    /**
+     * 按 rank 从小到大合并相邻字节串，rank 相同时先合并靠左的，与 tiktoken 的合并顺序一致
+     * 字节串以链表表示：next[i] 为从字节 i 开始的字节串的结束位置，已被合并掉的位置为 -1
+     *
+     * @param next 为 null 时只计数
+     * @return Token 数
+     */
+    private int merge(byte[] bytes, int[] next) {
+        int n = bytes.length;
+        if (next == null) {
+            next = new int[n];
+        }
+        if (n <= 1 || ranks.containsKey(new String(bytes, StandardCharsets.ISO_8859_1))) {
+            if (n > 0) {
+                next[0] = n;
+            }
+            return n == 0 ? 0 : 1;
+        }
+
+        int[] prev = new int[n];
+        int[] pairRank = new int[n];
+        PairHeap heap = new PairHeap(n * 2);
+        for (int i = 0; i < n; i++) {
+            next[i] = i + 1;
+            prev[i] = i - 1;
+        }
+        for (int i = 0; i + 1 < n; i++) {
+            pairRank[i] = rankOf(bytes, i, i + 2);
+            heap.push(pairRank[i], i);
+        }
+        pairRank[n - 1] = NO_RANK;
+
+        int parts = n;
+        while (!heap.isEmpty()) {
+            long top = heap.pop();
+            int rank = (int) (top >>> 32);
+            int left = (int) top;
+            // 已被合并掉，或相邻关系变化后 rank 已不同的过期记录
+            if (next[left] < 0 || pairRank[left] != rank) {
+                continue;
+            }
+
+            int right = next[left];
+            next[left] = next[right];
+            next[right] = -1;
+            if (next[left] < n) {
+                prev[next[left]] = left;
+            }
+            parts--;
+
+            pairRank[left] = next[left] < n ? rankOf(bytes, left, next[next[left]]) : NO_RANK;
+            heap.push(pairRank[left], left);
+            int before = prev[left];
+            if (before >= 0) {
+                pairRank[before] = rankOf(bytes, before, next[left]);
+                heap.push(pairRank[before], before);
+            }
+        }
+        return parts;
+    }
+
+    private int rankOf(byte[] bytes, int start, int end) {
+        Integer rank = ranks.get(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+        return rank == null ? NO_RANK : rank;
+    }
+
+    /**
+     * 把窗口内的字节偏移换算为 char 偏移：floor 取不超过该位置的最后一个完整字符边界，否则取不小于它的第一个字符边界
+     */
+    private static int toCharOffset(String window, int byteOffset, boolean floor) {
+        int bytes = 0;
+        for (int i = 0; i < window.length(); ) {
+            int codePoint = window.codePointAt(i);
+            int length = utf8Length(codePoint);
+            if (bytes + length > byteOffset) {
+                return floor || bytes == byteOffset ? i : i + Character.charCount(codePoint);
+            }
+            bytes += length;
+            i += Character.charCount(codePoint);
+        }
+        return window.length();
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            // 不成对的代理字符编码为 '?'
+            return 1;
+        } else if (codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * 增量计数：已追加文本预切分出的片段中，只有最后一个可能与后续文本合并成更长的片段，
+     * 其余片段的 Token 数直接累计，只保留最后一个片段（超长时只保留未满一个窗口的部分）待下次追加时重新切分
+     */
+    private final class IncrementalCounter implements TokenCounter {
+
+        private final StringBuilder pending = new StringBuilder();
+        private int committed;
+        private int pendingTokens;
+
+        @Override
+        public void append(CharSequence text, int start, int end) {
+            if (start == end) {
+                return;
+            }
+            pending.append(text, start, end);
+
+            int lastStart = 0;
+            Matcher matcher = PRE_TOKENIZE.matcher(pending);
+            while (matcher.find()) {
+                if (matcher.end() == pending.length()) {
+                    lastStart = matcher.start();
+                    break;
+                }
+                committed += countPiece(pending, matcher.start(), matcher.end());
+                lastStart = matcher.end();
+            }
+            // 最后一个片段中已满的窗口不会再变化
+            while (pending.length() - lastStart > MAX_PIECE_CHARS) {
+                int windowEnd = windowEnd(pending, lastStart, pending.length());
+                committed += countWindow(pending, lastStart, windowEnd);
+                lastStart = windowEnd;
+            }
+            pending.delete(0, lastStart);
+            pendingTokens = -1;
+        }
+
+        @Override
+        public int count() {
+            if (pendingTokens < 0) {
+                pendingTokens = countTokens(pending, 0, pending.length());
+            }
+            return committed + pendingTokens;
+        }
+
+        @Override
+        public void reset() {
+            pending.setLength(0);
+            committed = 0;
+            pendingTokens = 0;
+        }
+    }
+
+    /**
+     * 以 long 存放 (rank, 位置) 的小顶堆，rank 在高 32 位，rank 相同时位置小的在前
+     */
+    private static final class PairHeap {
+
+        private long[] items;
+        private int size;
+
+        PairHeap(int capacity) {
+            items = new long[Math.max(capacity, 4)];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int rank, int position) {
+            if (rank == NO_RANK) {
+                return;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            long item = ((long) rank << 32) | position;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (items[parent] <= item) {
+                    break;
+                }
+                items[i] = items[parent];
+                i = parent;
+            }
+            items[i] = item;
+        }
+
+        long pop() {
+            long top = items[0];
+            long last = items[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && items[child + 1] < items[child]) {
+                    child++;
+                }
+                if (last <= items[child]) {
+                    break;
+                }
+                items[i] = items[child];
+                i = child;
+            }
+            if (size > 0) {
+                items[i] = last;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.springleaf.knowseek.tokenizer;
+
+/**
+ * 文本分词器，用于按 Token 数切分文本
+ * 所有下标均为 char 下标，返回的切分位置不会落在代理对中间
+ */
+public interface TextTokenizer {
+
+    /**
+     * [start, end) 的 Token 数
+     */
+    int countTokens(CharSequence text, int start, int end);
+
+    /**
+     * [start, end) 中 Token 数不超过 maxTokens 的最长前缀的结束位置
+     */
+    int prefixEnd(CharSequence text, int start, int end, int maxTokens);
+
+    /**
+     * [start, end) 中 Token 数不超过 maxTokens 的最长后缀的起始位置
+     */
+    int suffixStart(CharSequence text, int start, int end, int maxTokens);
+
+    /**
+     * 新建一个增量计数器，只由一个线程使用
+     */
+    TokenCounter newCounter();
+}
@@ -0,0 +1,14 @@
+package com.springleaf.knowseek.tokenizer;
+
+/**
+ * 增量 Token 计数器：追加文本时只重新分词末尾可能与后续文本合并的部分，
+ * 任意时刻 count() 与对已追加的全部文本调用 TextTokenizer.countTokens 的结果一致
+ */
+public interface TokenCounter {
+
+    void append(CharSequence text, int start, int end);
+
+    int count();
+
+    void reset();
+}
@@ -0,0 +1,28 @@
+package com.springleaf.knowseek.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * float[] 与 Base64 字符串互转，用于在 Redis 中紧凑地存储向量（每维 4 字节，大端序）
+ */
+public final class FloatArrayCodec {
+
+    private FloatArrayCodec() {}
+
+    public static String encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * 4);
+        buffer.asFloatBuffer().put(vector);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    public static float[] decode(String value) {
+        byte[] bytes = Base64.getDecoder().decode(value);
+        if (bytes.length % 4 != 0) {
+            throw new IllegalArgumentException("向量字节长度不是 4 的倍数: " + bytes.length);
+        }
+        float[] vector = new float[bytes.length / 4];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,26 @@
+package com.springleaf.knowseek.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 摘要工具类
+ */
+public final class HashUtil {
+
+    private HashUtil() {}
+
+    /**
+     * 计算字符串（UTF-8）的 SHA-256，返回小写十六进制
+     */
+    public static String sha256Hex(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
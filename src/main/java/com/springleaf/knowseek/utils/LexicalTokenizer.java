@@ -0,0 +1,212 @@
+package com.springleaf.knowseek.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 关键词检索分词工具：PostgreSQL 的 simple 配置不切分中文，因此在应用侧预先分词，
+ * 以空格连接后交给 to_tsvector('simple', ...) 建立倒排索引
+ * 规则：连续的字母数字为一个词（转小写，错误码、型号等按原样保留）；连续汉字切成重叠的二字词，单个汉字保留原字
+ * 入库与查询使用同一规则，保证词项一致；查询侧另外去掉停用词并限制词项数（见 toTsQuery）
+ */
+public final class LexicalTokenizer {
+
+    /**
+     * 查询串最多保留的词项数，限制 GIN 命中范围与 ts_rank 的计算量
+     */
+    public static final int MAX_QUERY_TERMS = 12;
+
+    /**
+     * 查询串最多保留的字母数字词数（以 AND 连接）
+     */
+    public static final int MAX_QUERY_WORDS = 4;
+
+    /**
+     * 查询侧的汉字停用字：疑问词、助词、人称代词等，含这些字的二字词（如"什么""怎么""我们""的话"）几乎每个分片都有
+     */
+    private static final Set<Integer> STOP_CHARS = "的了吗呢吧啊呀嘛么们怎什哪些请我你您"
+            .codePoints().boxed().collect(Collectors.toUnmodifiableSet());
+
+    /**
+     * 查询侧的汉字停用二字词：不含停用字但同样没有区分度的常见问句用语，两个字都不再与相邻字组词
+     */
+    private static final Set<String> STOP_BIGRAMS = Set.of(
+            "如何", "可以", "是否", "能否", "需要", "应该", "多少", "一个", "这个", "那个", "一下", "有没", "没有", "为何");
+
+    /**
+     * 查询侧的英文停用词
+     */
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "is", "are", "was", "were", "be", "to", "of", "in", "on", "at", "for", "and", "or",
+            "with", "what", "how", "why", "which", "who", "when", "where", "do", "does", "can", "i", "we", "you",
+            "it", "this", "that");
+
+    private LexicalTokenizer() {}
+
+    /**
+     * 切分为词项序列（保留重复与顺序，词频参与排序）
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        scan(text, (run, han) -> {
+            if (han) {
+                addHanTerms(run, terms);
+            } else {
+                terms.add(run.toLowerCase());
+            }
+        });
+        return terms;
+    }
+
+    /**
+     * 入库用的分词文本，写入 chunk_terms 列
+     */
+    public static String toIndexText(String text) {
+        return String.join(" ", tokenize(text));
+    }
+
+    /**
+     * 构造 to_tsquery('simple', ...) 的查询串，只保留有区分度的词项，避免问句中的虚词二字词命中大半个知识库：
+     * 字母数字词（错误码、型号等）去掉常见英文虚词后以 AND 连接；汉字二字词去掉含疑问词、助词的组合后以 OR 连接，
+     * 优先取互不重叠的二字词覆盖整句，总数不超过 MAX_QUERY_TERMS；两部分之间为 OR
+     * @return 没有可检索的词项时返回 null
+     */
+    public static String toTsQuery(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        Set<String> hanTerms = new LinkedHashSet<>();
+        Set<String> overlapped = new LinkedHashSet<>();
+        scan(text, (run, han) -> {
+            if (han) {
+                addHanQueryTerms(run, hanTerms, overlapped);
+            } else {
+                String word = run.toLowerCase();
+                if (!STOP_WORDS.contains(word)) {
+                    words.add(word);
+                }
+            }
+        });
+        hanTerms.addAll(overlapped);
+
+        List<String> required = words.stream().limit(MAX_QUERY_WORDS).toList();
+        List<String> optional = hanTerms.stream().limit(MAX_QUERY_TERMS - required.size()).toList();
+        if (required.isEmpty() && optional.isEmpty()) {
+            return null;
+        }
+        // 词项只含字母数字和汉字，加单引号作为字面量即可
+        StringBuilder query = new StringBuilder();
+        if (!required.isEmpty()) {
+            String conjunction = joinQuoted(required, " & ");
+            query.append(required.size() > 1 && !optional.isEmpty() ? "(" + conjunction + ")" : conjunction);
+        }
+        if (!optional.isEmpty()) {
+            if (!query.isEmpty()) {
+                query.append(" | ");
+            }
+            query.append(joinQuoted(optional, " | "));
+        }
+        return query.toString();
+    }
+
+    /**
+     * 逐段扫描：连续汉字为一段，连续字母数字为一段，其余字符作为分隔
+     */
+    private static void scan(String text, RunConsumer consumer) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (isHan(cp)) {
+                int start = i;
+                while (i < length && isHan(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                consumer.accept(text.substring(start, i), true);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < length) {
+                    int c = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isHan(c)) {
+                        break;
+                    }
+                    i += Character.charCount(c);
+                }
+                consumer.accept(text.substring(start, i), false);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+    }
+
+    /**
+     * 查询侧的汉字词项：先去掉停用字与停用二字词，剩余各段切二字词；与上一个选中的二字词不重叠的放入 terms，
+     * 其余放入 overlapped 作为补充
+     */
+    private static void addHanQueryTerms(String run, Set<String> terms, Set<String> overlapped) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            if (!STOP_CHARS.contains(cps[0])) {
+                terms.add(run);
+            }
+            return;
+        }
+        boolean[] stopped = new boolean[cps.length];
+        for (int i = 0; i < cps.length; i++) {
+            if (STOP_CHARS.contains(cps[i])) {
+                stopped[i] = true;
+            } else if (i + 1 < cps.length && STOP_BIGRAMS.contains(new String(cps, i, 2))) {
+                stopped[i] = true;
+                stopped[i + 1] = true;
+            }
+        }
+        int selectedEnd = 0;
+        for (int i = 0; i + 1 < cps.length; i++) {
+            if (stopped[i] || stopped[i + 1]) {
+                continue;
+            }
+            String term = new String(cps, i, 2);
+            if (i >= selectedEnd) {
+                terms.add(term);
+                selectedEnd = i + 2;
+            } else {
+                overlapped.add(term);
+            }
+        }
+    }
+
+    private static String joinQuoted(List<String> terms, String operator) {
+        StringBuilder joined = new StringBuilder();
+        for (String term : terms) {
+            if (!joined.isEmpty()) {
+                joined.append(operator);
+            }
+            joined.append('\'').append(term).append('\'');
+        }
+        return joined.toString();
+    }
+
+    private static void addHanTerms(String run, List<String> terms) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            terms.add(run);
+            return;
+        }
+        for (int i = 0; i + 1 < cps.length; i++) {
+            terms.add(new String(cps, i, 2));
+        }
+    }
+
+    @FunctionalInterface
+    private interface RunConsumer {
+        void accept(String run, boolean han);
+    }
+
+    private static boolean isHan(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+}
@@ -0,0 +1,98 @@
+package com.springleaf.knowseek.utils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PostgreSQL COPY ... FROM STDIN (FORMAT BINARY) 编码工具
+ * 格式说明：文件头(签名 + flags + 扩展区长度) -> 若干元组(字段数 + 每个字段的 长度/字节) -> 文件尾(-1)
+ * 所有整数均为网络字节序（大端），与 DataOutputStream 一致
+ */
+public final class PgBinaryCopyUtil {
+
+    private PgBinaryCopyUtil() {}
+
+    /**
+     * 二进制 COPY 文件签名：PGCOPY\n\377\r\n\0
+     */
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    /**
+     * 写入文件头
+     */
+    public static void writeHeader(DataOutputStream out) throws IOException {
+        out.write(SIGNATURE);
+        out.writeInt(0); // flags，不携带 OID
+        out.writeInt(0); // 头部扩展区长度
+    }
+
+    /**
+     * 写入文件尾
+     */
+    public static void writeTrailer(DataOutputStream out) throws IOException {
+        out.writeShort(-1);
+    }
+
+    /**
+     * 写入一个元组的开始标记
+     * @param fieldCount 该元组的字段数，需与 COPY 语句中的列数一致
+     */
+    public static void writeTupleStart(DataOutputStream out, int fieldCount) throws IOException {
+        out.writeShort(fieldCount);
+    }
+
+    /**
+     * 写入 int8（BIGINT）字段，null 写为 SQL NULL
+     */
+    public static void writeInt8(DataOutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    /**
+     * 写入 int4（INTEGER）字段，null 写为 SQL NULL
+     */
+    public static void writeInt4(DataOutputStream out, Integer value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    /**
+     * 写入 text 字段（UTF-8，要求数据库编码为 UTF8）
+     */
+    public static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 写入 pgvector 的 vector 字段，格式同 vector_send：int16 维度 + int16 保留位 + 维度个 float4
+     * 与文本写入保持一致：NaN/Infinity 写为 0
+     */
+    public static void writeVector(DataOutputStream out, float[] vector) throws IOException {
+        if (vector == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(4 + 4 * vector.length);
+        out.writeShort(vector.length);
+        out.writeShort(0);
+        for (float f : vector) {
+            out.writeFloat(Float.isNaN(f) || Float.isInfinite(f) ? 0.0f : f);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.springleaf.knowseek.utils;
+
+/**
+ * 雪花算法ID生成器：41 位毫秒时间戳 + 10 位节点号 + 12 位序列号
+ * 同一节点生成的ID单调递增，不同节点只要节点号不同就不会冲突
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 起始时间 2024-01-01 00:00:00 UTC
+     */
+    private static final long EPOCH = 1704067200000L;
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long workerId;
+    private long lastTimestamp = -1;
+    private long sequence;
+
+    public SnowflakeIdGenerator(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("节点号必须在 0 ~ " + MAX_WORKER_ID + " 之间");
+        }
+        this.workerId = workerId;
+    }
+
+    public synchronized long nextId() {
+        // 时钟回拨时沿用上次的时间戳，借用序列号保证递增
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // 当前毫秒序列号用尽，借用下一毫秒
+                timestamp = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 任意节点在该时刻（含）之前可能生成的最大ID
+     */
+    public static long maxIdAt(long timestampMillis) {
+        return ((timestampMillis - EPOCH + 1) << (WORKER_BITS + SEQUENCE_BITS)) - 1;
+    }
+}
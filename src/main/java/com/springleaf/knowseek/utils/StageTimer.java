@@ -0,0 +1,57 @@
+package com.springleaf.knowseek.utils;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 分阶段耗时统计，支持多个阶段在不同线程上并发执行
+ * 输出格式：阶段名 耗时ms(@开始偏移ms)，按开始时间排序，便于看出关键路径
+ */
+public class StageTimer {
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 阶段名 -> {开始偏移纳秒, 耗时纳秒}
+     */
+    private final Map<String, long[]> stages = new ConcurrentHashMap<>();
+
+    /**
+     * 执行并记录一个阶段
+     */
+    public <T> T time(String stage, Supplier<T> supplier) {
+        long begin = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            stages.put(stage, new long[]{begin - startNanos, System.nanoTime() - begin});
+        }
+    }
+
+    /**
+     * 记录一个时间点（耗时为 0 的阶段），如首个 Token 到达
+     */
+    public void mark(String stage) {
+        stages.put(stage, new long[]{System.nanoTime() - startNanos, 0});
+    }
+
+    /**
+     * 自创建以来经过的毫秒数
+     */
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        String detail = stages.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue()[0]))
+                .map(entry -> String.format("%s %dms(@%dms)", entry.getKey(),
+                        entry.getValue()[1] / 1_000_000, entry.getValue()[0] / 1_000_000))
+                .collect(Collectors.joining(", "));
+        return detail + "，总计 " + elapsedMillis() + "ms";
+    }
+}
@@ -0,0 +1,38 @@
+package com.springleaf.knowseek.utils;
+
+/**
+ * Token 数估算工具类
+ * 不依赖具体模型的分词表，按经验规则估算：中日韩字符每字约 1 个 Token，其他字符每 4 个约 1 个 Token
+ */
+public final class TokenCountUtil {
+
+    private TokenCountUtil() {}
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                cjk++;
+            } else if (!Character.isWhitespace(codePoint)) {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    public static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                || (codePoint >= 0x3000 && codePoint <= 0x303F)   // CJK 标点
+                || (codePoint >= 0xFF00 && codePoint <= 0xFFEF);  // 全角字符
+    }
+}
@@ -0,0 +1,111 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.cache.ChatSessionCache;
+import com.springleaf.knowseek.constans.ChatRedisKeyConstant;
+import com.springleaf.knowseek.model.entity.Message;
+import com.springleaf.knowseek.model.entity.Session;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 会话缓存测试：最近消息窗口的回填、追加、截断与去重，活跃时间的合并回写与缓存刷新，以及删除后不回填，需要连接真实的 Redis
+ */
+@SpringBootTest
+public class ChatSessionCacheTest {
+
+    // 使用不会与真实数据冲突的会话ID
+    private static final long SESSION_ID = -10002L;
+
+    @Resource
+    private ChatSessionCache chatSessionCache;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${knowseek.chat.history.max-turns:10}")
+    private int historyMaxTurns;
+
+    @AfterEach
+    public void tearDown() {
+        chatSessionCache.evictSession(SESSION_ID);
+        stringRedisTemplate.delete(String.format(ChatRedisKeyConstant.SESSION_DELETED_KEY, SESSION_ID));
+    }
+
+    @Test
+    public void testWindowAppendTrimAndDedupe() {
+        // 窗口未加载时追加不生效，避免缓存残缺的窗口
+        chatSessionCache.appendMessage(message(0));
+        assertThat(chatSessionCache.getRecentMessages(SESSION_ID)).isNull();
+
+        List<Message> loaded = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            loaded.add(message(i));
+        }
+        chatSessionCache.putRecentMessages(SESSION_ID, loaded);
+        // 重复追加已在窗口中的消息，读取时去重
+        chatSessionCache.appendMessage(message(3));
+        for (int i = 4; i <= historyMaxTurns * 2 + 5; i++) {
+            chatSessionCache.appendMessage(message(i));
+        }
+
+        List<Message> window = chatSessionCache.getRecentMessages(SESSION_ID);
+        assertThat(window).isNotNull();
+        assertThat(window.size()).isLessThanOrEqualTo(historyMaxTurns * 2);
+        assertThat(window.get(window.size() - 1).getId()).isEqualTo(historyMaxTurns * 2 + 5L);
+        assertThat(window).extracting(Message::getId).doesNotHaveDuplicates().isSorted();
+    }
+
+    @Test
+    public void testMarkActiveCoalescedAndFlushed() {
+        for (int i = 0; i < 10; i++) {
+            chatSessionCache.markActive(SESSION_ID);
+        }
+        assertThat(stringRedisTemplate.opsForZSet()
+                .score(ChatRedisKeyConstant.SESSION_DIRTY_KEY, String.valueOf(SESSION_ID))).isNotNull();
+
+        chatSessionCache.flushDirtySessions();
+        assertThat(stringRedisTemplate.opsForZSet()
+                .score(ChatRedisKeyConstant.SESSION_DIRTY_KEY, String.valueOf(SESSION_ID))).isNull();
+    }
+
+    @Test
+    public void testFlushRefreshesCachedSessionWithoutResurrectingEvicted() {
+        LocalDateTime createdAt = LocalDateTime.now().minusDays(1).withNano(0);
+        chatSessionCache.putSession(new Session(SESSION_ID, 1L, "会话", createdAt, createdAt, true, null));
+        chatSessionCache.markActive(SESSION_ID);
+        chatSessionCache.flushDirtySessions();
+        assertThat(chatSessionCache.getSession(SESSION_ID).getUpdatedAt()).isAfter(createdAt);
+
+        // 会话已删除（缓存已清除）后回写活跃时间，不应把会话写回缓存
+        chatSessionCache.markActive(SESSION_ID);
+        stringRedisTemplate.delete(String.format(ChatRedisKeyConstant.SESSION_KEY, SESSION_ID));
+        chatSessionCache.flushDirtySessions();
+        assertThat(stringRedisTemplate.hasKey(String.format(ChatRedisKeyConstant.SESSION_KEY, SESSION_ID))).isFalse();
+    }
+
+    @Test
+    public void testDeletedSessionNotRepopulated() {
+        LocalDateTime createdAt = LocalDateTime.now().withNano(0);
+        Session session = new Session(SESSION_ID, 1L, "会话", createdAt, createdAt, true, null);
+        chatSessionCache.putSession(session);
+
+        // 删除事务提交前，并发读库得到的旧会话回填缓存应被删除标记拦下
+        chatSessionCache.evictDeletedSession(SESSION_ID);
+        chatSessionCache.putSession(session);
+        assertThat(stringRedisTemplate.hasKey(String.format(ChatRedisKeyConstant.SESSION_KEY, SESSION_ID))).isFalse();
+    }
+
+    private Message message(long id) {
+        return new Message(id, SESSION_ID, id % 2 == 0 ? "assistant" : "user", "message " + id,
+                LocalDateTime.now(), null);
+    }
+}
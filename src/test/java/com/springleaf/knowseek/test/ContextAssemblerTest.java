@@ -0,0 +1,147 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.exception.BusinessException;
+import com.springleaf.knowseek.model.bo.ChunkRangeBO;
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+import com.springleaf.knowseek.rag.AssembledContext;
+import com.springleaf.knowseek.rag.ContextAssembler;
+import com.springleaf.knowseek.rag.ContextPassage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 上下文组装测试：Token 预算（含超出上限的拒绝）、相邻分片合并（含长重叠）、近似重复去重、邻近分片扩展
+ */
+public class ContextAssemblerTest {
+
+    private ContextAssembler assembler;
+
+    @BeforeEach
+    public void setUp() {
+        assembler = new ContextAssembler();
+        ReflectionTestUtils.setField(assembler, "defaultTokenBudget", 3000);
+        ReflectionTestUtils.setField(assembler, "maxTokenBudget", 8000);
+        ReflectionTestUtils.setField(assembler, "defaultMaxChunks", 8);
+        ReflectionTestUtils.setField(assembler, "dedupSimilarity", 0.9);
+        ReflectionTestUtils.setField(assembler, "neighborWindow", 1);
+    }
+
+    @Test
+    public void testAdjacentChunksMergedWithoutOverlap() {
+        String overlap = "审批通过后五个工作日内打款。";
+        VectorRecordHitBO first = hit(1L, 10L, 3, "差旅报销需要提交发票原件，" + overlap);
+        VectorRecordHitBO second = hit(2L, 10L, 4, overlap + "超过一万元需要财务总监复核。");
+
+        AssembledContext context = assembler.assemble(List.of(second, first), null, null);
+
+        assertThat(context.passages()).hasSize(1);
+        ContextPassage passage = context.passages().get(0);
+        assertThat(passage.chunkIndexes()).containsExactly(3, 4);
+        assertThat(passage.text()).isEqualTo("差旅报销需要提交发票原件，" + overlap + "超过一万元需要财务总监复核。");
+        assertThat(assembler.render(context, Map.of(10L, "报销制度.pdf")))
+                .startsWith("【来源文件: 报销制度.pdf (chunks: 3,4)】");
+    }
+
+    @Test
+    public void testLongTokenOverlapMergedOnce() {
+        // 按 Token 切分时 200 Token 的英文重叠约 700 字符
+        String overlap = "Refunds are issued to the original payment method within ten business days. ".repeat(9);
+        VectorRecordHitBO first = hit(1L, 10L, 3, "Customers may return items within thirty days. " + overlap);
+        VectorRecordHitBO second = hit(2L, 10L, 4, overlap + "Gift cards cannot be refunded.");
+
+        AssembledContext context = assembler.assemble(List.of(first, second), null, null);
+
+        assertThat(overlap.length()).isGreaterThan(600);
+        assertThat(context.passages()).hasSize(1);
+        assertThat(context.passages().get(0).text())
+                .isEqualTo("Customers may return items within thirty days. " + overlap + "Gift cards cannot be refunded.");
+    }
+
+    @Test
+    public void testTokenBudgetOverCapRejected() {
+        VectorRecordHitBO chunk = hit(1L, 10L, 1, "年假天数按工龄计算");
+        ReflectionTestUtils.setField(assembler, "maxTokenBudget", 4000);
+
+        assertThat(assembler.assemble(List.of(chunk), 4000, null).chunkIds()).containsExactly(1L);
+        assertThatThrownBy(() -> assembler.checkTokenBudget(4001))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("4000");
+        assertThatThrownBy(() -> assembler.assemble(List.of(chunk), 4001, null))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    @Test
+    public void testNearDuplicateChunksSkipped() {
+        VectorRecordHitBO original = hit(1L, 10L, 1, "年假天数按工龄计算，满一年五天，满十年十天");
+        VectorRecordHitBO copy = hit(2L, 20L, 7, "年假天数按工龄计算，满一年五天，满十年十天。");
+        VectorRecordHitBO other = hit(3L, 20L, 9, "病假需要提供医院证明");
+
+        AssembledContext context = assembler.assemble(List.of(original, copy, other), null, null);
+
+        assertThat(context.chunkIds()).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void testChunksPackedIntoTokenBudgetByScore() {
+        String longText = "长".repeat(300);
+        VectorRecordHitBO best = hit(1L, 10L, 1, "最相关的内容" + "甲".repeat(150));
+        VectorRecordHitBO tooLong = hit(2L, 20L, 1, longText);
+        VectorRecordHitBO shortOne = hit(3L, 30L, 1, "较短的补充内容");
+
+        AssembledContext context = assembler.assemble(List.of(best, tooLong, shortOne), 300, null);
+
+        // 第二个分片装不下被跳过，更短的低分分片仍可装入
+        assertThat(context.chunkIds()).containsExactly(1L, 3L);
+        assertThat(context.tokenCount()).isLessThanOrEqualTo(300);
+        assertThat(context.fileIds()).containsExactly(10L, 30L);
+    }
+
+    @Test
+    public void testNeighborRangesMergedPerFile() {
+        AssembledContext context = assembler.assemble(List.of(
+                hit(1L, 10L, 0, "第一章 总则"), hit(2L, 10L, 2, "第三条 适用范围"),
+                hit(3L, 10L, 8, "第九条 附则"), hit(4L, 20L, 5, "补充说明")), null, null);
+
+        List<ChunkRangeBO> ranges = assembler.neighborRanges(context);
+
+        // 文件 10 的 [0,1] 与 [1,3] 相接合并，[7,9] 单独一段；文件 20 为 [4,6]
+        assertThat(ranges).containsExactly(
+                new ChunkRangeBO(10L, 0, 3), new ChunkRangeBO(10L, 7, 9), new ChunkRangeBO(20L, 4, 6));
+    }
+
+    @Test
+    public void testNeighborsStitchedIntoPassageWithinBudget() {
+        String overlap = "以上费用均需附发票。";
+        VectorRecordHitBO selected = hit(2L, 10L, 5, "住宿标准为每晚五百元，" + overlap);
+        AssembledContext context = assembler.assemble(List.of(selected), null, null);
+
+        VectorRecordHitBO previous = hit(1L, 10L, 4, "交通费按实际发生报销。");
+        VectorRecordHitBO next = hit(3L, 10L, 6, overlap + "餐补每天一百元。");
+        AssembledContext expanded = assembler.expandNeighbors(context, List.of(previous, selected, next), null);
+
+        assertThat(expanded.passages()).hasSize(1);
+        assertThat(expanded.passages().get(0).chunkIndexes()).containsExactly(4, 5, 6);
+        assertThat(expanded.passages().get(0).text())
+                .isEqualTo("交通费按实际发生报销。住宿标准为每晚五百元，" + overlap + "餐补每天一百元。");
+
+        // 预算不足时不扩展
+        AssembledContext unchanged = assembler.expandNeighbors(context, List.of(previous, next), context.tokenCount());
+        assertThat(unchanged.chunkIds()).containsExactly(2L);
+    }
+
+    private VectorRecordHitBO hit(Long id, Long fileId, int chunkIndex, String text) {
+        VectorRecordHitBO hit = new VectorRecordHitBO();
+        hit.setId(id);
+        hit.setFileId(fileId);
+        hit.setChunkIndex(chunkIndex);
+        hit.setChunkText(text);
+        return hit;
+    }
+}
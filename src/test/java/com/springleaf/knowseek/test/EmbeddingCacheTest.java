@@ -0,0 +1,72 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.cache.EmbeddingCache;
+import com.springleaf.knowseek.cache.EmbeddingCacheStats;
+import com.springleaf.knowseek.config.EmbeddingConfig;
+import com.springleaf.knowseek.limiter.EmbeddingRateLimiter;
+import com.springleaf.knowseek.limiter.LocalTokenBucket;
+import com.springleaf.knowseek.service.impl.EmbeddingServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分片向量缓存测试：同一内容的分片再次向量化时直接命中缓存，不再调用 EmbeddingModel
+ */
+public class EmbeddingCacheTest {
+
+    private static final int BATCH_SIZE = 25;
+
+    private RateLimitedEmbeddingModel embeddingModel;
+    private EmbeddingServiceImpl embeddingService;
+
+    @BeforeEach
+    public void setUp() {
+        EmbeddingConfig config = new EmbeddingConfig();
+        config.setBatchSize(BATCH_SIZE);
+        config.setRequestsPerMinute(600);
+        config.setTokensPerMinute(0);
+        config.setMaxConcurrency(8);
+
+        EmbeddingRateLimiter rateLimiter = new EmbeddingRateLimiter(new LocalTokenBucket(600, 10), null);
+        embeddingModel = new RateLimitedEmbeddingModel(Integer.MAX_VALUE, 0);
+        embeddingService = new EmbeddingServiceImpl(embeddingModel, rateLimiter,
+                new EmbeddingCache("stub-model:1", "test:%s", 1000, Duration.ZERO, null, Duration.ofHours(1)),
+                EmbeddingCache.disabled(), config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        embeddingService.shutdown();
+    }
+
+    @Test
+    public void testRepeatedChunksServedFromCache() {
+        List<String> texts = new ArrayList<>(2 * BATCH_SIZE);
+        for (int i = 0; i < 2 * BATCH_SIZE; i++) {
+            texts.add(String.valueOf(i));
+        }
+        EmbeddingCacheStats firstUpload = new EmbeddingCacheStats();
+        embeddingService.embedTexts(texts, firstUpload);
+        int callsAfterFirstUpload = embeddingModel.getCalls();
+
+        // 同一文件再次上传：全部命中缓存，不再调用接口；首尾空白不同的文本视为同一分片
+        List<String> reupload = new ArrayList<>(texts);
+        reupload.set(0, "  " + texts.get(0) + "\n");
+        EmbeddingCacheStats secondUpload = new EmbeddingCacheStats();
+        List<float[]> vectors = embeddingService.embedTexts(reupload, secondUpload);
+
+        assertThat(firstUpload.getMisses()).isEqualTo(texts.size());
+        assertThat(embeddingModel.getCalls()).isEqualTo(callsAfterFirstUpload);
+        assertThat(secondUpload.getHits()).isEqualTo(texts.size());
+        assertThat(secondUpload.getSavedApiCalls()).isEqualTo(2);
+        assertThat(vectors.get(0)[0]).isEqualTo(0f);
+        assertThat(vectors.get(texts.size() - 1)[0]).isEqualTo((float) (texts.size() - 1));
+    }
+}
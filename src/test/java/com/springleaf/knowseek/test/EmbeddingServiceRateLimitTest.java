@@ -0,0 +1,123 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.cache.EmbeddingCache;
+import com.springleaf.knowseek.config.EmbeddingConfig;
+import com.springleaf.knowseek.limiter.EmbeddingRateLimiter;
+import com.springleaf.knowseek.limiter.LocalTokenBucket;
+import com.springleaf.knowseek.service.impl.EmbeddingServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 向量化服务限流测试：共享配额、批次顺序、问题向量化的预留配额，使用自带限流校验的 EmbeddingModel 桩，不依赖 DashScope
+ */
+public class EmbeddingServiceRateLimitTest {
+
+    private static final int REQUESTS_PER_MINUTE = 600;
+    private static final int REQUESTS_PER_SECOND = REQUESTS_PER_MINUTE / 60;
+    private static final int BATCH_SIZE = 25;
+
+    private RateLimitedEmbeddingModel embeddingModel;
+    private EmbeddingServiceImpl embeddingService;
+    private EmbeddingConfig config;
+    private EmbeddingRateLimiter rateLimiter;
+
+    @BeforeEach
+    public void setUp() {
+        config = new EmbeddingConfig();
+        config.setBatchSize(BATCH_SIZE);
+        config.setRequestsPerMinute(REQUESTS_PER_MINUTE);
+        config.setTokensPerMinute(0);
+        config.setMaxConcurrency(8);
+
+        // 桶容量 1 秒配额：任意 1 秒窗口内最多 容量 + 1 秒生成量 个请求
+        rateLimiter = new EmbeddingRateLimiter(
+                new LocalTokenBucket(REQUESTS_PER_MINUTE, REQUESTS_PER_SECOND), null);
+        // 额外放宽 2 个请求，容忍线程调度带来的毫秒级抖动
+        embeddingModel = new RateLimitedEmbeddingModel(REQUESTS_PER_SECOND * 2 + 2, 50);
+        embeddingService = new EmbeddingServiceImpl(embeddingModel, rateLimiter,
+                EmbeddingCache.disabled(), EmbeddingCache.disabled(), config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        embeddingService.shutdown();
+    }
+
+    @Test
+    public void testBatchesRespectRateLimitAndKeepOrder() {
+        List<String> texts = buildTexts(0, 40 * BATCH_SIZE);
+
+        long start = System.nanoTime();
+        List<float[]> vectors = embeddingService.embedTexts(texts);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(embeddingModel.getRejected()).isZero();
+        assertThat(vectors).hasSize(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertThat(vectors.get(i)[0]).isEqualTo((float) i);
+        }
+        // 首批 10 个请求立即发出，剩余 30 个按每秒 10 个发放，约 3 秒
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(2500);
+        // 并发发送：远快于原先每批固定等待 3.5 秒的串行方式
+        assertThat(elapsedMillis).isLessThan(10_000);
+        assertThat(embeddingModel.getMaxInFlight()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneBudget() {
+        CompletableFuture<List<float[]>> first = CompletableFuture.supplyAsync(
+                () -> embeddingService.embedTexts(buildTexts(0, 15 * BATCH_SIZE)));
+        CompletableFuture<List<float[]>> second = CompletableFuture.supplyAsync(
+                () -> embeddingService.embedTexts(buildTexts(100_000, 15 * BATCH_SIZE)));
+
+        assertThat(first.join()).hasSize(15 * BATCH_SIZE);
+        assertThat(second.join()).hasSize(15 * BATCH_SIZE);
+        assertThat(second.join().get(0)[0]).isEqualTo(100_000f);
+        assertThat(embeddingModel.getRejected()).isZero();
+    }
+
+    @Test
+    public void testQueryEmbeddingNotQueuedBehindIngest() throws InterruptedException {
+        // 每秒 9 个请求给分片向量化，1 个预留给问题向量化
+        EmbeddingRateLimiter lanedLimiter = new EmbeddingRateLimiter(new LocalTokenBucket(540, 9), null,
+                new LocalTokenBucket(60, 1), null);
+        EmbeddingServiceImpl service = new EmbeddingServiceImpl(embeddingModel, lanedLimiter,
+                EmbeddingCache.disabled(), EmbeddingCache.disabled(), config);
+        try {
+            CompletableFuture<List<float[]>> ingest = CompletableFuture.supplyAsync(
+                    () -> service.embedTexts(buildTexts(0, 40 * BATCH_SIZE)));
+            // 等分片批次预约完配额、进入限流等待
+            Thread.sleep(200);
+
+            long start = System.nanoTime();
+            float[] vector = service.embedQuery("-1");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // 分片向量化还需数秒才能发完，问题向量化使用预留配额和单独的许可，不排在其后
+            assertThat(ingest).isNotDone();
+            assertThat(vector[0]).isEqualTo(-1f);
+            assertThat(elapsedMillis).isLessThan(1000);
+            assertThat(ingest.join()).hasSize(40 * BATCH_SIZE);
+            assertThat(embeddingModel.getRejected()).isZero();
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private List<String> buildTexts(int offset, int count) {
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            texts.add(String.valueOf(offset + i));
+        }
+        return texts;
+    }
+}
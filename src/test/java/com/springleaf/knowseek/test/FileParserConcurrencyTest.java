@@ -0,0 +1,171 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.mq.parser.impl.PdfFileParser;
+import com.springleaf.knowseek.mq.parser.impl.TxtFileParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 文件解析器并发安全：同一个解析器实例被多个线程同时用于解析不同文件，
+ * 每个文件的分块结果必须与单独解析时完全一致（不能混入其他文件的跨页重叠文本）
+ */
+public class FileParserConcurrencyTest {
+
+    private static final int FILES = 12;
+    private static final int ROUNDS = 3;
+    private static final int THREADS = 8;
+
+    private PdfFileParser pdfFileParser;
+    private TxtFileParser txtFileParser;
+    private final List<byte[]> pdfFiles = new ArrayList<>();
+    private final List<byte[]> txtFiles = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        pdfFileParser = newPdfParser();
+        txtFileParser = new TxtFileParser();
+        for (int file = 0; file < FILES; file++) {
+            // 每 4 个文件中有一个超过并行提取的页数阈值，同时覆盖顺序提取与并行提取
+            pdfFiles.add(generatePdf(file, file % 4 == 0 ? 80 : 6));
+            txtFiles.add(generateText(file).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pdfFileParser.shutdown();
+    }
+
+    @Test
+    public void testConcurrentParsingMatchesIsolatedRuns() throws Exception {
+        // 基准：每个文件使用全新的解析器实例单独解析
+        List<List<String>> expectedPdf = new ArrayList<>();
+        List<List<String>> expectedTxt = new ArrayList<>();
+        for (int file = 0; file < FILES; file++) {
+            PdfFileParser isolated = newPdfParser();
+            try {
+                expectedPdf.add(parsePdf(isolated, file));
+            } finally {
+                isolated.shutdown();
+            }
+            expectedTxt.add(parseTxt(new TxtFileParser(), file));
+        }
+
+        // 同一实例顺序解析多个文件：上一个文件的状态不能带入下一个文件
+        for (int file = 0; file < FILES; file++) {
+            assertThat(parsePdf(pdfFileParser, file)).containsExactlyElementsOf(expectedPdf.get(file));
+            assertThat(parseTxt(txtFileParser, file)).containsExactlyElementsOf(expectedTxt.get(file));
+        }
+
+        // 同一实例并发解析：所有任务同时开始，每个文件解析多轮
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch startSignal = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int file = 0; file < FILES; file++) {
+                    int index = file;
+                    futures.add(executor.submit(() -> {
+                        startSignal.await();
+                        assertThat(parsePdf(pdfFileParser, index)).containsExactlyElementsOf(expectedPdf.get(index));
+                        assertThat(parseTxt(txtFileParser, index)).containsExactlyElementsOf(expectedTxt.get(index));
+                        return null;
+                    }));
+                }
+            }
+            startSignal.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PdfFileParser newPdfParser() {
+        PdfFileParser parser = new PdfFileParser();
+        ReflectionTestUtils.setField(parser, "source", "buffered-file");
+        ReflectionTestUtils.setField(parser, "maxMainMemoryMb", 16L);
+        ReflectionTestUtils.setField(parser, "parallelEnabled", true);
+        ReflectionTestUtils.setField(parser, "parallelism", 4);
+        ReflectionTestUtils.setField(parser, "parallelMinPages", 64);
+        ReflectionTestUtils.setField(parser, "pagesPerRange", 16);
+        parser.start();
+        return parser;
+    }
+
+    private List<String> parsePdf(PdfFileParser parser, int file) {
+        BlockingQueue<String> chunkQueue = new LinkedBlockingQueue<>();
+        parser.parse(new ByteArrayInputStream(pdfFiles.get(file)), chunkQueue);
+        return drain(chunkQueue);
+    }
+
+    private List<String> parseTxt(TxtFileParser parser, int file) {
+        BlockingQueue<String> chunkQueue = new LinkedBlockingQueue<>();
+        parser.parse(new ByteArrayInputStream(txtFiles.get(file)), chunkQueue);
+        return drain(chunkQueue);
+    }
+
+    private List<String> drain(BlockingQueue<String> chunkQueue) {
+        List<String> chunks = new ArrayList<>(chunkQueue.size());
+        chunkQueue.drainTo(chunks);
+        return chunks;
+    }
+
+    private byte[] generatePdf(int file, int pages) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 750);
+                    for (int line = 1; line <= 40; line++) {
+                        content.showText("File " + file + " page " + page + " line " + line
+                                + ". Each file carries its own words so mixed output is easy to spot.");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private String generateText(int file) {
+        StringBuilder text = new StringBuilder();
+        for (int line = 1; line <= 400; line++) {
+            text.append("文件 ").append(file).append(" 第 ").append(line).append(" 行。用于校验并发解析时分块互不干扰。\n");
+            if (line % 15 == 0) {
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.model.bo.VectorRecordHitBO;
+import com.springleaf.knowseek.rag.Bm25Reranker;
+import com.springleaf.knowseek.rag.RankFusion;
+import com.springleaf.knowseek.utils.LexicalTokenizer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 混合检索测试：关键词切分与查询串收窄、RRF 融合与重排，不依赖数据库
+ */
+public class HybridRetrievalTest {
+
+    @Test
+    public void testTokenizeMixedText() {
+        assertThat(LexicalTokenizer.tokenize("报销流程 OA-2024"))
+                .containsExactly("报销", "销流", "流程", "oa", "2024");
+        assertThat(LexicalTokenizer.tokenize("「税」")).containsExactly("税");
+        assertThat(LexicalTokenizer.toTsQuery("流程，流程？")).isEqualTo("'流程'");
+        assertThat(LexicalTokenizer.toTsQuery("？！")).isNull();
+    }
+
+    @Test
+    public void testLongQuestionQueryNarrowed() {
+        String question = "请问我们公司的差旅报销流程是怎么样的，出差超过五天的住宿费用需要哪些审批，是否可以先垫付再报销？";
+
+        // 疑问词、助词组成的二字词被去掉，优先取不重叠的二字词，总数受上限约束
+        assertThat(LexicalTokenizer.toTsQuery(question)).isEqualTo(
+                "'公司' | '差旅' | '报销' | '流程' | '出差' | '超过' | '五天' | '住宿' | '费用' | '审批' | '先垫' | '付再'");
+        assertThat(LexicalTokenizer.toTsQuery(question).split(" \\| ")).hasSize(LexicalTokenizer.MAX_QUERY_TERMS);
+        assertThat(LexicalTokenizer.toTsQuery("你好吗？")).isNull();
+
+        // 字母数字词以 AND 连接，与汉字词项之间为 OR
+        assertThat(LexicalTokenizer.toTsQuery("How do I fix error E1024")).isEqualTo("'fix' & 'error' & 'e1024'");
+        assertThat(LexicalTokenizer.toTsQuery("OA-2024 报销流程")).isEqualTo("('oa' & '2024') | '报销' | '流程' | '销流'");
+    }
+
+    @Test
+    public void testFusionRewardsHitsFoundByBothLegs() {
+        VectorRecordHitBO a = hit(1L, 0.10);
+        VectorRecordHitBO b = hit(2L, 0.20);
+        VectorRecordHitBO c = hit(3L, 0.30);
+        VectorRecordHitBO lexicalC = hit(3L, 0.30);
+        lexicalC.setLexicalRank(0.8);
+
+        List<VectorRecordHitBO> fused = RankFusion.reciprocalRankFusion(
+                List.of(List.of(a, b, c), List.of(lexicalC)), 60);
+
+        // c 在两路中都出现，得分 1/63 + 1/61 高于只在向量路排第一的 a（1/61）
+        assertThat(fused).extracting(VectorRecordHitBO::getId).containsExactly(3L, 1L, 2L);
+        assertThat(fused.get(0).getFusedScore()).isEqualTo(1.0 / 63 + 1.0 / 61);
+        assertThat(fused.get(0).getLexicalRank()).isEqualTo(0.8);
+    }
+
+    @Test
+    public void testRerankPromotesChunksContainingQuestionTerms() {
+        Bm25Reranker reranker = newReranker(50);
+        VectorRecordHitBO generic = hit(1L, 0.20, "公司介绍与组织架构概览");
+        VectorRecordHitBO exact = hit(2L, 0.25, "差旅报销流程：提交申请后由部门负责人审批");
+        VectorRecordHitBO unrelated = hit(3L, 0.30, "年度团建活动安排");
+
+        List<VectorRecordHitBO> reranked = reranker.rerank("报销流程是什么", List.of(generic, exact, unrelated));
+
+        // 向量距离略大但包含问题关键词的分片排到最前
+        assertThat(reranked).extracting(VectorRecordHitBO::getId).containsExactly(2L, 1L, 3L);
+        assertThat(reranked.get(0).getRerankScore()).isGreaterThan(reranked.get(1).getRerankScore());
+    }
+
+    @Test
+    public void testRerankKeepsOrderWhenOverBudget() {
+        Bm25Reranker reranker = newReranker(-1);
+        List<VectorRecordHitBO> candidates = List.of(hit(1L, 0.20, "公司介绍"), hit(2L, 0.25, "报销流程"));
+
+        assertThat(reranker.rerank("报销流程", candidates)).isSameAs(candidates);
+    }
+
+    private Bm25Reranker newReranker(long timeBudgetMillis) {
+        Bm25Reranker reranker = new Bm25Reranker();
+        ReflectionTestUtils.setField(reranker, "enabled", true);
+        ReflectionTestUtils.setField(reranker, "timeBudgetMillis", timeBudgetMillis);
+        ReflectionTestUtils.setField(reranker, "lexicalWeight", 0.4);
+        return reranker;
+    }
+
+    private VectorRecordHitBO hit(Long id, double distance, String chunkText) {
+        VectorRecordHitBO hit = hit(id, distance);
+        hit.setSimilarity(1 - distance);
+        hit.setChunkText(chunkText);
+        return hit;
+    }
+
+    private VectorRecordHitBO hit(Long id, double distance) {
+        VectorRecordHitBO hit = new VectorRecordHitBO();
+        hit.setId(id);
+        hit.setDistance(distance);
+        return hit;
+    }
+}
@@ -0,0 +1,94 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.mapper.mysql.MessageMapper;
+import com.springleaf.knowseek.model.entity.Message;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 长会话历史加载对比：全量查询 vs 键集分页查询最近消息，需要连接真实的 MySQL 数据库
+ */
+@SpringBootTest
+public class MessageHistoryBenchmarkTest {
+
+    // 使用不会与真实数据冲突的会话ID，测试结束后按会话ID清理
+    private static final long SESSION_ID = -10001L;
+    private static final int MESSAGES = 2000;
+    private static final int WINDOW = 20;
+    private static final int ROUNDS = 50;
+
+    @Resource
+    private MessageMapper messageMapper;
+
+    @Test
+    public void testRecentWindowOnLongSession() {
+        messageMapper.deleteBySessionId(SESSION_ID);
+        try {
+            for (int i = 0; i < MESSAGES; i++) {
+                Message message = new Message();
+                message.setSessionId(SESSION_ID);
+                message.setRole(i % 2 == 0 ? "user" : "assistant");
+                message.setContent("第 " + i + " 条消息，用于模拟长会话的历史记录。".repeat(5));
+                messageMapper.insert(message);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                assertThat(messageMapper.selectBySessionId(SESSION_ID)).hasSize(MESSAGES);
+            }
+            double fullMillis = (System.nanoTime() - start) / 1_000_000.0 / ROUNDS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                assertThat(messageMapper.selectRecentBySessionId(SESSION_ID, null, null, WINDOW)).hasSize(WINDOW);
+            }
+            double windowMillis = (System.nanoTime() - start) / 1_000_000.0 / ROUNDS;
+
+            System.out.printf("%d 条消息的会话：全量加载平均 %.2f ms，最近 %d 条平均 %.2f ms%n",
+                    MESSAGES, fullMillis, WINDOW, windowMillis);
+        } finally {
+            messageMapper.deleteBySessionId(SESSION_ID);
+        }
+    }
+
+    @Test
+    public void testKeysetPagingVisitsEveryMessageOnce() {
+        messageMapper.deleteBySessionId(SESSION_ID);
+        try {
+            // 批量写入时大量消息的 created_at 相同，依赖 id 作为第二排序键保证翻页不重不漏
+            for (int i = 0; i < 200; i++) {
+                Message message = new Message();
+                message.setSessionId(SESSION_ID);
+                message.setRole("user");
+                message.setContent("message " + i);
+                messageMapper.insert(message);
+            }
+
+            Set<Long> seen = new HashSet<>();
+            LocalDateTime beforeCreatedAt = null;
+            Long beforeId = null;
+            while (true) {
+                List<Message> page = messageMapper.selectRecentBySessionId(SESSION_ID, beforeCreatedAt, beforeId, 30);
+                for (Message message : page) {
+                    assertThat(seen.add(message.getId())).isTrue();
+                }
+                if (page.size() < 30) {
+                    break;
+                }
+                beforeCreatedAt = page.get(page.size() - 1).getCreatedAt();
+                beforeId = page.get(page.size() - 1).getId();
+            }
+            assertThat(seen).hasSize(200);
+        } finally {
+            messageMapper.deleteBySessionId(SESSION_ID);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.constans.ChatRedisKeyConstant;
+import com.springleaf.knowseek.mapper.mysql.MessageMapper;
+import com.springleaf.knowseek.model.entity.Message;
+import com.springleaf.knowseek.persist.MessageWriteBehindQueue;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 对话消息异步落库测试：提交不阻塞、批量写入顺序正确、重放幂等、清空后不被写回，需要连接真实的 MySQL 和 Redis
+ */
+@SpringBootTest
+public class MessageWriteBehindQueueTest {
+
+    // 使用不会与真实数据冲突的会话ID，测试结束后按会话ID清理
+    private static final long SESSION_ID = -10003L;
+    // 清空标记会在 Redis 中保留一段时间，单独使用一个会话ID，避免影响其他用例
+    private static final long DISCARD_SESSION_ID = -10004L;
+    private static final int MESSAGES = 500;
+
+    @Resource
+    private MessageWriteBehindQueue messageWriteBehindQueue;
+    @Resource
+    private MessageMapper messageMapper;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    public void testSubmittedMessagesPersistedInOrder() throws InterruptedException {
+        messageMapper.deleteBySessionId(SESSION_ID);
+        try {
+            List<Message> submitted = new ArrayList<>(MESSAGES);
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                submitted.add(messageWriteBehindQueue.submit(SESSION_ID, i % 2 == 0 ? "user" : "assistant",
+                        "message " + i, null));
+            }
+            double submitMillis = (System.nanoTime() - start) / 1_000_000.0 / MESSAGES;
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!messageWriteBehindQueue.pendingMessages(SESSION_ID).isEmpty()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            System.out.printf("提交 %d 条消息，平均每条 %.3f ms%n", MESSAGES, submitMillis);
+
+            List<Message> persisted = messageMapper.selectRecentBySessionId(SESSION_ID, null, null, MESSAGES + 1);
+            assertThat(persisted).hasSize(MESSAGES);
+            // 新 -> 旧
+            assertThat(persisted.get(0).getId()).isEqualTo(submitted.get(MESSAGES - 1).getId());
+            assertThat(persisted.get(MESSAGES - 1).getContent()).isEqualTo("message 0");
+
+            // 重放同一批消息不会产生重复记录
+            messageMapper.insertBatch(submitted.subList(0, 10));
+            assertThat(messageMapper.selectBySessionId(SESSION_ID)).hasSize(MESSAGES);
+        } finally {
+            messageMapper.deleteBySessionId(SESSION_ID);
+        }
+    }
+
+    @Test
+    public void testDiscardedMessagesNotWrittenBack() throws InterruptedException {
+        messageMapper.deleteBySessionId(DISCARD_SESSION_ID);
+        try {
+            List<Message> submitted = new ArrayList<>(MESSAGES);
+            for (int i = 0; i < MESSAGES; i++) {
+                submitted.add(messageWriteBehindQueue.submit(DISCARD_SESSION_ID, "user", "message " + i, null));
+            }
+            // 提交后尚未落库也能按ID读到
+            Message last = submitted.get(MESSAGES - 1);
+            assertThat(messageWriteBehindQueue.pendingMessage(last.getId()) != null
+                    || messageMapper.selectById(last.getId()) != null).isTrue();
+
+            // 与清空消息接口相同的顺序：先丢弃待落库消息，再删库
+            messageWriteBehindQueue.discard(DISCARD_SESSION_ID);
+            messageMapper.deleteBySessionId(DISCARD_SESSION_ID);
+            Thread.sleep(2_000);
+            assertThat(messageMapper.selectBySessionId(DISCARD_SESSION_ID)).isEmpty();
+
+            // 清空之后提交的消息正常落库
+            Message afterDiscard = messageWriteBehindQueue.submit(DISCARD_SESSION_ID, "user", "after discard", null);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (messageWriteBehindQueue.pendingMessage(afterDiscard.getId()) != null
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(messageMapper.selectBySessionId(DISCARD_SESSION_ID)).extracting(Message::getId)
+                    .containsExactly(afterDiscard.getId());
+        } finally {
+            messageMapper.deleteBySessionId(DISCARD_SESSION_ID);
+            stringRedisTemplate.delete(String.format(ChatRedisKeyConstant.MESSAGE_DISCARDED_KEY, DISCARD_SESSION_ID));
+        }
+    }
+}
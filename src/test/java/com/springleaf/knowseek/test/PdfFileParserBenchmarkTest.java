@@ -0,0 +1,147 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.mq.parser.ParseSession;
+import com.springleaf.knowseek.mq.parser.impl.PdfFileParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PDF 顺序提取与按页区间并行提取的耗时对比、两种文档读取方式的堆内存对比，并校验分块结果完全一致
+ * 默认生成 600 页的 PDF，可通过 -Dbench.pdf.pages=2000 调整
+ */
+public class PdfFileParserBenchmarkTest {
+
+    private static final int PAGES = Integer.getInteger("bench.pdf.pages", 600);
+    private static final int LINES_PER_PAGE = 45;
+
+    private static Path pdfFile;
+
+    @BeforeAll
+    public static void generatePdf() throws IOException {
+        pdfFile = Files.createTempFile("pdf_benchmark_", ".pdf");
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 1; page <= PAGES; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 750);
+                    for (int line = 1; line <= LINES_PER_PAGE; line++) {
+                        content.showText("Page " + page + " line " + line
+                                + ". The maintenance manual describes step " + (page * LINES_PER_PAGE + line)
+                                + " of the procedure in detail.");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdfFile.toFile());
+        }
+    }
+
+    @AfterAll
+    public static void deletePdf() throws IOException {
+        Files.deleteIfExists(pdfFile);
+    }
+
+    @Test
+    public void testParallelExtractionMatchesSequential() throws IOException {
+        PdfFileParser sequentialParser = newParser(false);
+        PdfFileParser parallelParser = newParser(true);
+        try {
+            // 预热，排除类加载与字体初始化的干扰
+            PdfFileParser warmUpParser = newParser(false);
+            parse(warmUpParser);
+            warmUpParser.shutdown();
+
+            long start = System.nanoTime();
+            List<String> sequential = parse(sequentialParser);
+            long sequentialMillis = (System.nanoTime() - start) / 1_000_000;
+
+            start = System.nanoTime();
+            List<String> parallel = parse(parallelParser);
+            long parallelMillis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("%d 页 PDF：顺序提取 %d ms，并行提取 %d ms（%d 核），共 %d 个分块%n",
+                    PAGES, sequentialMillis, parallelMillis, Runtime.getRuntime().availableProcessors(), parallel.size());
+            assertThat(sequential).isNotEmpty();
+            assertThat(parallel).containsExactlyElementsOf(sequential);
+        } finally {
+            sequentialParser.shutdown();
+            parallelParser.shutdown();
+        }
+    }
+
+    @Test
+    public void testMemoryMappedSourceMatchesBufferedFile() throws IOException {
+        PdfFileParser bufferedParser = newParser(false);
+        PdfFileParser mappedParser = newParser(false, "memory-mapped");
+        try {
+            ParseSession buffered = parse(bufferedParser, new LinkedBlockingQueue<>());
+            ParseSession mapped = parse(mappedParser, new LinkedBlockingQueue<>());
+
+            System.out.printf("%d 页 PDF：buffered-file %s；memory-mapped %s%n",
+                    PAGES, buffered.getMemoryStats(), mapped.getMemoryStats());
+            assertThat(mapped.getMemoryStats().getSamples()).isEqualTo(PAGES);
+            assertThat(drain(mapped.getChunkQueue())).containsExactlyElementsOf(drain(buffered.getChunkQueue()));
+        } finally {
+            bufferedParser.shutdown();
+            mappedParser.shutdown();
+        }
+    }
+
+    private PdfFileParser newParser(boolean parallelEnabled) {
+        return newParser(parallelEnabled, "buffered-file");
+    }
+
+    private PdfFileParser newParser(boolean parallelEnabled, String source) {
+        PdfFileParser parser = new PdfFileParser();
+        ReflectionTestUtils.setField(parser, "source", source);
+        ReflectionTestUtils.setField(parser, "maxMainMemoryMb", 16L);
+        ReflectionTestUtils.setField(parser, "parallelEnabled", parallelEnabled);
+        ReflectionTestUtils.setField(parser, "parallelism", 0);
+        ReflectionTestUtils.setField(parser, "parallelMinPages", 64);
+        ReflectionTestUtils.setField(parser, "pagesPerRange", 32);
+        parser.start();
+        return parser;
+    }
+
+    private List<String> parse(PdfFileParser parser) throws IOException {
+        return drain(parse(parser, new LinkedBlockingQueue<>()).getChunkQueue());
+    }
+
+    private ParseSession parse(PdfFileParser parser, BlockingQueue<String> chunkQueue) throws IOException {
+        ParseSession session = new ParseSession(chunkQueue);
+        try (InputStream inputStream = Files.newInputStream(pdfFile)) {
+            parser.parse(inputStream, session);
+        }
+        return session;
+    }
+
+    private List<String> drain(BlockingQueue<String> chunkQueue) {
+        List<String> chunks = new ArrayList<>(chunkQueue.size());
+        chunkQueue.drainTo(chunks);
+        return chunks;
+    }
+}
@@ -0,0 +1,63 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.cache.EmbeddingCache;
+import com.springleaf.knowseek.cache.QueryEmbeddingMetrics;
+import com.springleaf.knowseek.config.EmbeddingConfig;
+import com.springleaf.knowseek.limiter.EmbeddingRateLimiter;
+import com.springleaf.knowseek.limiter.LocalTokenBucket;
+import com.springleaf.knowseek.service.impl.EmbeddingServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 问题向量缓存测试：重复提问直接复用问题向量，命中耗时远低于调用 EmbeddingModel
+ */
+public class QueryEmbeddingCacheTest {
+
+    private RateLimitedEmbeddingModel embeddingModel;
+    private EmbeddingServiceImpl embeddingService;
+
+    @BeforeEach
+    public void setUp() {
+        EmbeddingConfig config = new EmbeddingConfig();
+        config.setBatchSize(25);
+        config.setRequestsPerMinute(600);
+        config.setTokensPerMinute(0);
+        config.setMaxConcurrency(8);
+
+        EmbeddingRateLimiter rateLimiter = new EmbeddingRateLimiter(new LocalTokenBucket(600, 10), null);
+        // 桩模型每次调用耗时 50 ms
+        embeddingModel = new RateLimitedEmbeddingModel(Integer.MAX_VALUE, 50);
+        embeddingService = new EmbeddingServiceImpl(embeddingModel, rateLimiter, EmbeddingCache.disabled(),
+                new EmbeddingCache("stub-model:1", "test:%s", 1000, Duration.ofMinutes(10), null, Duration.ofHours(1)),
+                config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        embeddingService.shutdown();
+    }
+
+    @Test
+    public void testRepeatedQuestionsServedFromQueryCache() {
+        // 10 个不同问题各问 5 次，问题前后空白不同视为同一问题
+        for (int round = 0; round < 5; round++) {
+            for (int question = 0; question < 10; question++) {
+                String text = round % 2 == 0 ? String.valueOf(question) : " " + question + " ";
+                assertThat(embeddingService.embedQuery(text)[0]).isEqualTo((float) question);
+            }
+        }
+
+        QueryEmbeddingMetrics metrics = embeddingService.getQueryMetrics();
+        System.out.println("问题向量缓存：" + metrics);
+        assertThat(embeddingModel.getCalls()).isEqualTo(10);
+        assertThat(metrics.getMisses()).isEqualTo(10);
+        assertThat(metrics.getHits()).isEqualTo(40);
+        assertThat(metrics.getAvgHitMillis()).isLessThan(metrics.getAvgMissMillis() / 10);
+    }
+}
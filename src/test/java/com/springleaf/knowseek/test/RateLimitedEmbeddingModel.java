@@ -0,0 +1,85 @@
+package com.springleaf.knowseek.test;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模拟服务端限流：任意 1 秒窗口内请求数超过上限即拒绝；返回的向量首位为文本对应的数字，用于校验顺序
+ */
+class RateLimitedEmbeddingModel implements EmbeddingModel {
+
+    private final int maxRequestsPerSecond;
+    private final long latencyMillis;
+    private final Deque<Long> requestTimes = new ArrayDeque<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    RateLimitedEmbeddingModel(int maxRequestsPerSecond, long latencyMillis) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        checkRate();
+        calls.incrementAndGet();
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        List<Embedding> embeddings = new ArrayList<>();
+        List<String> texts = request.getInstructions();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(new float[]{Float.parseFloat(texts.get(i))}, i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        throw new UnsupportedOperationException();
+    }
+
+    private synchronized void checkRate() {
+        long now = System.nanoTime();
+        while (!requestTimes.isEmpty() && now - requestTimes.peekFirst() >= TimeUnit.SECONDS.toNanos(1)) {
+            requestTimes.pollFirst();
+        }
+        if (requestTimes.size() >= maxRequestsPerSecond) {
+            rejected.incrementAndGet();
+            throw new IllegalStateException("Throttling: 请求过于频繁");
+        }
+        requestTimes.addLast(now);
+    }
+
+    int getRejected() {
+        return rejected.get();
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+}
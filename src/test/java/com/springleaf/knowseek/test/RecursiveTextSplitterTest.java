@@ -0,0 +1,74 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.mq.parser.RecursiveTextSplitter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 黄金输出测试：RecursiveTextSplitter 的分片结果必须与改写前的实现（LegacyTextSplitter）逐块一致
+ */
+public class RecursiveTextSplitterTest {
+
+    private final LegacyTextSplitter legacy = new LegacyTextSplitter();
+    private final RecursiveTextSplitter splitter = new RecursiveTextSplitter(1000, 100);
+
+    @Test
+    public void testMixedChineseEnglishDocument() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("第").append(i).append("段内容。这是该段的第一句话，用来测试中文句号的切分效果！真的吗？\n")
+                    .append("This is a mixed English sentence number ").append(i).append(". Another one! Really?\n");
+            if (i % 3 == 0) {
+                text.append('\n');
+            }
+        }
+        assertSameChunks(text.toString());
+    }
+
+    @Test
+    public void testEdgeCases() {
+        assertSameChunks("");
+        assertSameChunks("\n\n\n");
+        assertSameChunks(" \t\r\n  \n\n ");
+        assertSameChunks("　全角空格　开头和结尾　");
+        assertSameChunks("段落结尾有分隔符。\n\n");
+        assertSameChunks("行尾有换行\n");
+        assertSameChunks("短文本");
+    }
+
+    @Test
+    public void testLongRunsWithoutSeparators() {
+        // 没有任何分隔符，需要强制按长度切分
+        assertSameChunks("长".repeat(3500));
+        // 只有空格可用
+        assertSameChunks(("word".repeat(300) + " ").repeat(5));
+        // 单个句子超过块大小，且后面紧跟正常段落
+        assertSameChunks("很长的句子".repeat(400) + "。\n\n" + "正常段落。".repeat(50));
+    }
+
+    @Test
+    public void testRandomTexts() {
+        String[] tokens = {"a", "中", " ", "\n", "\n\n", "。", "！", "？", ".", "!", "?", "\t", "　", "word ", "句子。",
+                "\r\n", "x".repeat(50), "长".repeat(300), "y".repeat(1200)};
+        Random random = new Random(1);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(round % 10 == 0 ? 2000 : 400);
+            // 每轮偏向某一种片段，覆盖连续分隔符、超长片段等情况
+            String biased = tokens[random.nextInt(tokens.length)];
+            for (int i = 0; i < length; i++) {
+                text.append(random.nextInt(4) == 0 ? biased : tokens[random.nextInt(tokens.length)]);
+            }
+            assertSameChunks(text.toString());
+        }
+    }
+
+    private void assertSameChunks(String text) {
+        List<String> expected = legacy.splitTextRecursively(text);
+        assertThat(splitter.split(text)).containsExactlyElementsOf(expected);
+    }
+}
@@ -0,0 +1,118 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.cache.SemanticAnswerCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SemanticAnswerCacheTest {
+
+    private static final long KB_ID = 1L;
+    private static final SemanticAnswerCache.Scope SCOPE = SemanticAnswerCache.Scope.of(new Long[]{KB_ID}, new Long[0]);
+
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new SemanticAnswerCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.95);
+        ReflectionTestUtils.setField(cache, "maxEntriesPerScope", 10);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+    }
+
+    @Test
+    public void testSimilarQuestionWithSameChunksHits() {
+        cache.put(SCOPE, Set.of(KB_ID), new float[]{1f, 0f, 0f}, Set.of(10L, 11L), "答案");
+
+        // 余弦相似度约 0.995，且向量长度不同也应按方向比较
+        assertThat(cache.lookup(SCOPE, new float[]{2f, 0.2f, 0f}, Set.of(11L, 10L))).isEqualTo("答案");
+        // 相似度约 0.707，低于阈值
+        assertThat(cache.lookup(SCOPE, new float[]{1f, 1f, 0f}, Set.of(10L, 11L))).isNull();
+    }
+
+    @Test
+    public void testChangedChunksOrOtherScopeMisses() {
+        cache.put(SCOPE, Set.of(KB_ID), new float[]{1f, 0f, 0f}, Set.of(10L, 11L), "答案");
+
+        assertThat(cache.lookup(SCOPE, new float[]{1f, 0f, 0f}, Set.of(10L, 12L))).isNull();
+        assertThat(cache.lookup(SemanticAnswerCache.Scope.of(new Long[]{KB_ID + 1}, new Long[0]),
+                new float[]{1f, 0f, 0f}, Set.of(10L, 11L))).isNull();
+        // 同样的知识库再加上组织共享分片是另一个检索范围
+        assertThat(cache.lookup(SemanticAnswerCache.Scope.of(new Long[]{KB_ID}, new Long[]{7L}),
+                new float[]{1f, 0f, 0f}, Set.of(10L, 11L))).isNull();
+    }
+
+    @Test
+    public void testScopeIgnoresIdOrder() {
+        cache.put(SemanticAnswerCache.Scope.of(new Long[]{2L, 1L}, new Long[]{8L, 7L}), Set.of(1L),
+                new float[]{1f, 0f, 0f}, Set.of(10L), "答案");
+
+        assertThat(cache.lookup(SemanticAnswerCache.Scope.of(new Long[]{1L, 2L}, new Long[]{7L, 8L}),
+                new float[]{1f, 0f, 0f}, Set.of(10L))).isEqualTo("答案");
+    }
+
+    @Test
+    public void testInvalidateClearsKnowledgeBase() {
+        cache.put(SCOPE, Set.of(KB_ID), new float[]{1f, 0f, 0f}, Set.of(10L), "答案");
+        cache.invalidate(KB_ID);
+
+        assertThat(cache.lookup(SCOPE, new float[]{1f, 0f, 0f}, Set.of(10L))).isNull();
+    }
+
+    @Test
+    public void testInvalidateClearsEveryScopeUsingKnowledgeBase() {
+        SemanticAnswerCache.Scope multiKb = SemanticAnswerCache.Scope.of(new Long[]{1L, 2L}, new Long[0]);
+        SemanticAnswerCache.Scope orgShared = SemanticAnswerCache.Scope.of(new Long[]{1L}, new Long[]{7L});
+        SemanticAnswerCache.Scope unrelated = SemanticAnswerCache.Scope.of(new Long[]{3L}, new Long[0]);
+        cache.put(multiKb, Set.of(1L), new float[]{1f, 0f, 0f}, Set.of(10L), "多知识库");
+        // 分片来自共享给组织的知识库 5
+        cache.put(orgShared, Set.of(5L), new float[]{1f, 0f, 0f}, Set.of(50L), "组织共享");
+        cache.put(unrelated, Set.of(3L), new float[]{1f, 0f, 0f}, Set.of(30L), "无关");
+
+        // 检索范围内但未提供分片的知识库变化，也可能改变检索结果
+        cache.invalidate(2L);
+        cache.invalidate(5L);
+
+        assertThat(cache.lookup(multiKb, new float[]{1f, 0f, 0f}, Set.of(10L))).isNull();
+        assertThat(cache.lookup(orgShared, new float[]{1f, 0f, 0f}, Set.of(50L))).isNull();
+        assertThat(cache.lookup(unrelated, new float[]{1f, 0f, 0f}, Set.of(30L))).isEqualTo("无关");
+    }
+
+    @Test
+    public void testTotalEntriesCappedAcrossScopes() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 3);
+        for (long kbId = 1; kbId <= 4; kbId++) {
+            // 有效期递增，写入顺序即过期顺序
+            ReflectionTestUtils.setField(cache, "ttlMinutes", kbId);
+            cache.put(SemanticAnswerCache.Scope.of(new Long[]{kbId}, new Long[0]), Set.of(kbId),
+                    new float[]{1f, 0f, 0f}, Set.of(kbId * 10), "答案" + kbId);
+        }
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.lookup(SemanticAnswerCache.Scope.of(new Long[]{1L}, new Long[0]),
+                new float[]{1f, 0f, 0f}, Set.of(10L))).isNull();
+        assertThat(cache.lookup(SemanticAnswerCache.Scope.of(new Long[]{4L}, new Long[0]),
+                new float[]{1f, 0f, 0f}, Set.of(40L))).isEqualTo("答案4");
+    }
+
+    @Test
+    public void testSweepRemovesExpiredEntriesOfIdleScopes() {
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+        cache.put(SCOPE, Set.of(KB_ID), new float[]{1f, 0f, 0f}, Set.of(10L), "已过期");
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        SemanticAnswerCache.Scope other = SemanticAnswerCache.Scope.of(new Long[]{2L}, new Long[0]);
+        cache.put(other, Set.of(2L), new float[]{1f, 0f, 0f}, Set.of(20L), "有效");
+
+        // 过期答案所在的范围不再被查询，也应由定时清理移除
+        cache.evictExpired();
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.lookup(other, new float[]{1f, 0f, 0f}, Set.of(20L))).isEqualTo("有效");
+    }
+}
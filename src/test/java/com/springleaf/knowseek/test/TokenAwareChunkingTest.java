@@ -0,0 +1,223 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.mq.parser.RecursiveTextSplitter;
+import com.springleaf.knowseek.tokenizer.BpeTokenizer;
+import com.springleaf.knowseek.tokenizer.TokenCounter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 按 Token 分片：词表由测试语料现场训练（256 个单字节 + 若干次合并），以 tiktoken 格式写出后再加载，
+ * 合并结果与朴素的 tiktoken 合并算法对照
+ */
+public class TokenAwareChunkingTest {
+
+    private static final Pattern PRE_TOKENIZE = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*"
+                    + "|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+            Pattern.UNICODE_CHARACTER_CLASS);
+
+    private static final String[] SENTENCES = {
+            "物理学有一个第一性原理，指的是根据一些最基本的物理学常量，从头进行物理学的推导。",
+            "整个流程始于开发者向仓库提交代码，自动触发流水线！",
+            "The quick brown fox jumps over the lazy dog. ",
+            "Retrieval augmented generation splits documents into overlapping chunks, doesn't it? ",
+            "Version 2024 of the model handles 8192 tokens per input.\n",
+            "第三段是非常长的一段，没有内部空行，也没有很多句号\n\n",
+            "😀 emoji 和全角　空格\t混排。"
+    };
+
+    private static Map<String, Integer> ranks;
+    private static BpeTokenizer tokenizer;
+
+    @BeforeAll
+    public static void trainVocabulary() throws Exception {
+        ranks = train(corpus(new Random(7), 20_000), 400);
+        StringBuilder vocabulary = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : ranks.entrySet()) {
+            vocabulary.append(Base64.getEncoder().encodeToString(entry.getKey().getBytes(StandardCharsets.ISO_8859_1)))
+                    .append(' ').append(entry.getValue()).append('\n');
+        }
+        tokenizer = BpeTokenizer.load(new ByteArrayInputStream(vocabulary.toString().getBytes(StandardCharsets.US_ASCII)));
+        assertThat(tokenizer.vocabularySize()).isEqualTo(ranks.size());
+    }
+
+    @Test
+    public void testMergeMatchesReferenceBpe() {
+        Random random = new Random(1);
+        for (int round = 0; round < 500; round++) {
+            // 控制长度，保证不出现超过分窗长度的片段
+            String text = corpus(random, random.nextInt(250));
+            int expected = 0;
+            Matcher matcher = PRE_TOKENIZE.matcher(text);
+            while (matcher.find()) {
+                expected += referenceMerge(matcher.group().getBytes(StandardCharsets.UTF_8));
+            }
+            assertThat(tokenizer.countTokens(text, 0, text.length())).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testIncrementalCounterMatchesFullCount() {
+        Random random = new Random(2);
+        for (int round = 0; round < 100; round++) {
+            String text = corpus(random, 200 + random.nextInt(2000)) + "长".repeat(random.nextInt(600));
+            TokenCounter counter = tokenizer.newCounter();
+            for (int start = 0; start < text.length(); ) {
+                int end = Math.min(text.length(), start + 1 + random.nextInt(40));
+                if (Character.isHighSurrogate(text.charAt(end - 1)) && end < text.length()) {
+                    end++;
+                }
+                counter.append(text, start, end);
+                assertThat(counter.count()).isEqualTo(tokenizer.countTokens(text, 0, end));
+                start = end;
+            }
+        }
+    }
+
+    @Test
+    public void testPrefixAndSuffixRespectBudget() {
+        Random random = new Random(3);
+        for (int round = 0; round < 300; round++) {
+            String text = corpus(random, 100 + random.nextInt(1000));
+            int maxTokens = 1 + random.nextInt(80);
+            int prefixEnd = tokenizer.prefixEnd(text, 0, text.length(), maxTokens);
+            int suffixStart = tokenizer.suffixStart(text, 0, text.length(), maxTokens);
+            assertThat(tokenizer.countTokens(text, 0, prefixEnd)).isLessThanOrEqualTo(maxTokens);
+            assertThat(tokenizer.countTokens(text, suffixStart, text.length())).isLessThanOrEqualTo(maxTokens);
+            assertThat(prefixEnd).isGreaterThan(0);
+            assertThat(suffixStart).isLessThan(text.length());
+        }
+    }
+
+    @Test
+    public void testTokenChunksStayWithinBudget() {
+        Random random = new Random(4);
+        RecursiveTextSplitter splitter = new RecursiveTextSplitter(200, 20, tokenizer);
+        for (int round = 0; round < 50; round++) {
+            // 混入不含任何分隔符的长段中文和长英文单词，覆盖强制切分
+            String text = corpus(random, 5000) + "长".repeat(random.nextInt(3000)) + "x".repeat(random.nextInt(3000))
+                    + corpus(random, 2000);
+            List<String> chunks = splitter.split(text);
+            assertThat(chunks).isNotEmpty();
+            for (String chunk : chunks) {
+                assertThat(tokenizer.countTokens(chunk, 0, chunk.length())).isLessThanOrEqualTo(200);
+                assertThat(chunk.isBlank()).isFalse();
+            }
+            String tail = splitter.overlapTail(chunks.get(0));
+            assertThat(chunks.get(0)).endsWith(tail);
+            assertThat(tokenizer.countTokens(tail, 0, tail.length())).isLessThanOrEqualTo(20);
+        }
+    }
+
+    @Test
+    public void testChunksFillTokenBudget() {
+        RecursiveTextSplitter splitter = new RecursiveTextSplitter(200, 20, tokenizer);
+        // 中英文每个 Token 对应的字符数差别很大，按 Token 切分时两者的分块都应接近上限
+        for (String text : List.of((SENTENCES[0] + SENTENCES[1]).repeat(100), (SENTENCES[2] + SENTENCES[3]).repeat(100))) {
+            List<String> chunks = splitter.split(text);
+            for (String chunk : chunks.subList(0, chunks.size() - 1)) {
+                assertThat(tokenizer.countTokens(chunk, 0, chunk.length())).isGreaterThan(150);
+            }
+        }
+    }
+
+    private static String corpus(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length + 100);
+        while (builder.length() < length) {
+            String sentence = SENTENCES[random.nextInt(SENTENCES.length)];
+            builder.append(sentence, 0, Math.min(sentence.length(), 1 + random.nextInt(sentence.length())));
+            if (random.nextInt(5) == 0) {
+                builder.append(random.nextInt(100_000));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 朴素 BPE 训练：每轮合并语料中出现次数最多的相邻字节串，rank 依次递增
+     */
+    private static Map<String, Integer> train(String corpus, int merges) {
+        Map<String, Integer> vocabulary = new LinkedHashMap<>();
+        for (int b = 0; b < 256; b++) {
+            vocabulary.put(String.valueOf((char) b), b);
+        }
+        List<List<String>> words = new ArrayList<>();
+        Matcher matcher = PRE_TOKENIZE.matcher(corpus);
+        while (matcher.find()) {
+            List<String> word = new ArrayList<>();
+            for (byte b : matcher.group().getBytes(StandardCharsets.UTF_8)) {
+                word.add(String.valueOf((char) (b & 0xFF)));
+            }
+            words.add(word);
+        }
+        for (int round = 0; round < merges; round++) {
+            Map<String, Integer> pairCounts = new HashMap<>();
+            String best = null;
+            for (List<String> word : words) {
+                for (int i = 0; i + 1 < word.size(); i++) {
+                    String pair = word.get(i) + "\u0000" + word.get(i + 1);
+                    int count = pairCounts.merge(pair, 1, Integer::sum);
+                    if (best == null || count > pairCounts.get(best)) {
+                        best = pair;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            String[] parts = best.split("\u0000", -1);
+            String merged = parts[0] + parts[1];
+            vocabulary.putIfAbsent(merged, vocabulary.size());
+            for (List<String> word : words) {
+                for (int i = 0; i + 1 < word.size(); i++) {
+                    if (word.get(i).equals(parts[0]) && word.get(i + 1).equals(parts[1])) {
+                        word.set(i, merged);
+                        word.remove(i + 1);
+                    }
+                }
+            }
+        }
+        return vocabulary;
+    }
+
+    /**
+     * 与 tiktoken byte_pair_merge 相同的朴素实现：每轮在所有相邻对中找 rank 最小（相同取最左）的合并
+     */
+    private static int referenceMerge(byte[] bytes) {
+        List<String> parts = new ArrayList<>();
+        for (byte b : bytes) {
+            parts.add(String.valueOf((char) (b & 0xFF)));
+        }
+        while (parts.size() > 1) {
+            int bestIndex = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i + 1 < parts.size(); i++) {
+                Integer rank = ranks.get(parts.get(i) + parts.get(i + 1));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex < 0) {
+                break;
+            }
+            parts.set(bestIndex, parts.get(bestIndex) + parts.remove(bestIndex + 1));
+        }
+        return parts.size();
+    }
+}
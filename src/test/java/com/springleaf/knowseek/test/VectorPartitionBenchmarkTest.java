@@ -0,0 +1,184 @@
+package com.springleaf.knowseek.test;
+
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 按知识库过滤的 TopK 检索：未分区与按 knowledge_base_id 哈希分区两种表结构的延迟对比，需要连接真实的 pgvector 数据库
+ * 数据在独立 schema 中由数据库端生成，结束后删除；默认 20 万行，完整对比（1000 万行）需手动指定：
+ * -Dbench.partition.rows=10000000，建 HNSW 索引耗时较长，建议同时调大 maintenance_work_mem
+ */
+@SpringBootTest
+public class VectorPartitionBenchmarkTest {
+
+    private static final String SCHEMA = "knowseek_partition_bench";
+    private static final int ROWS = Integer.getInteger("bench.partition.rows", 200_000);
+    private static final int KNOWLEDGE_BASES = Integer.getInteger("bench.partition.knowledge-bases", 1000);
+    private static final int DIMENSIONS = Integer.getInteger("bench.partition.dimensions", 128);
+    private static final int PARTITIONS = 16;
+    private static final int TOP_K = 20;
+    private static final int ROUNDS = 200;
+
+    @Resource(name = "pgVectorJdbcTemplate")
+    private JdbcTemplate pgVectorJdbcTemplate;
+    @Resource(name = "pgVectorTransactionManager")
+    private PlatformTransactionManager pgVectorTransactionManager;
+
+    private final Integer[] remainderByKnowledgeBase = new Integer[KNOWLEDGE_BASES];
+
+    @Test
+    public void testFilteredTopKPartitionedVsFlat() {
+        try {
+            prepareTables();
+
+            Random random = new Random(17);
+            long[] knowledgeBaseIds = new long[ROUNDS];
+            String[] queryVectors = new String[ROUNDS];
+            for (int i = 0; i < ROUNDS; i++) {
+                knowledgeBaseIds[i] = random.nextInt(KNOWLEDGE_BASES);
+                queryVectors[i] = randomVectorLiteral(random);
+            }
+
+            // 预热，排除首次加载索引页与建立连接的干扰
+            for (int i = 0; i < 20; i++) {
+                searchFlat(knowledgeBaseIds[i], queryVectors[i]);
+                searchPartitionParent(knowledgeBaseIds[i], queryVectors[i]);
+                searchRoutedPartition(knowledgeBaseIds[i], queryVectors[i]);
+            }
+
+            report("未分区（主表 + 知识库过滤）", round -> searchFlat(knowledgeBaseIds[round], queryVectors[round]));
+            report("分区表（查询主表，由数据库裁剪分区）",
+                    round -> searchPartitionParent(knowledgeBaseIds[round], queryVectors[round]));
+            report("分区表（应用路由，直接查询分区）",
+                    round -> searchRoutedPartition(knowledgeBaseIds[round], queryVectors[round]));
+        } finally {
+            pgVectorJdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        }
+    }
+
+    private void prepareTables() {
+        pgVectorJdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        pgVectorJdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+
+        String columns = "(id BIGINT NOT NULL, knowledge_base_id BIGINT NOT NULL, deleted BOOLEAN NOT NULL DEFAULT FALSE, "
+                + "embedding VECTOR(" + DIMENSIONS + ") NOT NULL)";
+        pgVectorJdbcTemplate.execute("CREATE TABLE " + SCHEMA + ".flat " + columns);
+        pgVectorJdbcTemplate.execute("CREATE TABLE " + SCHEMA + ".part " + columns + " PARTITION BY HASH (knowledge_base_id)");
+        for (int r = 0; r < PARTITIONS; r++) {
+            pgVectorJdbcTemplate.execute("CREATE TABLE " + SCHEMA + ".part_p" + r + " PARTITION OF " + SCHEMA
+                    + ".part FOR VALUES WITH (MODULUS " + PARTITIONS + ", REMAINDER " + r + ")");
+        }
+
+        long start = System.currentTimeMillis();
+        pgVectorJdbcTemplate.execute("INSERT INTO " + SCHEMA + ".flat (id, knowledge_base_id, embedding) "
+                + "SELECT g, g % " + KNOWLEDGE_BASES + ", v.embedding "
+                + "FROM generate_series(1, " + ROWS + ") g, "
+                + "LATERAL (SELECT array_agg(random() * 2 - 1 + g * 0)::vector AS embedding "
+                + "FROM generate_series(1, " + DIMENSIONS + ")) v");
+        pgVectorJdbcTemplate.execute("INSERT INTO " + SCHEMA + ".part SELECT * FROM " + SCHEMA + ".flat");
+        long loadCost = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        pgVectorJdbcTemplate.execute("CREATE INDEX ON " + SCHEMA + ".flat USING hnsw (embedding vector_cosine_ops)");
+        pgVectorJdbcTemplate.execute("CREATE INDEX ON " + SCHEMA + ".flat (knowledge_base_id)");
+        long flatIndexCost = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        pgVectorJdbcTemplate.execute("CREATE INDEX ON " + SCHEMA + ".part USING hnsw (embedding vector_cosine_ops)");
+        pgVectorJdbcTemplate.execute("CREATE INDEX ON " + SCHEMA + ".part (knowledge_base_id)");
+        long partIndexCost = System.currentTimeMillis() - start;
+
+        pgVectorJdbcTemplate.execute("ANALYZE " + SCHEMA + ".flat");
+        pgVectorJdbcTemplate.execute("ANALYZE " + SCHEMA + ".part");
+        System.out.printf("生成 %d 行 %d 维向量（%d 个知识库）耗时 %d ms；HNSW 建索引：未分区 %d ms，%d 个分区 %d ms%n",
+                ROWS, DIMENSIONS, KNOWLEDGE_BASES, loadCost, flatIndexCost, PARTITIONS, partIndexCost);
+    }
+
+    private int searchFlat(long knowledgeBaseId, String queryVector) {
+        return search(SCHEMA + ".flat", knowledgeBaseId, queryVector);
+    }
+
+    private int searchPartitionParent(long knowledgeBaseId, String queryVector) {
+        return search(SCHEMA + ".part", knowledgeBaseId, queryVector);
+    }
+
+    /**
+     * 与 VectorPartitionRouter 相同的方式计算分区后直接查询分区表（路由结果在应用中缓存，此处不计入耗时）
+     */
+    private int searchRoutedPartition(long knowledgeBaseId, String queryVector) {
+        return search(SCHEMA + ".part_p" + remainderOf(knowledgeBaseId), knowledgeBaseId, queryVector);
+    }
+
+    private int remainderOf(long knowledgeBaseId) {
+        int index = (int) knowledgeBaseId;
+        if (remainderByKnowledgeBase[index] == null) {
+            remainderByKnowledgeBase[index] = pgVectorJdbcTemplate.queryForObject(
+                    "SELECT r FROM generate_series(0, ?) r "
+                            + "WHERE satisfies_hash_partition(?::regclass, ?, r, ?::bigint)",
+                    Integer.class, PARTITIONS - 1, SCHEMA + ".part", PARTITIONS, knowledgeBaseId);
+        }
+        return remainderByKnowledgeBase[index];
+    }
+
+    /**
+     * 与线上检索相同：事务内开启 HNSW 迭代扫描，按知识库过滤后取 TopK
+     * @return 返回的行数，用于对比过滤后结果是否凑满 K 条
+     */
+    private int search(String table, long knowledgeBaseId, String queryVector) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(pgVectorTransactionManager);
+        Integer count = transactionTemplate.execute(status -> {
+            pgVectorJdbcTemplate.queryForList("SELECT set_config('hnsw.iterative_scan', 'relaxed_order', true)");
+            List<Long> ids = pgVectorJdbcTemplate.queryForList(
+                    "SELECT id FROM (SELECT id, embedding <=> ?::vector AS distance FROM " + table
+                            + " WHERE deleted = false AND knowledge_base_id = ? ORDER BY distance LIMIT ?) hits "
+                            + "ORDER BY hits.distance",
+                    Long.class, queryVector, knowledgeBaseId, TOP_K);
+            return ids.size();
+        });
+        return count == null ? 0 : count;
+    }
+
+    private void report(String name, RoundSearch search) {
+        long[] costs = new long[ROUNDS];
+        long totalRows = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            totalRows += search.run(round);
+            costs[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(costs);
+        double avgMillis = Arrays.stream(costs).average().orElse(0) / 1_000_000;
+        System.out.printf("%s：%d 轮，平均 %.2f ms，P50 %.2f ms，P95 %.2f ms，P99 %.2f ms，平均返回 %.1f/%d 行%n",
+                name, ROUNDS, avgMillis, percentile(costs, 0.50), percentile(costs, 0.95), percentile(costs, 0.99),
+                (double) totalRows / ROUNDS, TOP_K);
+    }
+
+    private double percentile(long[] sortedCosts, double percentile) {
+        int index = Math.min(sortedCosts.length - 1, (int) Math.ceil(percentile * sortedCosts.length) - 1);
+        return sortedCosts[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private String randomVectorLiteral(Random random) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < DIMENSIONS; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(random.nextFloat() * 2 - 1);
+        }
+        return builder.append(']').toString();
+    }
+
+    @FunctionalInterface
+    private interface RoundSearch {
+        int run(int round);
+    }
+}
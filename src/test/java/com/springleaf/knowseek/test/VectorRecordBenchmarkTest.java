@@ -0,0 +1,161 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper;
+import com.springleaf.knowseek.model.bo.VectorBO;
+import com.springleaf.knowseek.model.bo.VectorRecordSearchBO;
+import com.springleaf.knowseek.model.entity.VectorRecord;
+import com.springleaf.knowseek.service.VectorRecordService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * pgvector 写入/检索性能对比，需要连接真实的 pgvector 数据库
+ */
+@SpringBootTest
+public class VectorRecordBenchmarkTest {
+
+    private static final int DIMENSIONS = 1024;
+    private static final int ROWS = 5000;
+
+    // 使用不会与真实数据冲突的文件ID，测试结束后按文件ID清理
+    private static final long ROW_FILE_ID = -10001L;
+    private static final long BATCH_FILE_ID = -10002L;
+    private static final long COPY_FILE_ID = -10003L;
+    private static final long SEARCH_FILE_ID = -10004L;
+    private static final long SEARCH_KB_ID = -10004L;
+
+    private static final int SEARCH_ROUNDS = 200;
+
+    @Resource
+    private VectorRecordMapper vectorRecordMapper;
+    @Resource
+    private VectorRecordService vectorRecordService;
+
+    @Test
+    public void testInsertPathsBenchmark() {
+        List<String> chunks = new ArrayList<>(ROWS);
+        List<float[]> vectors = new ArrayList<>(ROWS);
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            chunks.add("benchmark chunk " + i + " 基准测试分片内容");
+            vectors.add(randomVector(random));
+        }
+
+        try {
+            // 1. 逐行 INSERT（原有路径）
+            VectorBO rowBO = buildVectorBO(ROW_FILE_ID);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < ROWS; i++) {
+                VectorRecord record = VectorRecord.builder()
+                        .fileId(rowBO.getFileId())
+                        .userId(rowBO.getUserId())
+                        .organizationId(rowBO.getOrganizationId())
+                        .knowledgeBaseId(rowBO.getKnowledgeBaseId())
+                        .chunkIndex(i + 1)
+                        .chunkText(chunks.get(i))
+                        .embedding(vectors.get(i))
+                        .build();
+                vectorRecordMapper.insert(record);
+            }
+            long rowCost = System.currentTimeMillis() - start;
+
+            // 2. 多行 INSERT
+            start = System.currentTimeMillis();
+            vectorRecordService.saveVectorRecord(chunks, vectors, 1, buildVectorBO(BATCH_FILE_ID));
+            long batchCost = System.currentTimeMillis() - start;
+
+            // 3. COPY BINARY
+            start = System.currentTimeMillis();
+            vectorRecordService.copyVectorRecord(chunks, vectors, 1, buildVectorBO(COPY_FILE_ID));
+            long copyCost = System.currentTimeMillis() - start;
+
+            System.out.printf("写入 %d 条 %d 维向量：逐行 INSERT %d ms，多行 INSERT %d ms，COPY BINARY %d ms%n",
+                    ROWS, DIMENSIONS, rowCost, batchCost, copyCost);
+        } finally {
+            vectorRecordMapper.deleteByFileId(ROW_FILE_ID);
+            vectorRecordMapper.deleteByFileId(BATCH_FILE_ID);
+            vectorRecordMapper.deleteByFileId(COPY_FILE_ID);
+        }
+    }
+
+    @Test
+    public void testRetrievalProjectionBenchmark() {
+        Random random = new Random(7);
+        List<String> chunks = new ArrayList<>(ROWS);
+        List<float[]> vectors = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            chunks.add("retrieval chunk " + i + " 检索基准分片内容");
+            vectors.add(randomVector(random));
+        }
+
+        VectorBO vectorBO = buildVectorBO(SEARCH_FILE_ID);
+        vectorBO.setKnowledgeBaseId(SEARCH_KB_ID);
+        try {
+            vectorRecordService.copyVectorRecord(chunks, vectors, 1, vectorBO);
+
+            VectorRecordSearchBO searchBO = new VectorRecordSearchBO();
+            searchBO.setUserId(vectorBO.getUserId());
+            searchBO.setKnowledgeBaseId(SEARCH_KB_ID);
+            searchBO.setKnowledgeBaseIds(new Long[]{SEARCH_KB_ID});
+            searchBO.setTopK(20);
+            // 以已写入的向量作为查询，保证召回结果不为空
+            searchBO.setQueryVector(vectors.get(0));
+
+            // 预热，排除首次编译与连接建立的干扰
+            for (int i = 0; i < 20; i++) {
+                vectorRecordMapper.findTopKByEmbeddingWithDistance(searchBO);
+                vectorRecordMapper.findTopKHitsByEmbedding(searchBO);
+            }
+
+            long[] withEmbedding = measureSearch(() -> vectorRecordMapper.findTopKByEmbeddingWithDistance(searchBO));
+            long[] withoutEmbedding = measureSearch(() -> vectorRecordMapper.findTopKHitsByEmbedding(searchBO));
+
+            System.out.printf("TopK 检索 %d 轮：含 embedding 列平均 %.2f ms / 分配 %d KB，不含 embedding 列平均 %.2f ms / 分配 %d KB%n",
+                    SEARCH_ROUNDS,
+                    withEmbedding[0] / 1_000_000.0 / SEARCH_ROUNDS, withEmbedding[1] / 1024 / SEARCH_ROUNDS,
+                    withoutEmbedding[0] / 1_000_000.0 / SEARCH_ROUNDS, withoutEmbedding[1] / 1024 / SEARCH_ROUNDS);
+        } finally {
+            vectorRecordMapper.deleteByFileId(SEARCH_FILE_ID);
+        }
+    }
+
+    /**
+     * 执行 SEARCH_ROUNDS 次检索，返回 [总耗时纳秒, 当前线程总分配字节数]
+     */
+    private long[] measureSearch(Runnable search) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < SEARCH_ROUNDS; i++) {
+            search.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new long[]{elapsed, allocated};
+    }
+
+    private VectorBO buildVectorBO(long fileId) {
+        return VectorBO.builder()
+                .fileId(fileId)
+                .userId(-1L)
+                .knowledgeBaseId(-1L)
+                .organizationId(-1L)
+                .build();
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,128 @@
+package com.springleaf.knowseek.test;
+
+import com.springleaf.knowseek.constans.RagConstant;
+import com.springleaf.knowseek.model.bo.VectorBO;
+import com.springleaf.knowseek.model.bo.VectorRecordSearchBO;
+import com.springleaf.knowseek.service.VectorRecordService;
+import jakarta.annotation.Resource;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.type.TypeHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 检索 SQL 执行计划校验：TopK 检索必须由 HNSW 索引驱动有序扫描，需要连接真实的 pgvector 数据库
+ * 测试数据写在事务内，结束后回滚
+ */
+@SpringBootTest
+public class VectorRecordSearchPlanTest {
+
+    /**
+     * 未分区时为主表的 HNSW 索引，按知识库分区后为各分区自动创建的索引
+     */
+    private static final String HNSW_INDEX_PATTERN = "idx_tb_vector_record_embedding|tb_vector_record_p\\d+_embedding_idx";
+    private static final int DIMENSIONS = 1024;
+    private static final int ROWS = 2000;
+    private static final long FILE_ID = -10005L;
+    private static final long KB_ID = -10005L;
+
+    @Resource(name = "pgVectorSqlSessionFactory")
+    private SqlSessionFactory pgVectorSqlSessionFactory;
+    @Resource(name = "pgVectorJdbcTemplate")
+    private JdbcTemplate pgVectorJdbcTemplate;
+    @Resource(name = "pgVectorTransactionManager")
+    private PlatformTransactionManager pgVectorTransactionManager;
+    @Resource
+    private VectorRecordService vectorRecordService;
+
+    @Test
+    public void testTopKHitsUsesHnswIndex() {
+        assertUsesHnswIndex("com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper.findTopKHitsByEmbedding");
+    }
+
+    @Test
+    public void testTopKWithDistanceUsesHnswIndex() {
+        assertUsesHnswIndex("com.springleaf.knowseek.mapper.pgvector.VectorRecordMapper.findTopKByEmbeddingWithDistance");
+    }
+
+    private void assertUsesHnswIndex(String statementId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(pgVectorTransactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+
+            Random random = new Random(11);
+            List<String> chunks = new ArrayList<>(ROWS);
+            List<float[]> vectors = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                chunks.add("plan chunk " + i);
+                vectors.add(randomVector(random));
+            }
+            VectorBO vectorBO = VectorBO.builder()
+                    .fileId(FILE_ID)
+                    .userId(-1L)
+                    .knowledgeBaseId(KB_ID)
+                    .organizationId(-1L)
+                    .build();
+            vectorRecordService.copyVectorRecord(chunks, vectors, 1, vectorBO);
+            pgVectorJdbcTemplate.execute("ANALYZE tb_vector_record");
+
+            // 测试数据量较小，关闭顺序扫描和显式排序，排除代价估算对计划选择的干扰；
+            // 若查询形态本身无法走 HNSW 有序扫描，计划中不会出现该索引
+            pgVectorJdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            pgVectorJdbcTemplate.execute("SET LOCAL enable_sort = off");
+
+            VectorRecordSearchBO searchBO = new VectorRecordSearchBO();
+            searchBO.setUserId(-1L);
+            searchBO.setKnowledgeBaseId(KB_ID);
+            searchBO.setKnowledgeBaseIds(new Long[]{KB_ID});
+            searchBO.setTopK(RagConstant.TOPK);
+            searchBO.setQueryVector(vectors.get(0));
+            searchBO.setMaxDistance(RagConstant.MAX_DISTANCE);
+
+            String plan = explain(statementId, searchBO);
+            System.out.println(plan);
+            assertThat(plan).containsPattern(HNSW_INDEX_PATTERN);
+        });
+    }
+
+    /**
+     * 取 Mapper 实际生成的 SQL，用 Mapper 注册的 TypeHandler 绑定参数后执行 EXPLAIN
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private String explain(String statementId, VectorRecordSearchBO searchBO) {
+        Configuration configuration = pgVectorSqlSessionFactory.getConfiguration();
+        BoundSql boundSql = configuration.getMappedStatement(statementId).getBoundSql(searchBO);
+        MetaObject metaObject = configuration.newMetaObject(searchBO);
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+
+        List<String> lines = pgVectorJdbcTemplate.query("EXPLAIN " + boundSql.getSql(), ps -> {
+            for (int i = 0; i < mappings.size(); i++) {
+                ParameterMapping mapping = mappings.get(i);
+                TypeHandler typeHandler = mapping.getTypeHandler();
+                typeHandler.setParameter(ps, i + 1, metaObject.getValue(mapping.getProperty()), mapping.getJdbcType());
+            }
+        }, (rs, rowNum) -> rs.getString(1));
+        return String.join("\n", lines);
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}
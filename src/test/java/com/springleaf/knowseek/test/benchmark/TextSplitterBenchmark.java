@@ -0,0 +1,89 @@
+package com.springleaf.knowseek.test.benchmark;
+
+import com.springleaf.knowseek.mq.parser.RecursiveTextSplitter;
+import com.springleaf.knowseek.test.LegacyTextSplitter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 递归分片基准：改写前基于 split/substring 的实现（LegacyTextSplitter） vs 下标扫描实现（RecursiveTextSplitter）
+ * 语料为随机拼接的中文 / 英文句子，默认约 4MB 字符
+ * 运行方式：直接执行 main 方法，-prof gc 会同时输出每次操作的内存分配量
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TextSplitterBenchmark {
+
+    private static final String[] CHINESE_SENTENCES = {
+            "物理学有一个第一性原理，指的是根据一些最基本的物理学常量，从头进行物理学的推导",
+            "整个流程始于开发者向仓库提交代码，自动触发流水线",
+            "通过拖拽组件实现格式预设，使学生只需专注内容创作本身",
+            "结合虚拟人技术构建接近真实的答辩场景"
+    };
+    private static final String[] ENGLISH_SENTENCES = {
+            "The quick brown fox jumps over the lazy dog",
+            "Retrieval augmented generation splits documents into overlapping chunks",
+            "Each chunk is embedded and stored in a vector index for similarity search",
+            "Long paragraphs fall back to sentence and word boundaries"
+    };
+
+    @Param({"chinese", "english"})
+    private String corpus;
+
+    @Param({"4000000"})
+    private int chars;
+
+    private final LegacyTextSplitter legacy = new LegacyTextSplitter();
+    private final RecursiveTextSplitter splitter = new RecursiveTextSplitter(1000, 100);
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        boolean chinese = "chinese".equals(corpus);
+        String[] sentences = chinese ? CHINESE_SENTENCES : ENGLISH_SENTENCES;
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(chars + 200);
+        while (builder.length() < chars) {
+            builder.append(sentences[random.nextInt(sentences.length)]);
+            int next = random.nextInt(10);
+            if (next == 0) {
+                builder.append(chinese ? "。\n\n" : ".\n\n");
+            } else if (next < 3) {
+                builder.append(chinese ? "！\n" : "!\n");
+            } else {
+                builder.append(chinese ? "。" : ". ");
+            }
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public List<String> legacySplit() {
+        return legacy.splitTextRecursively(text);
+    }
+
+    @Benchmark
+    public List<String> indexedSplit() {
+        return splitter.split(text);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TextSplitterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.springleaf.knowseek.test.benchmark;
+
+import com.springleaf.knowseek.handler.PgVectorBinaryObject;
+import com.springleaf.knowseek.handler.VectorTypeHandler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向量编解码基准：文本格式（VectorTypeHandler） vs pgvector 二进制格式（PgVectorBinaryObject）
+ * 运行方式：直接执行 main 方法，-prof gc 会同时输出每次操作的内存分配量
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorCodecBenchmark {
+
+    @Param({"1024"})
+    private int dimensions;
+
+    private final VectorTypeHandler textHandler = new VectorTypeHandler();
+
+    private float[] vector;
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        text = textHandler.formatVectorString(vector);
+        PgVectorBinaryObject object = new PgVectorBinaryObject(vector);
+        binary = new byte[object.lengthInBytes()];
+        object.toBytes(binary, 0);
+    }
+
+    @Benchmark
+    public String textEncode() {
+        return textHandler.formatVectorString(vector);
+    }
+
+    @Benchmark
+    public float[] textDecode() throws SQLException {
+        return textHandler.parseVectorString(text);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        PgVectorBinaryObject object = new PgVectorBinaryObject(vector);
+        byte[] bytes = new byte[object.lengthInBytes()];
+        object.toBytes(bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public float[] binaryDecode() throws SQLException {
+        PgVectorBinaryObject object = new PgVectorBinaryObject();
+        object.setByteValue(binary, 0);
+        return object.getVector();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(VectorCodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}